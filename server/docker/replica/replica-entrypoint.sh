@@ -0,0 +1,11 @@
+#!/bin/bash
+# Clones the primary on first start, then runs as a hot standby streaming from it.
+set -e
+if [ ! -s "$PGDATA/PG_VERSION" ]; then
+  until pg_basebackup -h db -U replicator -D "$PGDATA" -R -X stream; do
+    echo "waiting for primary..."
+    sleep 2
+  done
+  chmod 700 "$PGDATA"
+fi
+exec docker-entrypoint.sh postgres
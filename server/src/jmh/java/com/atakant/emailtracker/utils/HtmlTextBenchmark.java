@@ -0,0 +1,64 @@
+package com.atakant.emailtracker.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HtmlText against the regex chain it replaced, on newsletter-sized bodies from src/jmh/resources/html.
+ * Run with: mvn -Pjmh test-compile exec:exec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HtmlTextBenchmark {
+
+    private static final int MAX_BODY_CHARS = 100_000; // app.gmail.fetch.max-body-chars
+
+    @Param({"newsletter.html", "job-digest.html", "ats-confirmation.html"})
+    public String fixture;
+
+    private String html;
+
+    @Setup
+    public void load() throws IOException {
+        try (InputStream in = HtmlTextBenchmark.class.getResourceAsStream("/html/" + fixture)) {
+            if (in == null) throw new IOException("missing fixture " + fixture);
+            html = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public String singlePass() {
+        return HtmlText.toText(html, MAX_BODY_CHARS);
+    }
+
+    // GmailService.stripHtml before HtmlText
+    @Benchmark
+    public String regexChain() {
+        return html
+                .replaceAll("(?is)<style.*?</style>", "")
+                .replaceAll("(?is)<script.*?</script>", "")
+                .replaceAll("(?i)<br\\s*/?>", "\n")
+                .replaceAll("(?i)</p>", "\n")
+                .replaceAll("<[^>]+>", "")
+                .replace("&nbsp;", " ")
+                .trim();
+    }
+}
@@ -3,12 +3,37 @@ package com.atakant.emailtracker.config;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 public class AsyncConfig {
 
+    @Bean
+    public ThreadPoolTaskExecutor listExecutor(GmailBackfillProperties backfill) {
+        ThreadPoolTaskExecutor ex = new ThreadPoolTaskExecutor();
+        ex.setCorePoolSize(backfill.listConcurrency());
+        ex.setMaxPoolSize(backfill.listConcurrency());
+        ex.setQueueCapacity(1000);
+        ex.setThreadNamePrefix("list-");
+        ex.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        ex.initialize();
+        return ex;
+    }
+
+    // Drivers for long-running background jobs; the work they fan out still goes to the pools below.
+    @Bean
+    public ThreadPoolTaskExecutor jobExecutor() {
+        ThreadPoolTaskExecutor ex = new ThreadPoolTaskExecutor();
+        ex.setCorePoolSize(2);
+        ex.setMaxPoolSize(2);
+        ex.setQueueCapacity(20);
+        ex.setThreadNamePrefix("job-");
+        ex.initialize();
+        return ex;
+    }
+
     @Bean
     public ThreadPoolTaskExecutor parseExecutor() {
         ThreadPoolTaskExecutor ex = new ThreadPoolTaskExecutor();
@@ -21,11 +46,26 @@ public class AsyncConfig {
         return ex;
     }
 
+    // Periodic upkeep: stats rebuild, tombstone prune, email partitions, replica lag checks.
+    // A thread per task, so a long rebuild never delays the lag check.
+    @Bean
+    public ThreadPoolTaskScheduler maintenanceScheduler() {
+        ThreadPoolTaskScheduler ts = new ThreadPoolTaskScheduler();
+        ts.setPoolSize(4);
+        ts.setThreadNamePrefix("maintenance-");
+        ts.setDaemon(true);
+        ts.initialize();
+        return ts;
+    }
+
+    // Threads beyond the core size only start once the queue is full, so core = max: every
+    // permit the adaptive limiter hands out up to max-concurrency gets a thread.
     @Bean
-    public ThreadPoolTaskExecutor fetchExecutor() {
+    public ThreadPoolTaskExecutor fetchExecutor(GmailFetchProperties fetch) {
         ThreadPoolTaskExecutor ex = new ThreadPoolTaskExecutor();
-        ex.setCorePoolSize(8);
-        ex.setMaxPoolSize(16);
+        ex.setCorePoolSize(fetch.maxConcurrency());
+        ex.setMaxPoolSize(fetch.maxConcurrency());
+        ex.setAllowCoreThreadTimeOut(true);
         ex.setQueueCapacity(400);
         ex.setThreadNamePrefix("fetch-");
         ex.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
@@ -0,0 +1,19 @@
+package com.atakant.emailtracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.dedup")
+public record DedupProperties(
+        boolean nearDuplicates,  // also drop near-identical bodies (SimHash), not just identical Message-IDs
+        int maxHammingDistance,  // bodies whose fingerprints differ in at most this many bits are copies
+        Duration window          // only messages sent this close to each other are compared
+) {
+    public DedupProperties {
+        if (maxHammingDistance < 0 || maxHammingDistance > 16) {
+            throw new IllegalArgumentException("app.dedup.max-hamming-distance must be between 0 and 16");
+        }
+        if (window == null) window = Duration.ofDays(14);
+    }
+}
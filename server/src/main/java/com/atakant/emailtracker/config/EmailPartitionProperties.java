@@ -0,0 +1,26 @@
+package com.atakant.emailtracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.email-partitions")
+public record EmailPartitionProperties(
+        int monthsAhead,               // monthly partitions kept created beyond the current month
+        Duration maintenanceInterval,  // how often partitions are created and retention applied
+        Duration retention,            // months ending longer ago than this leave emails; 0 keeps everything
+        String archiveMode             // "detach": keep as a standalone emails_archive_YYYY_MM table; "drop"
+) {
+    public EmailPartitionProperties {
+        if (monthsAhead <= 0) monthsAhead = 3;
+        if (maintenanceInterval == null || maintenanceInterval.isZero()) maintenanceInterval = Duration.ofHours(24);
+        if (retention == null) retention = Duration.ZERO;
+        if (retention.isNegative()) {
+            throw new IllegalArgumentException("app.email-partitions.retention must not be negative");
+        }
+        if (archiveMode == null || archiveMode.isBlank()) archiveMode = "detach";
+        if (!archiveMode.equals("detach") && !archiveMode.equals("drop")) {
+            throw new IllegalArgumentException("app.email-partitions.archive-mode must be 'detach' or 'drop'");
+        }
+    }
+}
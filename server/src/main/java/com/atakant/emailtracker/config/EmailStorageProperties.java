@@ -0,0 +1,18 @@
+package com.atakant.emailtracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.email-storage")
+public record EmailStorageProperties(
+        int maxBodyChars,               // stored bodies are truncated to this budget
+        String compression,             // "deflate" (bytea) or "none" (plain TEXT)
+        boolean dropNonCandidateBodies  // clear bodies that fail the candidate filter once classified
+) {
+    public EmailStorageProperties {
+        if (maxBodyChars <= 0) maxBodyChars = 20_000;
+        if (compression == null || compression.isBlank()) compression = "deflate";
+        if (!compression.equals("deflate") && !compression.equals("none")) {
+            throw new IllegalArgumentException("app.email-storage.compression must be 'deflate' or 'none'");
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.atakant.emailtracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.gmail.backfill")
+public record GmailBackfillProperties(
+        int targetShardSize,    // split a shard while Gmail estimates more messages than this
+        Duration minShardSpan,  // never split below this time span
+        int listConcurrency     // shards listed in parallel
+) {
+    public GmailBackfillProperties {
+        if (targetShardSize <= 0) targetShardSize = 500;
+        if (minShardSpan == null || minShardSpan.isNegative() || minShardSpan.isZero()) minShardSpan = Duration.ofDays(1);
+        if (listConcurrency <= 0) listConcurrency = 4;
+    }
+}
@@ -1,7 +1,9 @@
 package com.atakant.emailtracker.config;
 
+import com.atakant.emailtracker.gmail.JdkHttpTransport;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
 import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.services.gmail.Gmail;
 import org.springframework.context.annotation.Bean;
@@ -17,9 +19,16 @@ import com.google.api.client.http.HttpRequest;
 @Configuration
 public class GmailConfig {
 
+    @Bean(destroyMethod = "shutdown")
+    public HttpTransport gmailHttpTransport(GmailTransportProperties props) throws Exception {
+        if ("net".equals(props.type())) {
+            return GoogleNetHttpTransport.newTrustedTransport();
+        }
+        return new JdkHttpTransport(props);
+    }
+
     @Bean
-    public Gmail gmail(OAuth2AuthorizedClientManager clientManager) throws Exception {
-        var httpTransport = GoogleNetHttpTransport.newTrustedTransport();
+    public Gmail gmail(OAuth2AuthorizedClientManager clientManager, HttpTransport httpTransport) throws Exception {
         var jsonFactory = JacksonFactory.getDefaultInstance();
 
         HttpRequestInitializer requestInitializer = (HttpRequest request) -> {
@@ -0,0 +1,39 @@
+package com.atakant.emailtracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.gmail.fetch")
+public record GmailFetchProperties(
+        int initialConcurrency,
+        int minConcurrency,
+        int maxConcurrency,
+        Duration latencyTarget,     // GETs slower than this stop the additive increase
+        int maxRetries,
+        Duration retryBackoff,      // base delay, doubled per retry round
+        Duration maxRetryBackoff,
+        int maxBodyChars,           // extracted body text is cut off at this length
+        String format               // messages.get format: "full" (JSON part tree) or "raw" (RFC 822)
+) {
+    public GmailFetchProperties {
+        if (minConcurrency <= 0) minConcurrency = 1;
+        if (maxConcurrency <= 0) maxConcurrency = 32;
+        if (initialConcurrency <= 0) initialConcurrency = 8;
+        if (minConcurrency > maxConcurrency) {
+            throw new IllegalArgumentException("app.gmail.fetch.min-concurrency must not exceed max-concurrency");
+        }
+        initialConcurrency = Math.max(minConcurrency, Math.min(initialConcurrency, maxConcurrency));
+        if (latencyTarget == null) latencyTarget = Duration.ofMillis(1500);
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("app.gmail.fetch.max-retries must not be negative");
+        }
+        if (retryBackoff == null) retryBackoff = Duration.ofMillis(500);
+        if (maxRetryBackoff == null) maxRetryBackoff = Duration.ofSeconds(10);
+        if (maxBodyChars <= 0) maxBodyChars = 100_000;
+        if (format == null || format.isBlank()) format = "full";
+        if (!format.equals("full") && !format.equals("raw")) {
+            throw new IllegalArgumentException("app.gmail.fetch.format must be 'full' or 'raw'");
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.atakant.emailtracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+@ConfigurationProperties(prefix = "app.gmail.query")
+public record GmailQueryProperties(
+        String mode,                     // "candidates" (server-side filter) or "all" (legacy wide query)
+        List<String> excludeCategories,  // Gmail categories dropped from the candidate query
+        boolean wideNetFallback          // also run the wide query after the candidate pass
+) {
+    public GmailQueryProperties {
+        if (mode == null || mode.isBlank()) mode = "candidates";
+        if (!mode.equals("candidates") && !mode.equals("all")) {
+            throw new IllegalArgumentException("app.gmail.query.mode must be 'candidates' or 'all'");
+        }
+        excludeCategories = excludeCategories == null ? List.of() : List.copyOf(excludeCategories);
+    }
+}
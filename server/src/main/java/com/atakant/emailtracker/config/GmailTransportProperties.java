@@ -0,0 +1,26 @@
+package com.atakant.emailtracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.gmail.transport")
+public record GmailTransportProperties(
+        String type,                 // "jdk" (pooled, HTTP/2) or "net" (legacy HttpURLConnection)
+        boolean http2,
+        int maxConcurrentRequests,   // exchanges in flight (headers and body download) across all fetch threads
+        int executorThreads,         // threads driving the HttpClient's async I/O
+        Duration connectTimeout,
+        Duration readTimeout
+) {
+    public GmailTransportProperties {
+        if (type == null || type.isBlank()) type = "jdk";
+        if (!type.equals("jdk") && !type.equals("net")) {
+            throw new IllegalArgumentException("app.gmail.transport.type must be 'jdk' or 'net'");
+        }
+        if (maxConcurrentRequests <= 0) maxConcurrentRequests = 32;
+        if (executorThreads <= 0) executorThreads = 4;
+        if (connectTimeout == null) connectTimeout = Duration.ofSeconds(10);
+        if (readTimeout == null) readTimeout = Duration.ofSeconds(30);
+    }
+}
@@ -0,0 +1,20 @@
+package com.atakant.emailtracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.gmail.known-ids")
+public record KnownIdsProperties(
+        boolean enabled,
+        int initialCapacity,      // ids the first Bloom slice holds before the filter grows
+        double falsePositiveRate, // bound on "maybe stored" answers for ids that are not stored
+        int maxCachedFilters      // per-user filters kept in memory, least recently used evicted first
+) {
+    public KnownIdsProperties {
+        if (initialCapacity <= 0) initialCapacity = 10_000;
+        if (falsePositiveRate <= 0) falsePositiveRate = 0.01;
+        if (maxCachedFilters <= 0) maxCachedFilters = 200;
+        if (falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("app.gmail.known-ids.false-positive-rate must be below 1");
+        }
+    }
+}
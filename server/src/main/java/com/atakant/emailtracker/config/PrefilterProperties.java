@@ -0,0 +1,24 @@
+package com.atakant.emailtracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.llm.prefilter")
+public record PrefilterProperties(
+        boolean enabled,
+        double skipThreshold,       // skip the LLM when P(non-application) is at least this
+        int minExamplesPerClass,    // the model only votes once it has seen this many of each verdict
+        int maxTrainingExamples,    // most recent stored verdicts loaded when a user's model is first built
+        int featureBits,            // hashed feature space is 2^featureBits buckets per class
+        int maxCachedModels         // per-user models kept in memory, least recently used evicted first
+) {
+    public PrefilterProperties {
+        if (skipThreshold <= 0) skipThreshold = 0.97;
+        if (skipThreshold >= 1) {
+            throw new IllegalArgumentException("app.llm.prefilter.skip-threshold must be below 1");
+        }
+        if (minExamplesPerClass <= 0) minExamplesPerClass = 30;
+        if (maxTrainingExamples <= 0) maxTrainingExamples = 2000;
+        if (featureBits <= 0) featureBits = 16;
+        if (maxCachedModels <= 0) maxCachedModels = 200;
+    }
+}
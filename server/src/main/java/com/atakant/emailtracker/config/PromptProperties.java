@@ -0,0 +1,20 @@
+package com.atakant.emailtracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "app.llm.prompt")
+public record PromptProperties(
+        int maxBodyTokens,   // estimated-token budget for the email body after compaction
+        int windowChars,     // context kept on each side of a relevance hit when over budget
+        int threadContextTokens,   // budget for each earlier message of a thread sent as context
+        int threadContextMessages  // at most this many earlier thread messages go into a prompt
+) {
+    public PromptProperties {
+        if (maxBodyTokens <= 0) maxBodyTokens = 1200;
+        if (windowChars <= 0) windowChars = 400;
+        if (threadContextTokens <= 0) threadContextTokens = 150;
+        if (threadContextMessages < 0) {
+            throw new IllegalArgumentException("app.llm.prompt.thread-context-messages must not be negative");
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.atakant.emailtracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.purge")
+public record PurgeProperties(
+        int chunkSize,        // rows removed per DELETE statement, each in its own transaction
+        Duration chunkPause   // sleep between chunks so a big purge leaves room for other writers
+) {
+    public PurgeProperties {
+        if (chunkSize <= 0) chunkSize = 1000;
+        if (chunkPause == null) chunkPause = Duration.ZERO;
+    }
+}
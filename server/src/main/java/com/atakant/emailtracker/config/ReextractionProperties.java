@@ -0,0 +1,18 @@
+package com.atakant.emailtracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.reextraction")
+public record ReextractionProperties(
+        int threadsPerPage,   // threads loaded, extracted and checkpointed together
+        Duration pagePause,   // pause between pages to spread LLM load
+        int extractAttempts   // LLM calls per thread within a page before the run stops at that page
+) {
+    public ReextractionProperties {
+        if (threadsPerPage <= 0) threadsPerPage = 25;
+        if (pagePause == null || pagePause.isNegative()) pagePause = Duration.ZERO;
+        if (extractAttempts <= 0) extractAttempts = 3;
+    }
+}
@@ -0,0 +1,77 @@
+package com.atakant.emailtracker.config;
+
+import com.atakant.emailtracker.auth.UserRepository;
+import com.atakant.emailtracker.service.RecentWrites;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * With app.replicas.enabled, the application DataSource decides per transaction: read-only
+ * transactions (readOnly = true) take their connection from {@link ReplicaRoutingDataSource},
+ * everything else from the primary pool. The physical connection is fetched lazily at the
+ * first statement, after Spring has marked the transaction read-only.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.replicas", name = "enabled", havingValue = "true")
+public class ReplicaDataSourceConfig implements WebMvcConfigurer {
+
+    private final ObjectProvider<UserRepository> users;
+
+    public ReplicaDataSourceConfig(ObjectProvider<UserRepository> users) {
+        this.users = users;
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             DataSourceProperties properties,
+                                                             RecentWrites recentWrites,
+                                                             ReplicaProperties props,
+                                                             TaskScheduler maintenanceScheduler) {
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (int i = 0; i < props.urls().size(); i++) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("replica-" + (i + 1));
+            pool.setJdbcUrl(props.urls().get(i));
+            pool.setUsername(props.username() != null ? props.username() : properties.determineUsername());
+            pool.setPassword(props.password() != null ? props.password() : properties.determinePassword());
+            pool.setMaximumPoolSize(props.poolSize());
+            pool.setReadOnly(true);
+            pool.setInitializationFailTimeout(-1); // start even while a replica is down; the lag check keeps it out
+            pools.add(pool);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, pools, recentWrites, props, maintenanceScheduler);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaRoutingDataSource replicaRoutingDataSource) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primaryDataSource);
+        proxy.setReadOnlyDataSource(replicaRoutingDataSource);
+        return proxy;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ReplicaReadInterceptor(users));
+    }
+}
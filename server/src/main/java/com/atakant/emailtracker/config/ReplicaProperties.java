@@ -0,0 +1,35 @@
+package com.atakant.emailtracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "app.replicas")
+public record ReplicaProperties(
+        boolean enabled,                 // route read-only transactions of GET requests and exports to the replicas
+        List<String> urls,               // JDBC urls of streaming replicas; username/password default to spring.datasource
+        String username,
+        String password,
+        int poolSize,                    // connections per replica pool
+        Duration maxLag,                 // a replica further behind than this gets no reads until it catches up
+        Duration lagCheckInterval,       // how often every replica's replay lag is measured
+        Duration readYourWritesWindow    // the writing node keeps a user's reads on the primary this long if the last-write marker is not stored
+) {
+    public ReplicaProperties {
+        if (urls == null) urls = List.of();
+        if (poolSize <= 0) poolSize = 10;
+        if (maxLag == null) maxLag = Duration.ofSeconds(5);
+        if (lagCheckInterval == null) lagCheckInterval = Duration.ofSeconds(2);
+        if (readYourWritesWindow == null) readYourWritesWindow = Duration.ofSeconds(30);
+        if (maxLag.isNegative() || readYourWritesWindow.isNegative()) {
+            throw new IllegalArgumentException("app.replicas.max-lag and read-your-writes-window must not be negative");
+        }
+        if (lagCheckInterval.isZero() || lagCheckInterval.isNegative()) {
+            throw new IllegalArgumentException("app.replicas.lag-check-interval must be positive");
+        }
+        if (enabled && urls.isEmpty()) {
+            throw new IllegalArgumentException("app.replicas.urls must list at least one replica when enabled");
+        }
+    }
+}
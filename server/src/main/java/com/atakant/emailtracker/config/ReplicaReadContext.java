@@ -0,0 +1,28 @@
+package com.atakant.emailtracker.config;
+
+import java.util.UUID;
+
+/**
+ * The user whose read-only work on this thread may be served by a replica. Nothing bound
+ * means primary: ingest, re-extraction and every write path never bind, so their own
+ * read-only lookups always see what they just wrote.
+ */
+public final class ReplicaReadContext {
+
+    private static final ThreadLocal<UUID> USER = new ThreadLocal<>();
+
+    private ReplicaReadContext() {
+    }
+
+    public static void bind(UUID userId) {
+        USER.set(userId);
+    }
+
+    public static UUID current() {
+        return USER.get();
+    }
+
+    public static void clear() {
+        USER.remove();
+    }
+}
@@ -0,0 +1,72 @@
+package com.atakant.emailtracker.config;
+
+import com.atakant.emailtracker.auth.User;
+import com.atakant.emailtracker.auth.UserRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Binds the signed-in user to {@link ReplicaReadContext} for GET requests, before the handler
+ * opens its read-only transaction. The user lookup itself runs unbound, on the primary; ids of
+ * the most recently active users are cached.
+ */
+class ReplicaReadInterceptor implements AsyncHandlerInterceptor {
+
+    private static final int MAX_CACHED_USERS = 10_000;
+
+    private final ObjectProvider<UserRepository> users;
+    // access-ordered, so the eldest entry is the least recently seen user
+    private final Map<String, UUID> userIdByEmail = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, UUID> eldest) {
+            return size() > MAX_CACHED_USERS;
+        }
+    };
+
+    ReplicaReadInterceptor(ObjectProvider<UserRepository> users) {
+        this.users = users;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!"GET".equals(request.getMethod())) return true;
+        if (request.getUserPrincipal() instanceof Authentication auth && auth.getPrincipal() instanceof OAuth2User user) {
+            String email = user.getAttribute("email");
+            UUID userId = email == null ? null : userId(email);
+            if (userId != null) ReplicaReadContext.bind(userId);
+        }
+        return true;
+    }
+
+    private UUID userId(String email) {
+        synchronized (userIdByEmail) {
+            UUID cached = userIdByEmail.get(email);
+            if (cached != null) return cached;
+        }
+        UUID userId = users.getObject().findByEmail(email).map(User::getId).orElse(null);
+        if (userId != null) {
+            synchronized (userIdByEmail) {
+                userIdByEmail.put(email, userId);
+            }
+        }
+        return userId;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ReplicaReadContext.clear();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ReplicaReadContext.clear();
+    }
+}
@@ -0,0 +1,145 @@
+package com.atakant.emailtracker.config;
+
+import com.atakant.emailtracker.service.RecentWrites;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.TaskScheduler;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connections for read-only transactions. Hands out a replica connection (round robin over
+ * the replicas within app.replicas.max-lag that have replayed past the user's last write in
+ * user_last_writes) when a user is bound in {@link ReplicaReadContext}; otherwise the primary.
+ * Replica lag and replay positions are measured in the background; the user's marker is one
+ * primary-key lookup on the primary, so a write served by any node is visible to the next read.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    // an idle replica has nothing left to replay; its last replay timestamp only looks old
+    private static final String LAG_SQL = """
+            SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0
+                        WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                        ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), -1)
+                   END,
+                   (CASE WHEN pg_is_in_recovery() THEN pg_last_wal_replay_lsn()
+                         ELSE pg_current_wal_lsn() END - '0/0'::pg_lsn)::bigint
+            """;
+
+    private static final String LAST_WRITE_SQL = "SELECT lsn FROM user_last_writes WHERE user_id = ?";
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final RecentWrites recentWrites;
+    private final ReplicaProperties props;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledFuture<?> lagCheck;
+
+    private static final class Replica {
+        final HikariDataSource pool;
+        volatile boolean usable;
+        volatile double lagSeconds = -1;
+        volatile long replayLsn = -1;
+
+        Replica(HikariDataSource pool) {
+            this.pool = pool;
+        }
+    }
+
+    public ReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicaPools,
+                                    RecentWrites recentWrites, ReplicaProperties props, TaskScheduler scheduler) {
+        this.primary = primary;
+        this.recentWrites = recentWrites;
+        this.props = props;
+        replicaPools.forEach(p -> replicas.add(new Replica(p)));
+        this.lagCheck = scheduler.scheduleWithFixedDelay(this::checkLag, props.lagCheckInterval());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = pick();
+        if (replica != null) {
+            try {
+                return replica.pool.getConnection();
+            } catch (SQLException e) {
+                replica.usable = false;
+                log.warn("Replica {} unavailable, reading from primary: {}", replica.pool.getPoolName(), e.toString());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    private Replica pick() {
+        UUID userId = ReplicaReadContext.current();
+        if (userId == null || recentWrites.wroteRecently(userId)) return null;
+        long lastWrite = lastWriteLsn(userId);
+        if (lastWrite == Long.MAX_VALUE) return null;
+        int n = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), n);
+        for (int i = 0; i < n; i++) {
+            Replica r = replicas.get((start + i) % n);
+            if (r.usable && r.replayLsn >= lastWrite) return r;
+        }
+        return null;
+    }
+
+    // -1 when the user never wrote; MAX_VALUE (read from the primary) when the marker is unknown
+    private long lastWriteLsn(UUID userId) {
+        try (Connection c = primary.getConnection();
+             PreparedStatement ps = c.prepareStatement(LAST_WRITE_SQL)) {
+            ps.setObject(1, userId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        } catch (SQLException e) {
+            log.warn("Last write lookup failed for userId={}, reading from primary: {}", userId, e.toString());
+            return Long.MAX_VALUE;
+        }
+    }
+
+    void checkLag() {
+        double maxLag = props.maxLag().toMillis() / 1000.0;
+        for (Replica r : replicas) {
+            boolean was = r.usable;
+            try (Connection c = r.pool.getConnection();
+                 Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery(LAG_SQL)) {
+                rs.next();
+                r.lagSeconds = rs.getDouble(1);
+                r.replayLsn = rs.getLong(2);
+                r.usable = r.lagSeconds >= 0 && r.lagSeconds <= maxLag;
+            } catch (SQLException | RuntimeException e) {
+                r.lagSeconds = -1;
+                r.replayLsn = -1;
+                r.usable = false;
+                if (was) log.warn("Replica {} lag check failed: {}", r.pool.getPoolName(), e.toString());
+            }
+            if (was != r.usable) {
+                log.info("Replica {} {} (lag {}s)", r.pool.getPoolName(), r.usable ? "serving reads" : "skipped", r.lagSeconds);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        lagCheck.cancel(true);
+        replicas.forEach(r -> r.pool.close());
+    }
+}
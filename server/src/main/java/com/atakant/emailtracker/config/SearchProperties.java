@@ -0,0 +1,16 @@
+package com.atakant.emailtracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.search")
+public record SearchProperties(
+        int backfillBatchSize,   // emails indexed per transaction when filling search_tsv for existing rows
+        Duration backfillPause   // sleep between backfill batches so ingest keeps the database
+) {
+    public SearchProperties {
+        if (backfillBatchSize <= 0) backfillBatchSize = 500;
+        if (backfillPause == null) backfillPause = Duration.ofMillis(100);
+    }
+}
@@ -0,0 +1,21 @@
+package com.atakant.emailtracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.stats")
+public record StatsProperties(
+        int weeks,                 // applications-per-week buckets returned, ending with the current week
+        int topCompanies,          // companies with the most applications returned
+        Duration rebuildInterval   // every user's counters are recomputed this often to repair drift; 0 disables
+) {
+    public StatsProperties {
+        if (weeks <= 0) weeks = 12;
+        if (topCompanies <= 0) topCompanies = 10;
+        if (rebuildInterval == null) rebuildInterval = Duration.ofHours(24);
+        if (rebuildInterval.isNegative()) {
+            throw new IllegalArgumentException("app.stats.rebuild-interval must not be negative");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.atakant.emailtracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "app.stream")
+public record StreamProperties(
+        Duration emitterTimeout,      // an SSE connection is closed after this; EventSource reconnects with Last-Event-ID
+        Duration heartbeat,           // comment frames keep idle connections open through proxies
+        boolean pgNotify,             // also LISTEN for changes committed by other nodes
+        Duration tombstoneRetention,  // deletions older than this are pruned; ?since= from before them gets a full reload; 0 keeps all
+        int pushThreads,              // threads reading deltas for dirty users; they never wait on a client
+        int sendThreads,              // threads writing events to connections
+        Duration sendTimeout          // a connection whose write has not finished after this is dropped
+) {
+    public StreamProperties {
+        if (emitterTimeout == null) emitterTimeout = Duration.ofMinutes(30);
+        if (heartbeat == null) heartbeat = Duration.ofSeconds(25);
+        if (tombstoneRetention == null) tombstoneRetention = Duration.ofDays(30);
+        if (tombstoneRetention.isNegative()) {
+            throw new IllegalArgumentException("app.stream.tombstone-retention must not be negative");
+        }
+        if (pushThreads <= 0) pushThreads = 2;
+        if (sendThreads <= 0) sendThreads = 8;
+        if (sendTimeout == null) sendTimeout = Duration.ofSeconds(10);
+        if (sendTimeout.isZero() || sendTimeout.isNegative()) {
+            throw new IllegalArgumentException("app.stream.send-timeout must be positive");
+        }
+    }
+}
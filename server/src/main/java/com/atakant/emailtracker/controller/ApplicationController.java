@@ -1,19 +1,41 @@
 package com.atakant.emailtracker.controller;
 
 import com.atakant.emailtracker.domain.Application;
+import com.atakant.emailtracker.domain.PurgeJob;
+import com.atakant.emailtracker.repo.ApplicationDelta;
+import com.atakant.emailtracker.repo.ApplicationFilter;
+import com.atakant.emailtracker.repo.ApplicationListRow;
 import com.atakant.emailtracker.repo.ApplicationRepository;
-import com.atakant.emailtracker.service.ApplicationService;
+import com.atakant.emailtracker.repo.ApplicationStats;
+import com.atakant.emailtracker.service.ApplicationStatsService;
 import com.atakant.emailtracker.auth.User;
 import com.atakant.emailtracker.auth.UserRepository;
-import com.atakant.emailtracker.service.GmailService;
+import com.atakant.emailtracker.service.ApplicationStreamHub;
+import com.atakant.emailtracker.service.ApplicationsChangedEvent;
+import com.atakant.emailtracker.service.PurgeService;
+import com.atakant.emailtracker.utils.KeysetCursor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.net.URI;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @RestController
@@ -26,30 +48,137 @@ public class ApplicationController {
 
   private final ApplicationRepository applications;
   private final UserRepository users;
-  private final ApplicationService applicationService;
-  private final GmailService gmailService;
+  private final PurgeService purgeService;
+  private final ApplicationStreamHub streamHub;
+  private final ApplicationEventPublisher events;
+  private final ApplicationStatsService statsService;
 
-  public ApplicationController(ApplicationRepository applications, UserRepository users, ApplicationService applicationService, GmailService gmailService) {
+  public ApplicationController(ApplicationRepository applications, UserRepository users, PurgeService purgeService,
+                               ApplicationStreamHub streamHub, ApplicationEventPublisher events,
+                               ApplicationStatsService statsService) {
     this.applications = applications;
     this.users = users;
-    this.applicationService = applicationService;
-    this.gmailService = gmailService;
+    this.purgeService = purgeService;
+    this.streamHub = streamHub;
+    this.events = events;
+    this.statsService = statsService;
   }
 
+  private static final int DEFAULT_PAGE_SIZE = 50;
+  private static final int MAX_PAGE_SIZE = 200;
+
   /**
    * GET /applications  -> current user's applications
    * Alias GET /applications/all -> same behavior (no admin/global data).
+   *
+   * With any of limit/cursor/status/company/from/to, returns one keyset page of list rows:
+   * {"items": [...], "nextCursor": "..."} (nextCursor is null on the last page).
+   * from/to are ISO dates or instants bounding last_updated_at, to exclusive.
+   * Without them, the full entity list as before.
+   *
+   * Every response carries a strong ETag derived from the user's change version, and a
+   * matching If-None-Match gets 304. With ?since=<version>, returns only what changed after
+   * that version: {"version": n, "items": [...], "deleted": [ids]}. A version older than the
+   * retained deletions (app.stream.tombstone-retention) gets 410; the client reloads in full.
    */
   @GetMapping
-  public List<Application> list(@AuthenticationPrincipal OAuth2User principal) {
+  @Transactional(readOnly = true)
+  public Object list(@AuthenticationPrincipal OAuth2User principal,
+                     WebRequest request,
+                     @RequestParam(required = false) Long since,
+                     @RequestParam(required = false) Integer limit,
+                     @RequestParam(required = false) String cursor,
+                     @RequestParam(required = false) List<String> status,
+                     @RequestParam(required = false) String company,
+                     @RequestParam(required = false) String from,
+                     @RequestParam(required = false) String to) {
     User me = requireUser(principal);
-    return applications.findByUserIdOrderByLastUpdatedAtDesc(me.getId());
+    // read before the rows: a write racing this request can only make the ETag older, never newer
+    long version = applications.currentChangeVersion(me.getId());
+    if (request.checkNotModified(etag(version, request))) {
+      return null; // 304
+    }
+
+    if (since != null) {
+      if (since < applications.tombstonesPrunedThrough(me.getId())) {
+        throw new ResponseStatusException(HttpStatus.GONE, "since is older than the retained deletions; reload without it");
+      }
+      return new ApplicationDelta(version,
+              applications.findChangedSince(me.getId(), since),
+              applications.findDeletedSince(me.getId(), since));
+    }
+
+    boolean paged = limit != null || cursor != null || status != null || company != null || from != null || to != null;
+    if (!paged) {
+      return applications.findByUserIdOrderByLastUpdatedAtDesc(me.getId());
+    }
+
+    int size = Math.max(1, Math.min(limit == null ? DEFAULT_PAGE_SIZE : limit, MAX_PAGE_SIZE));
+    ApplicationFilter filter;
+    KeysetCursor after;
+    try {
+      filter = new ApplicationFilter(status, company, parseInstant(from), parseInstant(to));
+      after = cursor == null || cursor.isBlank() ? null : KeysetCursor.decode(cursor);
+    } catch (IllegalArgumentException | DateTimeParseException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+
+    // one extra row tells whether another page exists without a count query
+    List<ApplicationListRow> rows = applications.findPage(me.getId(), filter, after, size + 1);
+    String next = null;
+    if (rows.size() > size) {
+      rows = rows.subList(0, size);
+      ApplicationListRow last = rows.get(size - 1);
+      next = new KeysetCursor(last.lastUpdatedAt(), last.id()).encode();
+    }
+    return new ApplicationPage(rows, next);
+  }
+
+  public record ApplicationPage(List<ApplicationListRow> items, String nextCursor) {
+  }
+
+  // The same version renders differently per query (page, filters, delta), so the query is part of the tag.
+  private static String etag(long version, WebRequest request) {
+    String query = request instanceof ServletWebRequest sw ? sw.getRequest().getQueryString() : null;
+    return "\"" + version + (query == null ? "" : "-" + Integer.toHexString(query.hashCode())) + "\"";
+  }
+
+  private static Instant parseInstant(String s) {
+    if (s == null || s.isBlank()) return null;
+    return s.length() == 10 ? LocalDate.parse(s).atStartOfDay(ZoneOffset.UTC).toInstant() : Instant.parse(s);
+  }
+
+  /**
+   * GET /applications/stats  -> counts by status, response rate, applications per week and
+   * top companies, read from counters the database keeps current (cost independent of the
+   * number of applications). No ETag: the week window moves with the clock, not the change version.
+   */
+  @GetMapping("/stats")
+  @Transactional(readOnly = true)
+  public ApplicationStats stats(@AuthenticationPrincipal OAuth2User principal) {
+    User me = requireUser(principal);
+    return statsService.stats(me.getId());
+  }
+
+  /**
+   * POST /applications/stats/rebuild  -> recompute the caller's counters from their applications.
+   * Returns {"drifted": n}, the number of counters that were wrong.
+   */
+  @PostMapping("/stats/rebuild")
+  public Map<String, Integer> rebuildStats(@AuthenticationPrincipal OAuth2User principal) {
+    User me = requireUser(principal);
+    return Map.of("drifted", statsService.rebuild(me.getId()));
   }
 
   @GetMapping("/all")
-  public List<Application> listAll(@AuthenticationPrincipal OAuth2User principal) {
+  @Transactional(readOnly = true)
+  public List<Application> listAll(@AuthenticationPrincipal OAuth2User principal, WebRequest request) {
     // Alias to the same user-scoped list
-    return list(principal);
+    User me = requireUser(principal);
+    if (request.checkNotModified(etag(applications.currentChangeVersion(me.getId()), request))) {
+      return null; // 304
+    }
+    return applications.findByUserIdOrderByLastUpdatedAtDesc(me.getId());
   }
 
   /**
@@ -65,6 +194,7 @@ public class ApplicationController {
 
     // Force ownership to authenticated user
     body.setUserId(me.getId());
+    body.setOrigin(Application.ORIGIN_USER);
 
     // Ensure id and timestamps
     if (body.getId() == null) {
@@ -72,18 +202,76 @@ public class ApplicationController {
     }
     body.setLastUpdatedAt(OffsetDateTime.now());
 
-    return applications.save(body);
+    Application saved = applications.save(body);
+    events.publishEvent(new ApplicationsChangedEvent(me.getId()));
+    return saved;
+  }
+
+  /**
+   * GET /applications/stream  -> Server-Sent Events of the caller's application changes.
+   * Each "applications" event carries {"version", "items", "deleted"} like ?since=; a
+   * reconnecting EventSource resumes from its Last-Event-ID. Resuming from before the retained
+   * deletions sends a "reset" event instead; the client reloads the full list.
+   */
+  @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter stream(@AuthenticationPrincipal OAuth2User principal,
+                           @RequestParam(required = false) Long since,
+                           @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+    User me = requireUser(principal);
+    Long resumeFrom = since;
+    if (resumeFrom == null && lastEventId != null) {
+      try {
+        resumeFrom = Long.parseLong(lastEventId.trim());
+      } catch (NumberFormatException ignore) {
+        // not one of our ids; start from the current version
+      }
+    }
+    return streamHub.subscribe(me.getId(), resumeFrom);
   }
 
   /**
-   * DELETE /applications  -> delete all for the current user.
+   * DELETE /applications  -> delete all applications and stored emails for the current user.
+   * Rows go in short chunked transactions. Answers 204 when done; with ?async=true (or when
+   * a purge is already running) answers 202 with the job, pollable at /applications/purge/{id}.
    */
   @DeleteMapping
-  @ResponseStatus(HttpStatus.NO_CONTENT) // 204
-  public void deleteAll(@AuthenticationPrincipal OAuth2User principal) {
+  public ResponseEntity<Map<String, Object>> deleteAll(@AuthenticationPrincipal OAuth2User principal,
+                                                       @RequestParam(defaultValue = "false") boolean async) {
     User me = requireUser(principal);
-    applicationService.deleteAllForUser(me.getId());
-    gmailService.deleteAllForUser(me.getId());
+    PurgeJob job;
+    try {
+      job = async ? purgeService.start(me.getId()) : purgeService.purge(me.getId());
+    } catch (IllegalStateException e) {
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+    }
+    if (PurgeJob.COMPLETED.equals(job.getStage())) {
+      return ResponseEntity.noContent().build(); // 204
+    }
+    if (PurgeJob.FAILED.equals(job.getStage())) {
+      return ResponseEntity.internalServerError().body(purgeStatus(job));
+    }
+    return ResponseEntity.accepted()
+            .location(URI.create("/applications/purge/" + job.getId()))
+            .body(purgeStatus(job));
+  }
+
+  @GetMapping("/purge/{jobId}")
+  public ResponseEntity<Map<String, Object>> purgeStatus(@AuthenticationPrincipal OAuth2User principal,
+                                                         @PathVariable UUID jobId) {
+    User me = requireUser(principal);
+    return purgeService.find(me.getId(), jobId)
+            .map(job -> ResponseEntity.ok(purgeStatus(job)))
+            .orElseGet(() -> ResponseEntity.notFound().build());
+  }
+
+  private static Map<String, Object> purgeStatus(PurgeJob job) {
+    var body = new LinkedHashMap<String, Object>();
+    body.put("jobId", job.getId());
+    body.put("stage", job.getStage());
+    body.put("applicationsDeleted", job.getApplicationsDeleted());
+    body.put("emailsDeleted", job.getEmailsDeleted());
+    body.put("error", job.getError());
+    return body;
   }
 
   private User requireUser(OAuth2User principal) {
@@ -0,0 +1,82 @@
+package com.atakant.emailtracker.controller;
+
+import com.atakant.emailtracker.auth.User;
+import com.atakant.emailtracker.auth.UserRepository;
+import com.atakant.emailtracker.repo.EmailRepository;
+import com.atakant.emailtracker.repo.EmailSearchHit;
+import com.atakant.emailtracker.utils.RankCursor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/emails")
+@CrossOrigin(origins = {
+        "http://localhost:5173",
+        "http://localhost:3000"
+})
+@RequiredArgsConstructor
+public class EmailController {
+
+  private static final int DEFAULT_PAGE_SIZE = 20;
+  private static final int MAX_PAGE_SIZE = 50;
+  private static final int MAX_QUERY_LENGTH = 256;
+
+  private final EmailRepository emails;
+  private final UserRepository users;
+
+  /**
+   * GET /emails/search?q=  -> the caller's stored emails matching q, best first.
+   * q uses web-search syntax: words, "quoted phrases", OR, -excluded.
+   * Returns {"items": [...], "nextCursor": "..."}; pass nextCursor back as cursor for the next page.
+   */
+  @GetMapping("/search")
+  @Transactional(readOnly = true)
+  public SearchPage search(@AuthenticationPrincipal OAuth2User principal,
+                           @RequestParam String q,
+                           @RequestParam(required = false) Integer limit,
+                           @RequestParam(required = false) String cursor) {
+    User me = requireUser(principal);
+    if (q.isBlank() || q.length() > MAX_QUERY_LENGTH) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q must be 1-" + MAX_QUERY_LENGTH + " characters");
+    }
+    int size = Math.max(1, Math.min(limit == null ? DEFAULT_PAGE_SIZE : limit, MAX_PAGE_SIZE));
+    RankCursor after;
+    try {
+      after = cursor == null || cursor.isBlank() ? null : RankCursor.decode(cursor);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+
+    // one extra row tells whether another page exists without a count query
+    List<EmailSearchHit> hits = emails.search(me.getId(), q.trim(), after, size + 1);
+    String next = null;
+    if (hits.size() > size) {
+      hits = hits.subList(0, size);
+      EmailSearchHit last = hits.get(size - 1);
+      next = new RankCursor(last.rank(), last.id()).encode();
+    }
+    return new SearchPage(hits, next);
+  }
+
+  public record SearchPage(List<EmailSearchHit> items, String nextCursor) {
+  }
+
+  private User requireUser(OAuth2User principal) {
+    if (principal == null) {
+      throw new ResponseStatusException(HttpStatus.UNAUTHORIZED);
+    }
+    String email = principal.getAttribute("email");
+    if (email == null) {
+      throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "No email from OAuth provider");
+    }
+    return users.findByEmail(email)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not registered"));
+  }
+}
@@ -0,0 +1,97 @@
+package com.atakant.emailtracker.controller;
+
+import com.atakant.emailtracker.auth.User;
+import com.atakant.emailtracker.auth.UserRepository;
+import com.atakant.emailtracker.service.ExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * GET /export/applications and /export/emails: downloads streamed row by row.
+ * format=ndjson (default) or csv; gzip=true sends a .gz file instead.
+ */
+@RestController
+@RequestMapping("/export")
+@CrossOrigin(origins = {
+        "http://localhost:5173",
+        "http://localhost:3000"
+})
+@RequiredArgsConstructor
+public class ExportController {
+
+  private final ExportService exportService;
+  private final UserRepository users;
+
+  @GetMapping("/applications")
+  public ResponseEntity<StreamingResponseBody> applications(@AuthenticationPrincipal OAuth2User principal,
+                                                            @RequestParam(defaultValue = "ndjson") String format,
+                                                            @RequestParam(defaultValue = "false") boolean gzip) {
+    UUID userId = requireUser(principal).getId();
+    ExportService.Format f = parseFormat(format);
+    return download("applications", f, gzip, out -> exportService.writeApplications(userId, f, out));
+  }
+
+  @GetMapping("/emails")
+  public ResponseEntity<StreamingResponseBody> emails(@AuthenticationPrincipal OAuth2User principal,
+                                                      @RequestParam(defaultValue = "ndjson") String format,
+                                                      @RequestParam(defaultValue = "false") boolean gzip,
+                                                      @RequestParam(defaultValue = "false") boolean body) {
+    UUID userId = requireUser(principal).getId();
+    ExportService.Format f = parseFormat(format);
+    return download("emails", f, gzip, out -> exportService.writeEmails(userId, f, body, out));
+  }
+
+  private static ResponseEntity<StreamingResponseBody> download(String name, ExportService.Format format, boolean gzip,
+                                                                StreamingResponseBody writer) {
+    String ext = format == ExportService.Format.CSV ? "csv" : "ndjson";
+    MediaType type = gzip ? MediaType.parseMediaType("application/gzip")
+            : format == ExportService.Format.CSV ? MediaType.parseMediaType("text/csv;charset=UTF-8")
+            : MediaType.parseMediaType("application/x-ndjson");
+
+    StreamingResponseBody body = !gzip ? writer : out -> {
+      GZIPOutputStream z = new GZIPOutputStream(out, 64 * 1024);
+      writer.writeTo(z);
+      z.finish(); // not close(): the container owns the response stream
+    };
+    return ResponseEntity.ok()
+            .contentType(type)
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                    .filename(name + "." + ext + (gzip ? ".gz" : ""))
+                    .build().toString())
+            .body(body);
+  }
+
+  private static ExportService.Format parseFormat(String format) {
+    try {
+      return ExportService.Format.valueOf(format.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be ndjson or csv");
+    }
+  }
+
+  private User requireUser(OAuth2User principal) {
+    if (principal == null) {
+      throw new ResponseStatusException(HttpStatus.UNAUTHORIZED);
+    }
+    String email = principal.getAttribute("email");
+    if (email == null) {
+      throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "No email from OAuth provider");
+    }
+    return users.findByEmail(email)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not registered"));
+  }
+}
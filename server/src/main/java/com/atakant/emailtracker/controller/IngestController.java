@@ -3,9 +3,14 @@ package com.atakant.emailtracker.controller;
 import com.atakant.emailtracker.auth.User;
 import com.atakant.emailtracker.auth.UserRepository;
 import com.atakant.emailtracker.domain.Email;
+import com.atakant.emailtracker.domain.IngestRun;
+import com.atakant.emailtracker.domain.ReextractionRun;
 import com.atakant.emailtracker.service.CandidateEmailService;
 import com.atakant.emailtracker.service.GmailService;
+import com.atakant.emailtracker.service.IngestFailedException;
+import com.atakant.emailtracker.service.IngestRunService;
 import com.atakant.emailtracker.service.RateLimitExceededException;
+import com.atakant.emailtracker.service.ReextractionService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -27,33 +32,35 @@ public class IngestController {
     private final GmailService gmailService;
     private final CandidateEmailService candidateEmailService;
     private  final UserRepository userRepository;
+    private final IngestRunService ingestRunService;
+    private final ReextractionService reextractionService;
 
     @PostMapping("/preview")
     public String preview(Model model,
                           @org.springframework.security.core.annotation.AuthenticationPrincipal OAuth2User principal,
                           Authentication authentication,
-                          @RequestParam(name = "after", required = false) String afterStr) {
+                          @RequestParam(name = "after", required = false) String afterStr,
+                          @RequestParam(name = "backfill", defaultValue = "false") boolean backfill,
+                          @RequestParam(name = "resume", defaultValue = "false") boolean resume) {
         model.addAttribute("email", principal.getAttribute("email"));
         try {
-            String afterArg = (afterStr == null || afterStr.isBlank()) ? null : afterStr.trim();
-            List<Email> ingested = gmailService.ingestAndSave(authentication, afterArg);
-
-            UUID userId = resolveCurrentUserId(principal);
-
-            CandidateEmailService.ProcessEmailsResult result = candidateEmailService.processEmails(userId, ingested);
+            IngestOutcome outcome = runIngest(principal, authentication, afterStr, backfill, resume);
+            CandidateEmailService.ProcessEmailsResult result = outcome.result();
 
             System.out.println("processed emails");
 
             model.addAttribute("payload",
-                    "Fetched & saved " + ingested.size() + " emails; found "
+                    "Fetched & saved " + outcome.ingested().size() + " emails; found "
                             + result.candidateEmailsFound() + " candidate emails; processed "
                             + result.candidateEmailsProcessed() + "; saved "
                             + result.saved() + " applications."
                             + (result.quotaTruncated() ? " " + result.quotaMessage() : ""));
 
             return "redirect:http://localhost:5173/applications";
-        } catch (RateLimitExceededException e) {
-            model.addAttribute("payload", e.getMessage());
+        } catch (IngestFailedException e) {
+            model.addAttribute("payload", e.getCause() instanceof RateLimitExceededException
+                    ? e.getMessage()
+                    : "Error: " + e.getMessage() + (e.isResumable() ? " (run " + e.getRunId() + " can be resumed)" : ""));
         } catch (Exception e) {
             model.addAttribute("payload", "Error: " + e.getMessage());
         }
@@ -73,19 +80,18 @@ public class IngestController {
             Model model,
             @org.springframework.security.core.annotation.AuthenticationPrincipal OAuth2User principal,
             Authentication authentication,
-            @RequestParam(name = "after", required = false) String afterStr
+            @RequestParam(name = "after", required = false) String afterStr,
+            @RequestParam(name = "backfill", defaultValue = "false") boolean backfill,
+            @RequestParam(name = "resume", defaultValue = "false") boolean resume
     ) {
         try {
-            String afterArg = (afterStr == null || afterStr.isBlank()) ? null : afterStr.trim();
-
-            java.util.List<Email> ingested = gmailService.ingestAndSave(authentication, afterArg);
-
-            java.util.UUID userId = resolveCurrentUserId(principal);
-            CandidateEmailService.ProcessEmailsResult result = candidateEmailService.processEmails(userId, ingested);
+            IngestOutcome outcome = runIngest(principal, authentication, afterStr, backfill, resume);
+            CandidateEmailService.ProcessEmailsResult result = outcome.result();
 
             return ResponseEntity.ok(java.util.Map.of(
                     "ok", true,
-                    "emails", ingested.size(),
+                    "runId", outcome.run().getId(),
+                    "emails", outcome.ingested().size(),
                     "candidateEmailsFound", result.candidateEmailsFound(),
                     "candidateEmailsProcessed", result.candidateEmailsProcessed(),
                     "saved", result.saved(),
@@ -94,17 +100,92 @@ public class IngestController {
                     "remainingRunsToday", result.remainingRunsToday(),
                     "remainingLlmEmailsToday", result.remainingLlmEmailsToday()
             ));
-        } catch (RateLimitExceededException e) {
-            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(java.util.Map.of(
+        } catch (IngestFailedException e) {
+            HttpStatus status = e.getCause() instanceof RateLimitExceededException
+                    ? HttpStatus.TOO_MANY_REQUESTS
+                    : HttpStatus.INTERNAL_SERVER_ERROR;
+            return ResponseEntity.status(status).body(java.util.Map.of(
                     "ok", false,
-                    "error", e.getMessage()
+                    "runId", e.getRunId(),
+                    "stage", e.getStage(),
+                    "resumable", e.isResumable(),
+                    "error", String.valueOf(e.getMessage())
             ));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(java.util.Map.of(
                     "ok", false,
-                    "error", e.getMessage()
+                    "error", String.valueOf(e.getMessage())
             ));
         }
     }
-}
 
+    /** Re-extracts stored emails under the current prompt/model version in the background. */
+    @PostMapping("/reextract")
+    @ResponseBody
+    public ResponseEntity<java.util.Map<String, Object>> reextract(
+            @org.springframework.security.core.annotation.AuthenticationPrincipal OAuth2User principal) {
+        try {
+            ReextractionRun run = reextractionService.start(resolveCurrentUserId(principal));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(reextractionStatus(run));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(java.util.Map.of(
+                    "ok", false,
+                    "error", String.valueOf(e.getMessage())
+            ));
+        }
+    }
+
+    @GetMapping("/reextract/{runId}")
+    @ResponseBody
+    public ResponseEntity<java.util.Map<String, Object>> reextractStatus(
+            @org.springframework.security.core.annotation.AuthenticationPrincipal OAuth2User principal,
+            @PathVariable UUID runId) {
+        return reextractionService.find(resolveCurrentUserId(principal), runId)
+                .map(run -> ResponseEntity.ok(reextractionStatus(run)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private static java.util.Map<String, Object> reextractionStatus(ReextractionRun run) {
+        var body = new java.util.LinkedHashMap<String, Object>();
+        body.put("ok", !ReextractionRun.FAILED.equals(run.getStage()));
+        body.put("runId", run.getId());
+        body.put("version", run.getVersion());
+        body.put("stage", run.getStage());
+        body.put("threadsSeen", run.getThreadsSeen());
+        body.put("threadsExtracted", run.getThreadsExtracted());
+        body.put("threadsFailed", run.getThreadsFailed());
+        body.put("applicationsSaved", run.getApplicationsSaved());
+        body.put("error", run.getError());
+        return body;
+    }
+
+    // Records the run's stage as it goes; running out of quota pauses it and any other failure
+    // marks it failed, and ?resume=true continues either.
+    private IngestOutcome runIngest(OAuth2User principal, Authentication authentication,
+                                    String afterStr, boolean backfill, boolean resume) {
+        String afterArg = (afterStr == null || afterStr.isBlank()) ? null : afterStr.trim();
+        UUID userId = resolveCurrentUserId(principal);
+
+        IngestRun run = ingestRunService.startOrResume(userId, afterArg, resume);
+        try {
+            List<Email> ingested = backfill
+                    ? gmailService.ingestBackfill(authentication, run)
+                    : gmailService.ingestAndSave(authentication, run);
+
+            ingestRunService.markStage(run, IngestRun.EXTRACTING);
+            CandidateEmailService.ProcessEmailsResult result = candidateEmailService.processEmails(userId, ingested);
+            ingestRunService.complete(run, result.saved());
+
+            return new IngestOutcome(run, ingested, result);
+        } catch (RateLimitExceededException e) {
+            ingestRunService.pause(run, e);
+            throw new IngestFailedException(run.getId(), run.getStage(), IngestRunService.isResumable(run), e);
+        } catch (Exception e) {
+            ingestRunService.fail(run, e);
+            throw new IngestFailedException(run.getId(), run.getStage(), IngestRunService.isResumable(run), e);
+        }
+    }
+
+    private record IngestOutcome(IngestRun run, List<Email> ingested, CandidateEmailService.ProcessEmailsResult result) {
+    }
+}
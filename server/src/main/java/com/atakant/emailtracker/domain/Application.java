@@ -14,6 +14,9 @@ import java.util.*;
 @Builder
 public class Application {
 
+  public static final String ORIGIN_LLM = "llm";   // created by the extraction upsert
+  public static final String ORIGIN_USER = "user"; // created or edited through POST /applications
+
   @Id
   @Builder.Default
   private UUID id = UUID.randomUUID();
@@ -35,6 +38,10 @@ public class Application {
   @Column(name = "first_seen_at", nullable = false)
   private OffsetDateTime firstSeenAt;
 
+  // sent_at of the earliest email this was extracted from; null for applications added by hand
+  @Column(name = "applied_at")
+  private OffsetDateTime appliedAt;
+
   @Column(nullable = false)
   private String status; // enum-as-string for MVP
 
@@ -58,9 +65,20 @@ public class Application {
   @Column(name = "normalized_role_title", nullable = false)
   private String normalizedRoleTitle;
 
+  // stamped by the applications_stamp_version_* triggers (V17), re-read after each write
+  @org.hibernate.annotations.Generated(event = {
+          org.hibernate.generator.EventType.INSERT, org.hibernate.generator.EventType.UPDATE})
+  @Column(name = "change_version", insertable = false, updatable = false)
+  private long changeVersion;
+
   @Column(name = "canonical_key")
   private String canonicalKey;
 
+  // a re-extraction rebuild only ever removes ORIGIN_LLM rows
+  @Column(nullable = false)
+  @Builder.Default
+  private String origin = ORIGIN_USER;
+
   @PrePersist
   void onCreate() {
     if (id == null) id = UUID.randomUUID();
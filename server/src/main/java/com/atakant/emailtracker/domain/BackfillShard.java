@@ -0,0 +1,75 @@
+package com.atakant.emailtracker.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Entity
+@Table(name = "backfill_shards")
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EqualsAndHashCode(of = "id")
+public class BackfillShard {
+
+    public static final String PENDING = "pending";
+    public static final String DONE = "done";
+
+    @Id
+    @Builder.Default
+    private UUID id = UUID.randomUUID();
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(name = "window_after", nullable = false)
+    private LocalDate windowAfter; // the backfill's after: date; shards of one backfill share it
+
+    @Column(name = "shard_start", nullable = false)
+    private Instant shardStart;
+
+    @Column(name = "shard_end", nullable = false)
+    private Instant shardEnd;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private String status = PENDING;
+
+    @Column(name = "estimated_count", nullable = false)
+    @Builder.Default
+    private int estimatedCount = 0;
+
+    @Column(name = "listed_count")
+    private Integer listedCount;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    public boolean isDone() {
+        return DONE.equals(status);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        if (id == null) id = UUID.randomUUID();
+        updatedAt = Instant.now();
+    }
+}
@@ -1,5 +1,6 @@
 package com.atakant.emailtracker.domain;
 
+import com.atakant.emailtracker.utils.TextCompression;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.Instant;
@@ -33,12 +34,21 @@ public class Email {
 
     private String subject;
 
-    @Column(name = "sent_at")
-    private Instant sentAt;
+    @Column(name = "sent_at", nullable = false)
+    private Instant sentAt; // partition key of emails
 
     @Column(name = "body_text", columnDefinition = "TEXT")
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
     private String bodyText;
 
+    @Column(name = "body_compressed")
+    @ToString.Exclude
+    private byte[] bodyCompressed; // deflated body; set instead of bodyText by EmailStoragePolicy
+
+    @Column(name = "body_simhash")
+    private Long bodySimhash; // SimHash of the normalized body, for near-duplicate detection
+
     @Column(name = "raw_label")
     private String rawLabel;
 
@@ -51,6 +61,20 @@ public class Email {
     @Column(name = "internal_date_ms")
     private Long internalDateMs;
 
+    @Column(name = "ingest_run_id")
+    private UUID ingestRunId; // run that stored this email
+
+    /** Plain body text, inflated transparently when stored compressed. */
+    public String getBodyText() {
+        if (bodyText != null) return bodyText;
+        return bodyCompressed == null ? null : TextCompression.inflate(bodyCompressed);
+    }
+
+    public void setStoredBody(String plain, byte[] compressed) {
+        this.bodyText = plain;
+        this.bodyCompressed = compressed;
+    }
+
     @PrePersist
     void ensureId() {
         if (id == null) id = UUID.randomUUID();
@@ -0,0 +1,79 @@
+package com.atakant.emailtracker.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "email_extractions")
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EqualsAndHashCode(of = "id")
+public class EmailExtraction {
+
+    @Id
+    @Builder.Default
+    private UUID id = UUID.randomUUID();
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(name = "email_id", nullable = false)
+    private UUID emailId; // latest message of the thread the verdict was made for
+
+    @Column(name = "thread_id", nullable = false)
+    private String threadId;
+
+    @Column(nullable = false)
+    private String version; // LlmClient.extractionVersion() at extraction time
+
+    @Column(name = "is_application", nullable = false)
+    private boolean isApplication;
+
+    private String company;
+
+    @Column(name = "role_title")
+    private String roleTitle;
+
+    private String location;
+
+    private String status;
+
+    @Column(name = "next_action")
+    private String nextAction;
+
+    @Column(name = "next_action_due")
+    private Instant nextActionDue;
+
+    private String notes;
+
+    private Double confidence;
+
+    @Column(name = "sent_at")
+    private Instant sentAt;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @PrePersist
+    void prePersist() {
+        if (id == null) id = UUID.randomUUID();
+        if (createdAt == null) createdAt = Instant.now();
+    }
+}
@@ -0,0 +1,97 @@
+package com.atakant.emailtracker.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "ingest_runs")
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EqualsAndHashCode(of = "id")
+public class IngestRun {
+
+    public static final String LISTING = "listing";
+    public static final String EXTRACTING = "extracting";
+    public static final String PAUSED = "paused";      // out of daily quota; resume to continue
+    public static final String COMPLETED = "completed";
+    public static final String FAILED = "failed";
+
+    @Id
+    @Builder.Default
+    private UUID id = UUID.randomUUID();
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(name = "after_arg")
+    private String afterArg;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private String stage = LISTING;
+
+    // Checkpoint: next page of query pass `passIndex` still to be listed (null = start of pass).
+    @Column(name = "pass_index", nullable = false)
+    @Builder.Default
+    private int passIndex = 0;
+
+    @Column(name = "page_token")
+    private String pageToken;
+
+    @Column(name = "pages_committed", nullable = false)
+    @Builder.Default
+    private int pagesCommitted = 0;
+
+    @Column(name = "listed_count", nullable = false)
+    @Builder.Default
+    private int listedCount = 0;
+
+    @Column(name = "fetched_count", nullable = false)
+    @Builder.Default
+    private int fetchedCount = 0;
+
+    @Column(name = "saved_count", nullable = false)
+    @Builder.Default
+    private int savedCount = 0;
+
+    @Column(name = "applications_saved")
+    private Integer applicationsSaved;
+
+    private String error;
+
+    @Column(name = "started_at", nullable = false)
+    private Instant startedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        if (id == null) id = UUID.randomUUID();
+        Instant now = Instant.now();
+        if (startedAt == null) startedAt = now;
+        updatedAt = now;
+    }
+}
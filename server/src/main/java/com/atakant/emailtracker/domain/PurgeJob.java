@@ -0,0 +1,73 @@
+package com.atakant.emailtracker.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "purge_jobs")
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EqualsAndHashCode(of = "id")
+public class PurgeJob {
+
+    public static final String RUNNING = "running";
+    public static final String COMPLETED = "completed";
+    public static final String FAILED = "failed"; // rows deleted so far stay deleted; start again to finish
+
+    @Id
+    @Builder.Default
+    private UUID id = UUID.randomUUID();
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private String stage = RUNNING;
+
+    @Column(name = "applications_deleted", nullable = false)
+    @Builder.Default
+    private long applicationsDeleted = 0;
+
+    @Column(name = "emails_deleted", nullable = false)
+    @Builder.Default
+    private long emailsDeleted = 0;
+
+    private String error;
+
+    @Column(name = "started_at", nullable = false)
+    private Instant startedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        if (id == null) id = UUID.randomUUID();
+        Instant now = Instant.now();
+        if (startedAt == null) startedAt = now;
+        updatedAt = now;
+    }
+}
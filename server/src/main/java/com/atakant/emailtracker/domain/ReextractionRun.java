@@ -0,0 +1,89 @@
+package com.atakant.emailtracker.domain;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Entity
+@Table(name = "reextraction_runs")
+@Getter
+@Setter
+@ToString
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EqualsAndHashCode(of = "id")
+public class ReextractionRun {
+
+    public static final String RUNNING = "running";
+    public static final String PAUSED = "paused";      // out of daily LLM quota; start again to continue
+    public static final String COMPLETED = "completed";
+    public static final String FAILED = "failed";
+
+    @Id
+    @Builder.Default
+    private UUID id = UUID.randomUUID();
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(nullable = false)
+    private String version;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private String stage = RUNNING;
+
+    // Checkpoint: threads are walked in thread_id order; everything up to and including this one is done.
+    @Column(name = "thread_cursor")
+    private String threadCursor;
+
+    @Column(name = "threads_seen", nullable = false)
+    @Builder.Default
+    private int threadsSeen = 0;
+
+    @Column(name = "threads_extracted", nullable = false)
+    @Builder.Default
+    private int threadsExtracted = 0;
+
+    // threads still without a verdict; the run stops at their page and cannot complete while any remain
+    @Column(name = "threads_failed", nullable = false)
+    @Builder.Default
+    private int threadsFailed = 0;
+
+    @Column(name = "applications_saved")
+    private Integer applicationsSaved;
+
+    private String error;
+
+    @Column(name = "started_at", nullable = false)
+    private Instant startedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        if (id == null) id = UUID.randomUUID();
+        Instant now = Instant.now();
+        if (startedAt == null) startedAt = now;
+        updatedAt = now;
+    }
+}
@@ -0,0 +1,113 @@
+package com.atakant.emailtracker.gmail;
+
+import com.atakant.emailtracker.config.GmailFetchProperties;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD window for in-flight Gmail GETs. Each healthy response grows the window
+ * by 1/limit (about +1 per full window); a 429 or backend error halves it, at
+ * most once per latency target so one burst of failures only counts once.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double ERROR_EWMA_ALPHA = 0.1;
+    private static final double MAX_HEALTHY_ERROR_RATE = 0.05;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+
+    private final int min;
+    private final int max;
+    private final long latencyTargetMs;
+    private final long decreaseCooldownNanos;
+
+    private double limit;
+    private int inFlight;
+    private double errorRate;
+    private long lastDecreaseNanos;
+
+    public AdaptiveConcurrencyLimiter(GmailFetchProperties props) {
+        this.min = props.minConcurrency();
+        this.max = props.maxConcurrency();
+        this.limit = props.initialConcurrency();
+        this.latencyTargetMs = props.latencyTarget().toMillis();
+        this.decreaseCooldownNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMs);
+        this.lastDecreaseNanos = System.nanoTime() - decreaseCooldownNanos;
+    }
+
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                slotFreed.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess(long latencyMs) {
+        lock.lock();
+        try {
+            errorRate *= (1 - ERROR_EWMA_ALPHA);
+            if (latencyMs <= latencyTargetMs && errorRate < MAX_HEALTHY_ERROR_RATE) {
+                limit = Math.min(max, limit + 1.0 / limit);
+                slotFreed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 429 / rateLimitExceeded / 5xx: back off multiplicatively. */
+    public void onThrottle() {
+        lock.lock();
+        try {
+            recordError();
+            long now = System.nanoTime();
+            if (now - lastDecreaseNanos >= decreaseCooldownNanos) {
+                limit = Math.max(min, limit / 2);
+                lastDecreaseNanos = now;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Network-level failure: counts against the error rate but does not shrink the window. */
+    public void onError() {
+        lock.lock();
+        try {
+            recordError();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int currentLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordError() {
+        errorRate = errorRate * (1 - ERROR_EWMA_ALPHA) + ERROR_EWMA_ALPHA;
+    }
+}
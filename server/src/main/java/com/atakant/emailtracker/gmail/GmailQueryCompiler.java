@@ -0,0 +1,63 @@
+package com.atakant.emailtracker.gmail;
+
+import com.atakant.emailtracker.config.GmailQueryProperties;
+import com.atakant.emailtracker.utils.CandidateRules;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Compiles {@link CandidateRules} into Gmail search syntax so candidate filtering
+ * happens before anything is listed or downloaded, e.g.
+ * {@code after:X -in:chats {from:greenhouse.io ... "thank you for applying"} -category:promotions}.
+ */
+@Component
+@RequiredArgsConstructor
+public class GmailQueryCompiler {
+
+    private final GmailQueryProperties props;
+
+    /**
+     * Queries to list, in order, for the given time clause ("after:2025/01/01",
+     * "after:X before:Y"). Callers de-duplicate ids across passes.
+     */
+    public List<String> passes(String timeClause) {
+        List<String> out = new ArrayList<>(2);
+        if ("all".equals(props.mode())) {
+            out.add(wideQuery(timeClause));
+            return out;
+        }
+        out.add(candidateQuery(timeClause));
+        if (props.wideNetFallback()) out.add(wideQuery(timeClause));
+        return out;
+    }
+
+    public String wideQuery(String timeClause) {
+        return timeClause + " -in:chats";
+    }
+
+    public String candidateQuery(String timeClause) {
+        StringJoiner anyOf = new StringJoiner(" ", "{", "}");
+        for (String domain : CandidateRules.ATS_DOMAINS) {
+            anyOf.add("from:" + domain);
+        }
+        for (String kw : CandidateRules.KEYWORDS) {
+            anyOf.add(term(kw));
+        }
+
+        StringBuilder q = new StringBuilder(wideQuery(timeClause)).append(' ').append(anyOf);
+        for (String category : props.excludeCategories()) {
+            q.append(" -category:").append(category);
+        }
+        return q.toString();
+    }
+
+    // Multi-word phrases and hyphenated words must be quoted to match as a phrase.
+    private static String term(String keyword) {
+        boolean plain = keyword.chars().allMatch(Character::isLetterOrDigit);
+        return plain ? keyword : "\"" + keyword.replace("\"", "") + "\"";
+    }
+}
@@ -0,0 +1,266 @@
+package com.atakant.emailtracker.gmail;
+
+import com.atakant.emailtracker.config.GmailTransportProperties;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * google-http-client transport backed by a single shared JDK {@link HttpClient}.
+ * All fetch threads multiplex their GETs over a few pooled HTTP/2 connections
+ * instead of each opening its own HttpURLConnection.
+ */
+public class JdkHttpTransport extends HttpTransport {
+
+    // Headers the JDK client manages itself and refuses to accept from callers.
+    private static final Set<String> RESTRICTED = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private final HttpClient client;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final Duration readTimeout;
+    private final TransportMetrics metrics = new TransportMetrics();
+
+    public JdkHttpTransport(GmailTransportProperties props) {
+        AtomicInteger n = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(props.executorThreads(), r -> {
+            Thread t = new Thread(r, "gmail-http-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.client = HttpClient.newBuilder()
+                .version(props.http2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(props.connectTimeout())
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(executor)
+                .build();
+        this.permits = new Semaphore(props.maxConcurrentRequests());
+        this.readTimeout = props.readTimeout();
+    }
+
+    public TransportMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public boolean supportsMethod(String method) {
+        return true;
+    }
+
+    @Override
+    protected LowLevelHttpRequest buildRequest(String method, String url) {
+        return new Request(method, url);
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private final class Request extends LowLevelHttpRequest {
+        private final HttpRequest.Builder builder;
+        private final String method;
+        private boolean acceptEncodingSet;
+        private Duration timeout = readTimeout;
+
+        Request(String method, String url) {
+            this.method = method;
+            this.builder = HttpRequest.newBuilder(URI.create(url));
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (RESTRICTED.contains(name.toLowerCase())) return;
+            if ("accept-encoding".equalsIgnoreCase(name)) acceptEncodingSet = true;
+            builder.header(name, value);
+        }
+
+        @Override
+        public void setTimeout(int connectTimeoutMs, int readTimeoutMs) {
+            // connect timeout lives on the shared client; read timeout is per exchange
+            if (readTimeoutMs > 0) timeout = Duration.ofMillis(readTimeoutMs);
+        }
+
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+            if (!acceptEncodingSet) builder.header("Accept-Encoding", "gzip");
+            if (getContentType() != null) builder.header("Content-Type", getContentType());
+            if (getContentEncoding() != null) builder.header("Content-Encoding", getContentEncoding());
+
+            HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.noBody();
+            if (getStreamingContent() != null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                getStreamingContent().writeTo(out);
+                body = HttpRequest.BodyPublishers.ofByteArray(out.toByteArray());
+            }
+            HttpRequest req = builder.timeout(timeout).method(method, body).build();
+
+            try {
+                permits.acquire();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for a Gmail transport slot");
+            }
+            long started = System.nanoTime();
+            metrics.onStart();
+            HttpResponse<InputStream> resp;
+            try {
+                resp = client.send(req, HttpResponse.BodyHandlers.ofInputStream());
+            } catch (InterruptedException ie) {
+                endFailed();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted during Gmail request");
+            } catch (IOException | RuntimeException e) {
+                endFailed();
+                throw e;
+            }
+            String encoding = resp.headers().firstValue("content-encoding").orElse(null);
+            metrics.onHeaders(resp.version() == HttpClient.Version.HTTP_2, encoding != null && encoding.contains("gzip"));
+            // the slot is held until the body is read to the end or closed, so max-concurrent-requests
+            // bounds downloads, not just header round trips
+            return new Response(resp, new ExchangeBody(resp.body(), started));
+        }
+    }
+
+    private void endFailed() {
+        metrics.onFailure();
+        permits.release();
+    }
+
+    /** The response body; ends the exchange (slot and metrics) once, at EOF or close. */
+    private final class ExchangeBody extends FilterInputStream {
+        private final long started;
+        private final AtomicBoolean ended = new AtomicBoolean();
+        private long bytes;
+
+        ExchangeBody(InputStream in, long started) {
+            super(in);
+            this.started = started;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) end();
+            else bytes++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = super.read(buf, off, len);
+            if (n < 0) end();
+            else bytes += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                end();
+            }
+        }
+
+        private void end() {
+            if (!ended.compareAndSet(false, true)) return;
+            metrics.onComplete(bytes, (System.nanoTime() - started) / 1_000_000);
+            permits.release();
+        }
+    }
+
+    private static final class Response extends LowLevelHttpResponse {
+        private final HttpResponse<InputStream> resp;
+        private final InputStream body;
+        private final List<String> names = new ArrayList<>();
+        private final List<String> values = new ArrayList<>();
+
+        Response(HttpResponse<InputStream> resp, InputStream body) {
+            this.resp = resp;
+            this.body = body;
+            for (Map.Entry<String, List<String>> h : resp.headers().map().entrySet()) {
+                if (h.getKey().startsWith(":")) continue; // HTTP/2 pseudo-headers
+                for (String v : h.getValue()) {
+                    names.add(h.getKey());
+                    values.add(v);
+                }
+            }
+        }
+
+        @Override
+        public InputStream getContent() {
+            return body;
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return resp.headers().firstValue("content-encoding").orElse(null);
+        }
+
+        @Override
+        public long getContentLength() {
+            return resp.headers().firstValueAsLong("content-length").orElse(-1);
+        }
+
+        @Override
+        public String getContentType() {
+            return resp.headers().firstValue("content-type").orElse(null);
+        }
+
+        @Override
+        public String getStatusLine() {
+            return (resp.version() == HttpClient.Version.HTTP_2 ? "HTTP/2 " : "HTTP/1.1 ") + resp.statusCode();
+        }
+
+        @Override
+        public int getStatusCode() {
+            return resp.statusCode();
+        }
+
+        @Override
+        public String getReasonPhrase() {
+            return null;
+        }
+
+        @Override
+        public int getHeaderCount() {
+            return names.size();
+        }
+
+        @Override
+        public String getHeaderName(int index) {
+            return names.get(index);
+        }
+
+        @Override
+        public String getHeaderValue(int index) {
+            return values.get(index);
+        }
+
+        @Override
+        public void disconnect() throws IOException {
+            body.close();
+        }
+    }
+}
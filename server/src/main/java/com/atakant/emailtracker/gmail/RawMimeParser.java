@@ -0,0 +1,116 @@
+package com.atakant.emailtracker.gmail;
+
+import com.atakant.emailtracker.utils.HtmlText;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Multipart;
+import jakarta.mail.Part;
+import jakarta.mail.Session;
+import jakarta.mail.internet.ContentType;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeUtility;
+import jakarta.mail.util.SharedByteArrayInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+/**
+ * Parses a {@code format=raw} RFC 822 message. The message sits on a shared byte
+ * buffer, so multipart bodies are sliced rather than copied; the walk stops at the
+ * first text/plain part (falling back to the first text/html), never decodes
+ * attachments, and reads at most a bounded number of bytes from the chosen part.
+ */
+public final class RawMimeParser {
+    private RawMimeParser() {}
+
+    // HTML carries far more markup than text; allow this many bytes per wanted output char.
+    private static final int HTML_BYTES_PER_TEXT_CHAR = 8;
+    private static final int TEXT_BYTES_PER_TEXT_CHAR = 4;
+    private static final int MAX_DEPTH = 10;
+
+    private static final Session SESSION;
+    static {
+        Properties props = new Properties();
+        props.setProperty("mail.mime.address.strict", "false");
+        SESSION = Session.getInstance(props);
+    }
+
+    public record ParsedMime(String messageId, String date, String subject, String from, String to, String bodyText) {
+    }
+
+    public static ParsedMime parse(byte[] raw, int maxBodyChars) throws MessagingException, IOException {
+        MimeMessage msg = new MimeMessage(SESSION, new SharedByteArrayInputStream(raw));
+
+        BodyChoice choice = new BodyChoice();
+        findBody(msg, choice, 0);
+        Part part = choice.plain != null ? choice.plain : choice.html;
+
+        String body = "";
+        if (part != null) {
+            boolean html = part == choice.html;
+            String text = readBounded(part,
+                    (long) maxBodyChars * (html ? HTML_BYTES_PER_TEXT_CHAR : TEXT_BYTES_PER_TEXT_CHAR));
+            body = html ? HtmlText.toText(text, maxBodyChars)
+                    : text.length() > maxBodyChars ? text.substring(0, maxBodyChars) : text;
+        }
+
+        return new ParsedMime(
+                header(msg, "Message-ID"),
+                header(msg, "Date"),
+                header(msg, "Subject"),
+                header(msg, "From"),
+                header(msg, "To"),
+                body
+        );
+    }
+
+    private static final class BodyChoice {
+        Part plain;
+        Part html;
+    }
+
+    private static void findBody(Part part, BodyChoice choice, int depth) throws MessagingException, IOException {
+        if (choice.plain != null || depth > MAX_DEPTH) return;
+        if (Part.ATTACHMENT.equalsIgnoreCase(part.getDisposition()) || part.getFileName() != null) return;
+
+        if (part.isMimeType("text/plain")) {
+            choice.plain = part;
+        } else if (part.isMimeType("text/html")) {
+            if (choice.html == null) choice.html = part;
+        } else if (part.isMimeType("multipart/*")) {
+            Multipart mp = (Multipart) part.getContent(); // parts are slices of the shared buffer
+            for (int i = 0; i < mp.getCount() && choice.plain == null; i++) {
+                findBody(mp.getBodyPart(i), choice, depth + 1);
+            }
+        }
+    }
+
+    private static String readBounded(Part part, long maxBytes) throws MessagingException, IOException {
+        byte[] bytes;
+        try (InputStream in = part.getInputStream()) { // transfer-decoded
+            bytes = in.readNBytes((int) Math.min(maxBytes, Integer.MAX_VALUE - 8));
+        }
+        return new String(bytes, charsetOf(part));
+    }
+
+    private static Charset charsetOf(Part part) {
+        try {
+            String cs = new ContentType(part.getContentType()).getParameter("charset");
+            if (cs != null) return Charset.forName(MimeUtility.javaCharset(cs));
+        } catch (Exception ignore) {}
+        return StandardCharsets.UTF_8;
+    }
+
+    private static String header(MimeMessage msg, String name) throws MessagingException {
+        String value = msg.getHeader(name, ", ");
+        if (value == null) return null;
+        try {
+            return MimeUtility.decodeText(MimeUtility.unfold(value));
+        } catch (UnsupportedEncodingException e) {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.atakant.emailtracker.gmail;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the pooled Gmail transport. The JDK client does not expose its
+ * connection pool, so we track what it tells us per exchange: protocol version,
+ * in-flight streams, latency and compressed bytes received. An exchange ends when
+ * its body has been read or closed, so latency and in-flight cover the whole download.
+ */
+public class TransportMetrics {
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicLong maxInFlight = new AtomicLong();
+    private final AtomicLong http2Responses = new AtomicLong();
+    private final AtomicLong http1Responses = new AtomicLong();
+    private final AtomicLong gzipResponses = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong totalLatencyMs = new AtomicLong();
+
+    void onStart() {
+        requests.incrementAndGet();
+        long now = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(now, Math::max);
+    }
+
+    void onHeaders(boolean http2, boolean gzip) {
+        (http2 ? http2Responses : http1Responses).incrementAndGet();
+        if (gzip) gzipResponses.incrementAndGet();
+    }
+
+    void onComplete(long bytes, long latencyMs) {
+        inFlight.decrementAndGet();
+        completed.incrementAndGet();
+        bytesReceived.addAndGet(bytes);
+        totalLatencyMs.addAndGet(latencyMs);
+    }
+
+    void onFailure() {
+        inFlight.decrementAndGet();
+        failures.incrementAndGet();
+    }
+
+    public Snapshot snapshot() {
+        long done = completed.get();
+        long latency = totalLatencyMs.get();
+        return new Snapshot(
+                requests.get(),
+                failures.get(),
+                inFlight.get(),
+                maxInFlight.get(),
+                http2Responses.get(),
+                http1Responses.get(),
+                gzipResponses.get(),
+                done,
+                bytesReceived.get(),
+                latency,
+                done == 0 ? 0 : latency / done
+        );
+    }
+
+    /** inFlight and maxInFlight are transport-wide gauges; the rest are counts. */
+    public record Snapshot(
+            long requests,
+            long failures,
+            long inFlight,
+            long maxInFlight,
+            long http2Responses,
+            long http1Responses,
+            long gzipResponses,
+            long completed,
+            long bytesReceived,
+            long totalLatencyMs,
+            long avgLatencyMs
+    ) {
+        /**
+         * Counts accumulated since {@code start}. The transport is shared, so exchanges of
+         * runs overlapping this one are included.
+         */
+        public Snapshot since(Snapshot start) {
+            long done = completed - start.completed;
+            long latency = totalLatencyMs - start.totalLatencyMs;
+            return new Snapshot(
+                    requests - start.requests,
+                    failures - start.failures,
+                    inFlight,
+                    maxInFlight,
+                    http2Responses - start.http2Responses,
+                    http1Responses - start.http1Responses,
+                    gzipResponses - start.gzipResponses,
+                    done,
+                    bytesReceived - start.bytesReceived,
+                    latency,
+                    done == 0 ? 0 : latency / done
+            );
+        }
+    }
+}
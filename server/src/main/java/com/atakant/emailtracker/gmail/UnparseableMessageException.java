@@ -0,0 +1,12 @@
+package com.atakant.emailtracker.gmail;
+
+/**
+ * A fetched message whose MIME could not be parsed. The fault is in the message, not the
+ * transport, so it is skipped rather than retried.
+ */
+public class UnparseableMessageException extends RuntimeException {
+
+    public UnparseableMessageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
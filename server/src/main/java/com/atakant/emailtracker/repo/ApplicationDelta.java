@@ -0,0 +1,8 @@
+package com.atakant.emailtracker.repo;
+
+import java.util.List;
+import java.util.UUID;
+
+/** What changed in a user's applications after some change version, up to {@code version}. */
+public record ApplicationDelta(long version, List<ApplicationListRow> items, List<UUID> deleted) {
+}
@@ -0,0 +1,18 @@
+package com.atakant.emailtracker.repo;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public record ApplicationExportRow(
+        UUID id,
+        String company,
+        String roleTitle,
+        String location,
+        String status,
+        String nextStep,
+        OffsetDateTime nextDueAt,
+        String notes,
+        OffsetDateTime firstSeenAt,
+        OffsetDateTime lastUpdatedAt
+) {
+}
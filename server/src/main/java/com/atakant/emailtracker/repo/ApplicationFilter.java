@@ -0,0 +1,23 @@
+package com.atakant.emailtracker.repo;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Server-side filters for the applications list; null or empty fields do not filter.
+ * {@code company} matches case-insensitively anywhere in the company name; the
+ * updated range is half-open, {@code [updatedFrom, updatedTo)}.
+ */
+public record ApplicationFilter(
+        List<String> statuses,
+        String company,
+        Instant updatedFrom,
+        Instant updatedTo
+) {
+    public static final ApplicationFilter NONE = new ApplicationFilter(List.of(), null, null, null);
+
+    public ApplicationFilter {
+        statuses = statuses == null ? List.of() : List.copyOf(statuses);
+        if (company != null && company.isBlank()) company = null;
+    }
+}
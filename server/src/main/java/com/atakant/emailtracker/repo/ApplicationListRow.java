@@ -0,0 +1,16 @@
+package com.atakant.emailtracker.repo;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** The columns the applications list view renders; everything else stays in the database. */
+public record ApplicationListRow(
+        UUID id,
+        String company,
+        String roleTitle,
+        String location,
+        String status,
+        String nextStep,
+        Instant lastUpdatedAt
+) {
+}
@@ -4,6 +4,7 @@ import com.atakant.emailtracker.domain.Application;
 import org.springframework.data.jpa.repository.JpaRepository;
 import java.util.*;
 import java.time.OffsetDateTime;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -13,42 +14,149 @@ import java.time.Instant;
 import java.util.UUID;
 
 
-public interface ApplicationRepository extends JpaRepository<Application, UUID> {
+public interface ApplicationRepository extends JpaRepository<Application, UUID>, ApplicationRepositoryCustom {
   List<Application> findByUserIdOrderByLastUpdatedAtDesc(UUID userId);
 
   void deleteByUserId(UUID userId);
 
+    // One chunk of a purge, in its own short transaction. ctid = ANY(ARRAY(...)) plans as a TID
+    // scan; ctid IN (subquery) would join against a scan of the whole table.
     @Modifying
     @Transactional
     @Query(value = """
+DELETE FROM applications
+WHERE ctid = ANY(ARRAY(SELECT ctid FROM applications WHERE user_id = :userId LIMIT :limit))
+""", nativeQuery = true)
+    int deleteChunkByUserId(@Param("userId") UUID userId, @Param("limit") int limit);
+
+    // Updates the row when it exists and inserts only when it does not: an INSERT that ends in
+    // ON CONFLICT still runs the BEFORE INSERT trigger, which would take a change version for a
+    // row that does not change. The ON CONFLICT branch only covers a concurrent insert.
+    @Modifying
+    @Transactional
+    @Query(value = """
+WITH updated AS (
+  UPDATE applications SET
+    status          = :status,
+    applied_at      = LEAST(applied_at, :appliedAt),
+    last_updated_at = NOW()   -- on its own this takes no new version (V32)
+  WHERE user_id = :userId AND normalized_company = :nc AND normalized_role_title = :nr
+  RETURNING id
+)
 INSERT INTO applications (
   user_id, normalized_company, normalized_role_title,
   canonical_key,          -- insert-once; never touched on updates
   company, role_title,    -- insert-once; never touched on updates
   location,               -- insert-once; never touched on updates
   status,                 -- may change over time
+  origin,
+  source_email_id,        -- insert-once; never touched on updates
+  applied_at,             -- sent_at of the earliest source email; moves back when an older one arrives
   first_seen_at, last_updated_at
-) VALUES (
+)
+SELECT
   :userId, :nc, :nr,
   :ck,
   :company, :role,
   :location,
   :status,
+  'llm',
+  :sourceEmailId,
+  :appliedAt,
   NOW(), NOW()
-)
+WHERE NOT EXISTS (SELECT 1 FROM updated)
 ON CONFLICT (user_id, normalized_company, normalized_role_title)
 DO UPDATE SET
   status          = EXCLUDED.status,
+  applied_at      = LEAST(applications.applied_at, EXCLUDED.applied_at),
   last_updated_at = NOW()
 """, nativeQuery = true)
-    int upsert(@Param("userId") java.util.UUID userId,
-               @Param("nc") String normalizedCompany,
-               @Param("nr") String normalizedRoleTitle,
-               @Param("ck") String canonicalKey,   // userId|nc|nr
-               @Param("company") String company,   // display, insert-only
-               @Param("role") String roleTitle,    // display, insert-only
-               @Param("location") String location, // insert-only
-               @Param("status") String status);
+    void upsert(@Param("userId") java.util.UUID userId,
+                @Param("nc") String normalizedCompany,
+                @Param("nr") String normalizedRoleTitle,
+                @Param("ck") String canonicalKey,   // userId|nc|nr
+                @Param("company") String company,   // display, insert-only
+                @Param("role") String roleTitle,    // display, insert-only
+                @Param("location") String location, // insert-only
+                @Param("status") String status,
+                @Param("sourceEmailId") UUID sourceEmailId,
+                @Param("appliedAt") Instant appliedAt);   // sent_at of the email it was extracted from
+
+    // Extracted rows a rebuild found no verdict for; kept when the user wrote notes or tasks on them.
+    @Modifying
+    @Transactional
+    @Query(value = """
+DELETE FROM applications a
+WHERE a.id IN (:ids) AND a.origin = 'llm' AND a.notes IS NULL
+  AND NOT EXISTS (SELECT 1 FROM tasks t WHERE t.application_id = a.id AND t.source <> 'llm')
+""", nativeQuery = true)
+    int deleteStaleExtracted(@Param("ids") Collection<UUID> ids);
+
+    /** The user's current application change version; 0 before the first change. */
+    @Query(value = "SELECT COALESCE((SELECT version FROM user_change_versions WHERE user_id = :userId), 0)",
+           nativeQuery = true)
+    long currentChangeVersion(@Param("userId") UUID userId);
+
+    @Query(value = """
+SELECT application_id FROM application_tombstones
+WHERE user_id = :userId AND change_version > :since
+""", nativeQuery = true)
+    List<UUID> findDeletedSince(@Param("userId") UUID userId, @Param("since") long since);
+
+    /** Deltas from a version below this may miss deletions whose tombstones were pruned. */
+    @Query(value = "SELECT COALESCE((SELECT tombstones_pruned_through FROM user_change_versions WHERE user_id = :userId), 0)",
+           nativeQuery = true)
+    long tombstonesPrunedThrough(@Param("userId") UUID userId);
+
+    /** Drops tombstones older than {@code before}; returns how many. */
+    @Transactional // writes despite being a SELECT; must not join a read-only transaction
+    @Query(value = "SELECT prune_application_tombstones(:before)", nativeQuery = true)
+    long pruneTombstones(@Param("before") Instant before);
+
+    // Server-side cursor: rows arrive in fetch-size batches while the caller's transaction is open.
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new com.atakant.emailtracker.repo.ApplicationExportRow(
+                a.id, a.company, a.roleTitle, a.location, a.status, a.nextStep,
+                a.nextDueAt, a.notes, a.firstSeenAt, a.lastUpdatedAt)
+            from Application a
+            where a.userId = :userId
+            order by a.lastUpdatedAt desc, a.id desc
+            """)
+    java.util.stream.Stream<ApplicationExportRow> streamForExport(@Param("userId") UUID userId);
+
+    interface StatsBucket {
+        String getDimension();
+        String getBucket();
+        String getLabel();
+        long getCount();
+    }
+
+    // Bounded by the number of buckets, not applications: all statuses, recent weeks, top companies.
+    @Query(value = """
+(SELECT dimension, bucket, label, count FROM application_stats
+ WHERE user_id = :userId AND dimension = 'status' AND count > 0)
+UNION ALL
+(SELECT dimension, bucket, label, count FROM application_stats
+ WHERE user_id = :userId AND dimension = 'week' AND bucket >= :fromWeek AND count > 0)
+UNION ALL
+(SELECT dimension, bucket, label, count FROM application_stats
+ WHERE user_id = :userId AND dimension = 'company' AND count > 0
+ ORDER BY count DESC, bucket LIMIT :topCompanies)
+""", nativeQuery = true)
+    List<StatsBucket> findStats(@Param("userId") UUID userId,
+                                @Param("fromWeek") String fromWeek,
+                                @Param("topCompanies") int topCompanies);
 
+    /** Recomputes the user's stats counters; returns the number of buckets that had drifted. */
+    @Transactional // writes despite being a SELECT; must not join a read-only transaction
+    @Query(value = "SELECT rebuild_application_stats(:userId)", nativeQuery = true)
+    int rebuildStats(@Param("userId") UUID userId);
 
+    @Query(value = "SELECT DISTINCT user_id FROM application_stats UNION SELECT DISTINCT user_id FROM applications",
+           nativeQuery = true)
+    List<UUID> findUserIdsWithStats();
 }
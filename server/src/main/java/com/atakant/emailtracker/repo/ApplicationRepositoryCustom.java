@@ -0,0 +1,19 @@
+package com.atakant.emailtracker.repo;
+
+import com.atakant.emailtracker.utils.KeysetCursor;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface ApplicationRepositoryCustom {
+
+    /**
+     * One page of the user's applications, newest first, ordered by
+     * {@code (last_updated_at, id)} descending and starting after {@code after}
+     * (null for the first page).
+     */
+    List<ApplicationListRow> findPage(UUID userId, ApplicationFilter filter, KeysetCursor after, int limit);
+
+    /** Applications inserted or changed after change version {@code since}, oldest change first. */
+    List<ApplicationListRow> findChangedSince(UUID userId, long since);
+}
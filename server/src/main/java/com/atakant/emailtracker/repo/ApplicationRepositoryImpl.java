@@ -0,0 +1,106 @@
+package com.atakant.emailtracker.repo;
+
+import com.atakant.emailtracker.utils.KeysetCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Native SQL so the keyset predicate can be a row comparison, which Postgres answers
+// straight from the (user_id, last_updated_at DESC, id DESC) index.
+class ApplicationRepositoryImpl implements ApplicationRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public List<ApplicationListRow> findPage(UUID userId, ApplicationFilter filter, KeysetCursor after, int limit) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT id, company, role_title, location, status, next_step, last_updated_at
+                FROM applications
+                WHERE user_id = :userId
+                """);
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("userId", userId);
+
+        if (!filter.statuses().isEmpty()) {
+            sql.append(" AND status IN (:statuses)");
+            params.put("statuses", filter.statuses());
+        }
+        if (filter.company() != null) {
+            sql.append(" AND company ILIKE :company");
+            params.put("company", "%" + escapeLike(filter.company().trim()) + "%");
+        }
+        if (filter.updatedFrom() != null) {
+            sql.append(" AND last_updated_at >= :updatedFrom");
+            params.put("updatedFrom", OffsetDateTime.ofInstant(filter.updatedFrom(), ZoneOffset.UTC));
+        }
+        if (filter.updatedTo() != null) {
+            sql.append(" AND last_updated_at < :updatedTo");
+            params.put("updatedTo", OffsetDateTime.ofInstant(filter.updatedTo(), ZoneOffset.UTC));
+        }
+        if (after != null) {
+            sql.append(" AND (last_updated_at, id) < (:afterUpdatedAt, :afterId)");
+            params.put("afterUpdatedAt", OffsetDateTime.ofInstant(after.lastUpdatedAt(), ZoneOffset.UTC));
+            params.put("afterId", after.id());
+        }
+        sql.append(" ORDER BY last_updated_at DESC, id DESC LIMIT :limit");
+        params.put("limit", limit);
+
+        Query q = em.createNativeQuery(sql.toString());
+        params.forEach(q::setParameter);
+        return toRows(q);
+    }
+
+    @Override
+    public List<ApplicationListRow> findChangedSince(UUID userId, long since) {
+        Query q = em.createNativeQuery("""
+                SELECT id, company, role_title, location, status, next_step, last_updated_at
+                FROM applications
+                WHERE user_id = :userId AND change_version > :since
+                ORDER BY change_version
+                """);
+        q.setParameter("userId", userId);
+        q.setParameter("since", since);
+        return toRows(q);
+    }
+
+    private static List<ApplicationListRow> toRows(Query q) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = q.getResultList();
+        List<ApplicationListRow> out = new ArrayList<>(rows.size());
+        for (Object[] r : rows) {
+            out.add(new ApplicationListRow(
+                    (UUID) r[0],
+                    (String) r[1],
+                    (String) r[2],
+                    (String) r[3],
+                    (String) r[4],
+                    (String) r[5],
+                    toInstant(r[6])));
+        }
+        return out;
+    }
+
+    private static String escapeLike(String s) {
+        return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // timestamptz comes back as OffsetDateTime, Instant or Timestamp depending on driver/dialect settings
+    private static Instant toInstant(Object v) {
+        if (v == null) return null;
+        if (v instanceof Instant i) return i;
+        if (v instanceof OffsetDateTime o) return o.toInstant();
+        if (v instanceof Timestamp t) return t.toInstant();
+        throw new IllegalStateException("Unexpected timestamp type " + v.getClass());
+    }
+}
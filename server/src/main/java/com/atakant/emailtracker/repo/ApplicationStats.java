@@ -0,0 +1,23 @@
+package com.atakant.emailtracker.repo;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dashboard aggregates for one user. {@code responseRate} is the share of applications
+ * that got past "applied" (assessment, interview, offer or rejection).
+ */
+public record ApplicationStats(
+        long total,
+        Map<String, Long> byStatus,
+        double responseRate,
+        List<WeekCount> perWeek,
+        List<CompanyCount> topCompanies
+) {
+    /** {@code week} is the Monday (UTC) starting the week, as YYYY-MM-DD. */
+    public record WeekCount(String week, long count) {
+    }
+
+    public record CompanyCount(String company, long count) {
+    }
+}
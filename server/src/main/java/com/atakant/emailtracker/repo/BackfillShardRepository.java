@@ -0,0 +1,18 @@
+package com.atakant.emailtracker.repo;
+
+import com.atakant.emailtracker.domain.BackfillShard;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+public interface BackfillShardRepository extends JpaRepository<BackfillShard, UUID> {
+
+    // explicit query: derived from the name, "WindowAfter" would parse as an After comparison on "window"
+    @Query("select s from BackfillShard s where s.userId = :userId and s.windowAfter = :windowAfter order by s.shardStart")
+    List<BackfillShard> findByUserIdAndWindowAfterOrderByShardStartAsc(@Param("userId") UUID userId,
+                                                                       @Param("windowAfter") LocalDate windowAfter);
+}
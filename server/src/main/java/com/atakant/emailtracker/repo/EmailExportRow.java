@@ -0,0 +1,31 @@
+package com.atakant.emailtracker.repo;
+
+import com.atakant.emailtracker.utils.TextCompression;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** An email as exported; the body columns are only selected when the export includes bodies. */
+public record EmailExportRow(
+        UUID id,
+        String gmailId,
+        String threadId,
+        String fromAddr,
+        String toAddr,
+        String subject,
+        Instant sentAt,
+        String rawLabel,
+        String bodyText,
+        byte[] bodyCompressed
+) {
+    public EmailExportRow(UUID id, String gmailId, String threadId, String fromAddr, String toAddr,
+                          String subject, Instant sentAt, String rawLabel) {
+        this(id, gmailId, threadId, fromAddr, toAddr, subject, sentAt, rawLabel, null, null);
+    }
+
+    /** Plain body text, inflated when stored compressed. */
+    public String body() {
+        if (bodyText != null) return bodyText;
+        return bodyCompressed == null ? null : TextCompression.inflate(bodyCompressed);
+    }
+}
@@ -0,0 +1,32 @@
+package com.atakant.emailtracker.repo;
+
+import com.atakant.emailtracker.domain.EmailExtraction;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface EmailExtractionRepository extends JpaRepository<EmailExtraction, UUID> {
+
+    @Query("select x.emailId from EmailExtraction x where x.version = :version and x.emailId in :emailIds")
+    List<UUID> findExtractedEmailIds(@Param("version") String version, @Param("emailIds") Collection<UUID> emailIds);
+
+    @Query("""
+            select x from EmailExtraction x
+            where x.userId = :userId and x.version = :version and x.isApplication = true
+            order by x.sentAt asc nulls first, x.createdAt asc
+            """)
+    List<EmailExtraction> findApplicationsForRebuild(@Param("userId") UUID userId, @Param("version") String version);
+
+    // Most recent verdicts with the email they were made on, as [Email, Boolean isApplication].
+    @Query("""
+            select e, x.isApplication from EmailExtraction x join Email e on e.id = x.emailId
+            where x.userId = :userId
+            order by x.createdAt desc
+            """)
+    List<Object[]> findTrainingExamples(@Param("userId") UUID userId, Pageable page);
+}
@@ -6,16 +6,117 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface EmailRepository extends JpaRepository<Email, UUID> {
+public interface EmailRepository extends JpaRepository<Email, UUID>, EmailRepositoryCustom {
 
-    void deleteByUserId(UUID userId);
+    // One chunk of a purge, in its own short transaction; see ApplicationRepository.deleteChunkByUserId.
+    // A ctid is only unique within one partition, hence the user_id check on the outer DELETE too.
+    @Modifying
+    @Transactional
+    @Query(value = """
+            DELETE FROM emails
+            WHERE ctid = ANY(ARRAY(SELECT ctid FROM emails WHERE user_id = :userId LIMIT :limit))
+              AND user_id = :userId
+            """, nativeQuery = true)
+    int deleteChunkByUserId(@Param("userId") UUID userId, @Param("limit") int limit);
+
+    // Keys left behind by archived partitions; live emails take theirs with them when deleted.
+    @Modifying
+    @Transactional
+    @Query(value = """
+            DELETE FROM email_keys
+            WHERE ctid = ANY(ARRAY(SELECT ctid FROM email_keys WHERE user_id = :userId LIMIT :limit))
+            """, nativeQuery = true)
+    int deleteKeyChunkByUserId(@Param("userId") UUID userId, @Param("limit") int limit);
+
+    /** Deletes the user's rows from every archive table; see V25. */
+    @Transactional // writes despite being a SELECT
+    @Query(value = "SELECT purge_archived_emails(:userId)", nativeQuery = true)
+    long purgeArchivedByUserId(@Param("userId") UUID userId);
 
     Optional<Email> findByGmailId(String gmailId);
 
+    // Stored-message checks read email_keys, which keeps the keys of archived partitions too.
+    @Query(value = "select gmail_id from email_keys where gmail_id in (:gmailIds)", nativeQuery = true)
+    List<String> findExistingGmailIds(@Param("gmailIds") Collection<String> gmailIds);
+
+    @Query(value = "select gmail_id from email_keys where user_id = :userId", nativeQuery = true)
+    List<String> findGmailIdsByUserId(@Param("userId") UUID userId);
+
+    @Query(value = "select message_id_hash from email_keys where user_id = :userId and message_id_hash in (:hashes)",
+           nativeQuery = true)
+    List<String> findExistingMessageIdHashes(@Param("userId") UUID userId, @Param("hashes") Collection<String> hashes);
+
+    interface SimhashView {
+        String getGmailId();
+        String getThreadId();
+        String getFromAddr();
+        String getSubject();
+        Long getBodySimhash();
+        Instant getSentAt();
+    }
+
+    List<SimhashView> findByUserIdAndBodySimhashIsNotNullAndSentAtBetween(UUID userId, Instant from, Instant to);
+
+    List<Email> findByIngestRunId(UUID ingestRunId);
+
+    List<Email> findByUserIdAndThreadIdIn(UUID userId, Collection<String> threadIds);
+
+    // Keyset page over the user's threads (pass "" for the first page); served by the (user_id, thread_id) index.
+    @Query("""
+            select distinct e.threadId from Email e
+            where e.userId = :userId and e.threadId > :after
+            order by e.threadId
+            """)
+    List<String> findThreadIdsAfter(@Param("userId") UUID userId, @Param("after") String after, Pageable page);
+
+    @Modifying
+    @Query("update Email e set e.bodyText = null, e.bodyCompressed = null where e.id in :ids")
+    int clearBodies(@Param("ids") Collection<UUID> ids);
+
+    // Server-side cursors for exports. Projections, so nothing lands in the persistence context,
+    // and the body columns (most of the bytes) are only read when the export asks for them.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new com.atakant.emailtracker.repo.EmailExportRow(
+                e.id, e.gmailId, e.threadId, e.fromAddr, e.toAddr, e.subject, e.sentAt, e.rawLabel)
+            from Email e
+            where e.userId = :userId
+            order by e.sentAt, e.id
+            """)
+    Stream<EmailExportRow> streamForExport(@Param("userId") UUID userId);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select new com.atakant.emailtracker.repo.EmailExportRow(
+                e.id, e.gmailId, e.threadId, e.fromAddr, e.toAddr, e.subject, e.sentAt, e.rawLabel,
+                e.bodyText, e.bodyCompressed)
+            from Email e
+            where e.userId = :userId
+            order by e.sentAt, e.id
+            """)
+    Stream<EmailExportRow> streamForExportWithBody(@Param("userId") UUID userId);
+
+    // Rows stored before search existed, or whose indexing failed; served by a partial index.
+    @Query(value = "select id from emails where search_tsv is null limit :limit", nativeQuery = true)
+    List<UUID> findSearchPendingIds(@Param("limit") int limit);
 }
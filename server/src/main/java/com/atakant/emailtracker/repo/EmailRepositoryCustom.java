@@ -0,0 +1,14 @@
+package com.atakant.emailtracker.repo;
+
+import com.atakant.emailtracker.utils.RankCursor;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface EmailRepositoryCustom {
+
+    /** Best matches first; {@code after} is the last hit of the previous page, or null. */
+    List<EmailSearchHit> search(UUID userId, String query, RankCursor after, int limit);
+
+    void updateSearchDocument(UUID id, String subject, String fromAddr, String body);
+}
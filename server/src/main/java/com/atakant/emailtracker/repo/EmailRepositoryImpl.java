@@ -0,0 +1,118 @@
+package com.atakant.emailtracker.repo;
+
+import com.atakant.emailtracker.utils.RankCursor;
+import com.atakant.emailtracker.utils.TextCompression;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Native SQL for the tsvector/tsquery operators. Matches come from the GIN index on
+// (user_id, search_tsv); only the page that is returned pays for ts_headline.
+class EmailRepositoryImpl implements EmailRepositoryCustom {
+
+    private static final String HEADLINE_OPTIONS =
+            "StartSel=<mark>, StopSel=</mark>, MaxWords=30, MinWords=10, MaxFragments=2, FragmentDelimiter=\" … \"";
+
+    // ts_headline copies its input verbatim, so escape first and the only markup left is <mark>
+    private static final String ESCAPED_TEXT =
+            "replace(replace(replace(%s, '&', '&amp;'), '<', '&lt;'), '>', '&gt;')";
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public List<EmailSearchHit> search(UUID userId, String query, RankCursor after, int limit) {
+        String sql = """
+                WITH q AS (SELECT websearch_to_tsquery('english', :query) AS tsq),
+                page AS (
+                  SELECT id, thread_id, from_addr, subject, sent_at, body_text, body_compressed, rank
+                  FROM (
+                    SELECT e.*, ts_rank_cd(e.search_tsv, q.tsq, 32)::real AS rank
+                    FROM emails e, q
+                    WHERE e.user_id = :userId AND e.search_tsv @@ q.tsq
+                  ) matched
+                  %s
+                  ORDER BY rank DESC, id DESC
+                  LIMIT :limit
+                )
+                SELECT id, thread_id, from_addr, subject, sent_at, rank, body_compressed,
+                       ts_headline('english', %s, (SELECT tsq FROM q), '%s')
+                FROM page
+                ORDER BY rank DESC, id DESC
+                """.formatted(
+                after == null ? "" : "WHERE (rank, id) < (CAST(:afterRank AS real), :afterId)",
+                ESCAPED_TEXT.formatted("coalesce(body_text, subject, '')"),
+                HEADLINE_OPTIONS);
+
+        Query q = em.createNativeQuery(sql);
+        q.setParameter("query", query);
+        q.setParameter("userId", userId);
+        q.setParameter("limit", limit);
+        if (after != null) {
+            q.setParameter("afterRank", after.rank());
+            q.setParameter("afterId", after.id());
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = q.getResultList();
+        List<String> inflated = new ArrayList<>();
+        for (Object[] r : rows) {
+            if (r[6] != null) inflated.add(TextCompression.inflate((byte[]) r[6]));
+        }
+        List<String> compressedSnippets = compressedBodySnippets(inflated, query);
+
+        List<EmailSearchHit> out = new ArrayList<>(rows.size());
+        int next = 0;
+        for (Object[] r : rows) {
+            String snippet = r[6] != null ? compressedSnippets.get(next++) : (String) r[7];
+            out.add(new EmailSearchHit((UUID) r[0], (String) r[1], (String) r[2], (String) r[3], toInstant(r[4]),
+                    ((Number) r[5]).floatValue(), snippet));
+        }
+        return out;
+    }
+
+    // Deflated bodies are opaque to Postgres; they come back with the page, are inflated here,
+    // and the whole page's texts are highlighted in one round trip, in input order.
+    private List<String> compressedBodySnippets(List<String> texts, String query) {
+        if (texts.isEmpty()) return List.of();
+        @SuppressWarnings("unchecked")
+        List<String> snippets = em.createNativeQuery("SELECT ts_headline('english', "
+                        + ESCAPED_TEXT.formatted("t.text")
+                        + ", websearch_to_tsquery('english', :query), '" + HEADLINE_OPTIONS + "')"
+                        + " FROM unnest(CAST(:texts AS text[])) WITH ORDINALITY AS t(text, ord) ORDER BY t.ord")
+                .setParameter("texts", texts.toArray(String[]::new))
+                .setParameter("query", query)
+                .getResultList();
+        return snippets;
+    }
+
+    @Override
+    public void updateSearchDocument(UUID id, String subject, String fromAddr, String body) {
+        em.createNativeQuery("""
+                        UPDATE emails
+                        SET search_tsv = email_search_document(CAST(:subject AS text), CAST(:fromAddr AS text), CAST(:body AS text))
+                        WHERE id = :id
+                        """)
+                .setParameter("subject", subject)
+                .setParameter("fromAddr", fromAddr)
+                .setParameter("body", body)
+                .setParameter("id", id)
+                .executeUpdate();
+    }
+
+    // timestamptz comes back as OffsetDateTime, Instant or Timestamp depending on driver/dialect settings
+    private static Instant toInstant(Object v) {
+        if (v == null) return null;
+        if (v instanceof Instant i) return i;
+        if (v instanceof OffsetDateTime o) return o.toInstant();
+        if (v instanceof Timestamp t) return t.toInstant();
+        throw new IllegalStateException("Unexpected timestamp type " + v.getClass());
+    }
+}
@@ -0,0 +1,16 @@
+package com.atakant.emailtracker.repo;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** One search result; {@code snippet} is HTML-escaped text with matches wrapped in {@code <mark>}. */
+public record EmailSearchHit(
+        UUID id,
+        String threadId,
+        String fromAddr,
+        String subject,
+        Instant sentAt,
+        float rank,
+        String snippet
+) {
+}
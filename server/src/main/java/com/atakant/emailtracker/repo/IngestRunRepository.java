@@ -0,0 +1,13 @@
+package com.atakant.emailtracker.repo;
+
+import com.atakant.emailtracker.domain.IngestRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface IngestRunRepository extends JpaRepository<IngestRun, UUID> {
+
+    Optional<IngestRun> findFirstByUserIdAndStageInOrderByStartedAtDesc(UUID userId, Collection<String> stages);
+}
@@ -0,0 +1,12 @@
+package com.atakant.emailtracker.repo;
+
+import com.atakant.emailtracker.domain.PurgeJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface PurgeJobRepository extends JpaRepository<PurgeJob, UUID> {
+
+    Optional<PurgeJob> findByIdAndUserId(UUID id, UUID userId);
+}
@@ -0,0 +1,14 @@
+package com.atakant.emailtracker.repo;
+
+import com.atakant.emailtracker.domain.ReextractionRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface ReextractionRunRepository extends JpaRepository<ReextractionRun, UUID> {
+
+    Optional<ReextractionRun> findFirstByUserIdAndVersionOrderByStartedAtDesc(UUID userId, String version);
+
+    Optional<ReextractionRun> findByIdAndUserId(UUID id, UUID userId);
+}
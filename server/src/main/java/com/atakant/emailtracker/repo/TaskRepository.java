@@ -0,0 +1,94 @@
+package com.atakant.emailtracker.repo;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Writes tasks with plain JDBC: there is no Task entity, and a batch of next actions goes
+ * in as one statement (arrays unnested server-side) so the tasks trigger fires once for it.
+ */
+@Repository
+@RequiredArgsConstructor
+public class TaskRepository {
+
+    private final JdbcTemplate jdbc;
+
+    /** One next action from an extraction, addressed by the application's normalized key. */
+    public record NextActionTask(UUID emailId, String normalizedCompany, String normalizedRoleTitle,
+                                 String title, Instant dueAt, Instant sentAt) {
+    }
+
+    // Per application only the newest email's action counts: it closes older open LLM tasks, and
+    // is itself stored as cancelled when a newer one is already open. Re-processing an email is
+    // a no-op through the (application_id, email_id) unique index.
+    private static final String INSERT_NEXT_ACTIONS = """
+            WITH input AS (
+              SELECT CAST(email_id AS uuid) AS email_id, nc, nr, title,
+                     CAST(due_at AS timestamptz) AS due_at, CAST(sent_at AS timestamptz) AS sent_at
+              FROM unnest(?::text[], ?::text[], ?::text[], ?::text[], ?::text[], ?::text[])
+                   AS t(email_id, nc, nr, title, due_at, sent_at)
+            ),
+            newest AS (
+              SELECT DISTINCT ON (a.id) a.id AS application_id, i.*
+              FROM input i
+              JOIN applications a
+                ON a.user_id = ? AND a.normalized_company = i.nc AND a.normalized_role_title = i.nr
+              ORDER BY a.id, i.sent_at DESC NULLS LAST
+            ),
+            superseded AS (
+              UPDATE tasks t SET status = 'cancelled'
+              FROM newest n
+              WHERE t.application_id = n.application_id AND t.source = 'llm' AND t.status = 'open'
+                AND t.sent_at < n.sent_at
+              RETURNING t.id
+            )
+            INSERT INTO tasks (id, application_id, email_id, title, due_at, status, source, sent_at)
+            SELECT gen_random_uuid(), n.application_id, n.email_id, n.title, n.due_at,
+                   CASE WHEN EXISTS (SELECT 1 FROM tasks t
+                                     WHERE t.application_id = n.application_id AND t.source = 'llm'
+                                       AND t.status = 'open' AND t.sent_at > n.sent_at)
+                        THEN 'cancelled' ELSE 'open' END,
+                   'llm', n.sent_at
+            FROM newest n
+            ON CONFLICT (application_id, email_id) WHERE email_id IS NOT NULL DO NOTHING
+            """;
+
+    /** Inserts the tasks in one statement; returns how many were new. */
+    public int insertNextActions(UUID userId, List<NextActionTask> tasks) {
+        if (tasks.isEmpty()) return 0;
+        int n = tasks.size();
+        String[] emailIds = new String[n], ncs = new String[n], nrs = new String[n],
+                titles = new String[n], dues = new String[n], sents = new String[n];
+        for (int i = 0; i < n; i++) {
+            NextActionTask t = tasks.get(i);
+            emailIds[i] = t.emailId().toString();
+            ncs[i] = t.normalizedCompany();
+            nrs[i] = t.normalizedRoleTitle();
+            titles[i] = t.title();
+            dues[i] = t.dueAt() == null ? null : t.dueAt().toString();
+            sents[i] = t.sentAt() == null ? null : t.sentAt().toString();
+        }
+        return jdbc.update(INSERT_NEXT_ACTIONS, ps -> {
+            Connection c = ps.getConnection();
+            ps.setArray(1, textArray(c, emailIds));
+            ps.setArray(2, textArray(c, ncs));
+            ps.setArray(3, textArray(c, nrs));
+            ps.setArray(4, textArray(c, titles));
+            ps.setArray(5, textArray(c, dues));
+            ps.setArray(6, textArray(c, sents));
+            ps.setObject(7, userId);
+        });
+    }
+
+    private static Array textArray(Connection c, String[] values) throws SQLException {
+        return c.createArrayOf("text", values);
+    }
+}
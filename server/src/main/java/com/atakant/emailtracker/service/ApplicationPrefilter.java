@@ -0,0 +1,105 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.config.PrefilterProperties;
+import com.atakant.emailtracker.domain.Email;
+import com.atakant.emailtracker.repo.EmailExtractionRepository;
+import com.atakant.emailtracker.utils.HashedNaiveBayes;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Per-user naive Bayes model trained on stored LLM verdicts. Threads it is very sure are
+ * not about an application skip the LLM. It only ever learns from LLM verdicts, never from
+ * its own predictions, so a wrong skip cannot reinforce itself. Models (2^feature-bits
+ * counters per class) are cached for the most recently active users only; an evicted one is
+ * rebuilt from email_extractions on next use.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ApplicationPrefilter {
+
+    private final PrefilterProperties props;
+    private final EmailExtractionRepository extractionRepository;
+
+    private Map<UUID, HashedNaiveBayes> models;
+
+    @PostConstruct
+    void init() {
+        // access-ordered, so the eldest entry is the least recently used model
+        models = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, HashedNaiveBayes> eldest) {
+                return size() > props.maxCachedModels();
+            }
+        };
+    }
+
+    public boolean isConfidentNonApplication(UUID userId, Email e) {
+        if (!props.enabled()) return false;
+        HashedNaiveBayes model = model(userId);
+        synchronized (model) {
+            if (model.examples(true) < props.minExamplesPerClass()
+                    || model.examples(false) < props.minExamplesPerClass()) {
+                return false;
+            }
+            double pNonApplication = 1.0 - model.probabilityPositive(e.getSubject(), e.getFromAddr(), e.getBodyText());
+            return pNonApplication >= props.skipThreshold();
+        }
+    }
+
+    /**
+     * Adds fresh verdicts to the user's model once they are committed, if the model is loaded;
+     * an unloaded model picks them up from the DB. A rolled-back batch is never learned.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void learn(VerdictsRecordedEvent event) {
+        if (!props.enabled()) return;
+        HashedNaiveBayes model;
+        synchronized (models) {
+            model = models.get(event.userId());
+        }
+        if (model == null) return;
+        synchronized (model) {
+            for (VerdictsRecordedEvent.Verdict v : event.verdicts()) {
+                Email e = v.email();
+                model.learn(e.getSubject(), e.getFromAddr(), e.getBodyText(), v.isApplication());
+            }
+        }
+    }
+
+    public void forget(UUID userId) {
+        synchronized (models) {
+            models.remove(userId);
+        }
+    }
+
+    // Built outside the map's lock so one user's DB load does not stall the others; if two
+    // threads race on the same user, the first model stored wins.
+    private HashedNaiveBayes model(UUID userId) {
+        synchronized (models) {
+            HashedNaiveBayes cached = models.get(userId);
+            if (cached != null) return cached;
+        }
+        HashedNaiveBayes model = new HashedNaiveBayes(props.featureBits());
+        // rows are [Email, Boolean isApplication]
+        for (Object[] row : extractionRepository.findTrainingExamples(userId, PageRequest.of(0, props.maxTrainingExamples()))) {
+            Email e = (Email) row[0];
+            model.learn(e.getSubject(), e.getFromAddr(), e.getBodyText(), (Boolean) row[1]);
+        }
+        log.info("Prefilter model built userId={} applications={} nonApplications={}",
+                userId, model.examples(true), model.examples(false));
+        synchronized (models) {
+            HashedNaiveBayes raced = models.putIfAbsent(userId, model);
+            return raced != null ? raced : model;
+        }
+    }
+}
@@ -1,20 +1,28 @@
 package com.atakant.emailtracker.service;
 
 import com.atakant.emailtracker.repo.ApplicationRepository;
-import org.springframework.transaction.annotation.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.util.UUID;
+import java.util.function.LongConsumer;
 
 @Service
 @RequiredArgsConstructor
 public class ApplicationService {
     private final ApplicationRepository applications;
 
-    @Transactional
-    public void deleteAllForUser(UUID userId) {
-        applications.deleteByUserId(userId);
+    /**
+     * Deletes in chunks of {@code chunkSize}, each its own transaction, reporting the
+     * running total after every chunk. Returns the number of applications deleted.
+     */
+    public long deleteAllForUser(UUID userId, int chunkSize, LongConsumer progress) {
+        long total = 0;
+        for (int n; (n = applications.deleteChunkByUserId(userId, chunkSize)) > 0; ) {
+            total += n;
+            progress.accept(total);
+        }
+        return total;
     }
 }
 
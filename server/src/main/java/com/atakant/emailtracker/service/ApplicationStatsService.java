@@ -0,0 +1,101 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.config.StatsProperties;
+import com.atakant.emailtracker.repo.ApplicationRepository;
+import com.atakant.emailtracker.repo.ApplicationStats;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Reads the per-user counters in application_stats, which database triggers keep current on
+ * every application write. A periodic pass recomputes them from applications and logs any
+ * drift it repaired.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ApplicationStatsService {
+
+    // statuses that mean the company answered
+    private static final Set<String> RESPONDED = Set.of("assessment", "interview", "offer", "rejected");
+
+    private final ApplicationRepository applications;
+    private final StatsProperties props;
+    private final TaskScheduler maintenanceScheduler;
+
+    @PostConstruct
+    void scheduleRebuild() {
+        if (!props.rebuildInterval().isZero()) {
+            maintenanceScheduler.scheduleWithFixedDelay(this::rebuildAll,
+                    Instant.now().plus(props.rebuildInterval()), props.rebuildInterval());
+        }
+    }
+
+    public ApplicationStats stats(UUID userId) {
+        LocalDate thisWeek = LocalDate.now(ZoneOffset.UTC).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        LocalDate fromWeek = thisWeek.minusWeeks(props.weeks() - 1L);
+
+        Map<String, Long> byStatus = new LinkedHashMap<>();
+        Map<String, Long> weekCounts = new HashMap<>();
+        List<ApplicationStats.CompanyCount> companies = new ArrayList<>();
+        for (ApplicationRepository.StatsBucket b : applications.findStats(userId, fromWeek.toString(), props.topCompanies())) {
+            switch (b.getDimension()) {
+                case "status" -> byStatus.put(b.getBucket(), b.getCount());
+                case "week" -> weekCounts.put(b.getBucket(), b.getCount());
+                case "company" -> companies.add(new ApplicationStats.CompanyCount(b.getLabel(), b.getCount()));
+                default -> { }
+            }
+        }
+
+        long total = byStatus.values().stream().mapToLong(Long::longValue).sum();
+        long responded = byStatus.entrySet().stream()
+                .filter(e -> RESPONDED.contains(e.getKey()))
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+
+        // every week in the range, including empty ones, oldest first
+        List<ApplicationStats.WeekCount> perWeek = new ArrayList<>(props.weeks());
+        for (LocalDate w = fromWeek; !w.isAfter(thisWeek); w = w.plusWeeks(1)) {
+            perWeek.add(new ApplicationStats.WeekCount(w.toString(), weekCounts.getOrDefault(w.toString(), 0L)));
+        }
+        return new ApplicationStats(total, byStatus, total == 0 ? 0.0 : (double) responded / total, perWeek, companies);
+    }
+
+    /** Recomputes the user's counters; returns how many buckets were wrong. */
+    public int rebuild(UUID userId) {
+        int drifted = applications.rebuildStats(userId);
+        if (drifted > 0) {
+            log.warn("Application stats drifted userId={} buckets={}; rebuilt", userId, drifted);
+        }
+        return drifted;
+    }
+
+    void rebuildAll() {
+        int users = 0, drifted = 0;
+        try {
+            for (UUID userId : applications.findUserIdsWithStats()) {
+                drifted += rebuild(userId);
+                users++;
+            }
+            log.info("Application stats rebuild checked {} users, repaired {} buckets", users, drifted);
+        } catch (RuntimeException e) {
+            log.warn("Application stats rebuild stopped after {} users", users, e);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.config.StreamProperties;
+import com.atakant.emailtracker.repo.ApplicationDelta;
+import com.atakant.emailtracker.repo.ApplicationRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process fan-out of application changes to SSE subscribers. A change only marks the
+ * user dirty; a push thread then reads what changed since the oldest version any of the
+ * user's subscribers has seen and hands one event per connection to the send threads, so a
+ * burst of upserts becomes one query and one event per connection. Push threads never wait
+ * on a client: a connection keeps at most one write in flight, one that is busy catches up
+ * with the next push, and one whose write hangs past app.stream.send-timeout is dropped.
+ * Heartbeats run on their own thread and only queue pings. Event ids are change versions,
+ * which lets a reconnecting EventSource resume through Last-Event-ID.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ApplicationStreamHub {
+
+    private final ApplicationRepository applications;
+    private final StreamProperties props;
+
+    private final Map<UUID, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    private ExecutorService pusher;
+    private ExecutorService sender;
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(daemon("sse-heartbeat"));
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        volatile long seenVersion;
+        final AtomicBoolean sending = new AtomicBoolean();
+        volatile long sendStartedNanos;
+        volatile boolean behind; // a push skipped it while a write was in flight
+
+        Subscriber(SseEmitter emitter, long seenVersion) {
+            this.emitter = emitter;
+            this.seenVersion = seenVersion;
+        }
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    // queues stay small: at most one push per dirty user and one write per connection
+    @PostConstruct
+    void start() {
+        pusher = Executors.newFixedThreadPool(props.pushThreads(), daemon("sse-push"));
+        sender = Executors.newFixedThreadPool(props.sendThreads(), daemon("sse-send"));
+        long every = props.heartbeat().toMillis();
+        heartbeats.scheduleAtFixedRate(this::heartbeat, every, every, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens a stream for the user. With {@code since}, everything changed after that
+     * version is sent first; otherwise the stream starts at the current version. A
+     * {@code since} older than the retained tombstones starts at the current version
+     * with a "reset" event, since a delta could miss deletions.
+     */
+    public SseEmitter subscribe(UUID userId, Long since) {
+        SseEmitter emitter = new SseEmitter(props.emitterTimeout().toMillis());
+        long current = applications.currentChangeVersion(userId);
+        boolean reset = since != null && since < applications.tombstonesPrunedThrough(userId);
+        Subscriber sub = new Subscriber(emitter, since == null || reset ? current : Math.min(since, current));
+
+        subscribers.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(sub);
+        emitter.onCompletion(() -> remove(userId, sub));
+        emitter.onTimeout(() -> remove(userId, sub));
+        emitter.onError(e -> remove(userId, sub));
+
+        try {
+            // id is what the client has, not current, so a drop before the catch-up push resumes correctly
+            emitter.send(SseEmitter.event().name(reset ? "reset" : "ready").id(Long.toString(sub.seenVersion))
+                    .data(Map.of("version", sub.seenVersion)));
+        } catch (IOException e) {
+            remove(userId, sub);
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        if (sub.seenVersion < current) changed(userId);
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onApplicationsChanged(ApplicationsChangedEvent event) {
+        changed(event.userId());
+    }
+
+    /** Schedules a push for the user; also called by PgNotifyBridge for commits on other nodes. */
+    public void changed(UUID userId) {
+        if (!subscribers.containsKey(userId)) return;
+        if (dirty.add(userId)) {
+            pusher.execute(() -> push(userId));
+        }
+    }
+
+    private void push(UUID userId) {
+        dirty.remove(userId); // a change arriving from here on schedules another push
+        Set<Subscriber> subs = subscribers.get(userId);
+        if (subs == null || subs.isEmpty()) return;
+        try {
+            long since = subs.stream().mapToLong(s -> s.seenVersion).min().orElse(0);
+            long version = applications.currentChangeVersion(userId);
+            if (version <= since) return;
+
+            ApplicationDelta delta = new ApplicationDelta(version,
+                    applications.findChangedSince(userId, since),
+                    applications.findDeletedSince(userId, since));
+            for (Subscriber sub : subs) {
+                if (sub.seenVersion >= version) continue;
+                boolean queued = send(userId, sub,
+                        SseEmitter.event().name("applications").id(Long.toString(version)).data(delta), version);
+                if (!queued) sub.behind = true;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Application stream push failed for userId={}: {}", userId, e.toString());
+        }
+    }
+
+    /**
+     * Queues one write to the connection; false if a write is still in flight. {@code version}
+     * is what the event brings the subscriber to, or -1 for a ping.
+     */
+    private boolean send(UUID userId, Subscriber sub, SseEmitter.SseEventBuilder event, long version) {
+        if (!sub.sending.compareAndSet(false, true)) return false;
+        sub.sendStartedNanos = System.nanoTime();
+        try {
+            sender.execute(() -> {
+                try {
+                    sub.emitter.send(event);
+                    if (version > sub.seenVersion) sub.seenVersion = version;
+                } catch (IOException | IllegalStateException e) {
+                    remove(userId, sub);
+                } finally {
+                    sub.sending.set(false);
+                }
+                if (sub.behind) {
+                    sub.behind = false;
+                    changed(userId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            sub.sending.set(false); // shutting down
+            return true;
+        }
+    }
+
+    // never writes itself, so a hung connection cannot hold up the others' pings
+    private void heartbeat() {
+        long timeout = props.sendTimeout().toNanos();
+        subscribers.forEach((userId, subs) -> {
+            for (Subscriber sub : subs) {
+                if (!sub.sending.get()) {
+                    if (sub.behind) { // marked just as its last write finished
+                        sub.behind = false;
+                        changed(userId);
+                    }
+                    send(userId, sub, SseEmitter.event().comment("ping"), -1);
+                } else if (System.nanoTime() - sub.sendStartedNanos > timeout) {
+                    // completing the emitter would block on the hung write; the emitter timeout closes it
+                    log.info("Application stream userId={} dropped a connection stuck writing for over {}", userId, props.sendTimeout());
+                    remove(userId, sub);
+                }
+            }
+        });
+    }
+
+    private void remove(UUID userId, Subscriber sub) {
+        subscribers.computeIfPresent(userId, (k, subs) -> {
+            subs.remove(sub);
+            return subs.isEmpty() ? null : subs;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        heartbeats.shutdownNow();
+        pusher.shutdownNow();
+        sender.shutdownNow();
+        subscribers.values().forEach(subs -> subs.forEach(s -> s.emitter.complete()));
+        subscribers.clear();
+    }
+}
@@ -0,0 +1,44 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.config.StreamProperties;
+import com.atakant.emailtracker.repo.ApplicationRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Drops application tombstones older than app.stream.tombstone-retention, so the table does
+ * not grow with every deletion ever made. Deltas from a version before the pruned ones are
+ * answered with a full reload (see {@link ApplicationRepository#tombstonesPrunedThrough}).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ApplicationTombstonePruner {
+
+    private static final Duration PRUNE_INTERVAL = Duration.ofHours(6);
+
+    private final ApplicationRepository applications;
+    private final StreamProperties props;
+    private final TaskScheduler maintenanceScheduler;
+
+    @PostConstruct
+    void schedulePrune() {
+        if (props.tombstoneRetention().isZero()) return;
+        maintenanceScheduler.scheduleWithFixedDelay(this::prune, Instant.now().plus(PRUNE_INTERVAL), PRUNE_INTERVAL);
+    }
+
+    void prune() {
+        try {
+            long pruned = applications.pruneTombstones(Instant.now().minus(props.tombstoneRetention()));
+            if (pruned > 0) log.info("Pruned {} application tombstones older than {}", pruned, props.tombstoneRetention());
+        } catch (RuntimeException e) {
+            log.warn("Application tombstone prune failed: {}", e.toString());
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.atakant.emailtracker.service;
+
+import java.util.UUID;
+
+/** Published after a user's applications were written; delivered to stream subscribers after commit. */
+public record ApplicationsChangedEvent(UUID userId) {
+}
@@ -1,18 +1,41 @@
 package com.atakant.emailtracker.service;
 
+import com.atakant.emailtracker.domain.Application;
 import com.atakant.emailtracker.domain.Email;
+import com.atakant.emailtracker.domain.EmailExtraction;
 import com.atakant.emailtracker.repo.ApplicationRepository;
+import com.atakant.emailtracker.repo.EmailExtractionRepository;
+import com.atakant.emailtracker.repo.EmailRepository;
+import com.atakant.emailtracker.repo.TaskRepository;
 import com.atakant.emailtracker.utils.AppNorm;
+import com.atakant.emailtracker.utils.CandidateRules;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class CandidateEmailService {
@@ -21,12 +44,13 @@ public class CandidateEmailService {
     private final LlmClient llm;
     private final ThreadPoolTaskExecutor parseExecutor;
     private final RateLimitService rateLimitService;
-
-    private static final String[] KEYWORDS = {
-            "application", "applied", "assessment", "coding challenge",
-            "interview", "status update", "thank you for applying",
-            "we received your application", "oa", "take-home", "hackerrank"
-    };
+    private final EmailRepository emailRepository;
+    private final EmailStoragePolicy storagePolicy;
+    private final PromptCompactor compactor;
+    private final EmailExtractionRepository extractionRepository;
+    private final ApplicationPrefilter prefilter;
+    private final ApplicationEventPublisher events;
+    private final TaskRepository taskRepository;
 
     @Transactional
     public ProcessEmailsResult processEmails(UUID userId, List<Email> emails) {
@@ -34,24 +58,80 @@ public class CandidateEmailService {
                 .filter(this::looksLikeCandidate)
                 .toList();
 
+        if (storagePolicy.dropNonCandidateBodies() && candidates.size() < emails.size()) {
+            Set<UUID> keep = candidates.stream().map(Email::getId).collect(Collectors.toSet());
+            List<UUID> drop = emails.stream().map(Email::getId).filter(id -> !keep.contains(id)).toList();
+            emailRepository.clearBodies(drop);
+        }
+
+        List<EmailThread> threads = groupByThread(userId, candidates);
+        int prefiltered = threads.size();
+        threads = threads.stream()
+                .filter(t -> !prefilter.isConfidentNonApplication(userId, t.latest()))
+                .toList();
+        prefiltered -= threads.size();
+
+        // one LLM call per conversation, so quota is counted in threads rather than messages
         RateLimitService.QuotaReservation quotaReservation =
-                rateLimitService.reserveProcessingQuota(userId, candidates.size());
+                rateLimitService.reserveProcessingQuota(userId, threads.size());
         if (!quotaReservation.allowed()) {
             throw new RateLimitExceededException(quotaReservation.message());
         }
 
-        List<Email> emailsToProcess = candidates.stream()
+        List<EmailThread> threadsToProcess = threads.stream()
                 .limit(quotaReservation.allowedCandidateEmails())
                 .toList();
+        int emailsProcessed = threadsToProcess.stream().mapToInt(t -> t.messages().size()).sum();
+
+        List<Extracted> extracted = extractThreads(threadsToProcess);
+        recordVerdicts(userId, extracted);
+
+        int saved = 0, skippedNonJob = 0, failed = 0;
+        List<TaskRepository.NextActionTask> tasks = new ArrayList<>();
+        for (Extracted it : extracted) {
+            if (it.parsed == null) continue;
+            if (!it.parsed.isApplication()) { skippedNonJob++; continue; }
+            try {
+                upsertApplication(userId, it.email.getId(), it.email.getSentAt(), it.parsed);
+                saved++;
+                addNextAction(tasks, it.email.getId(), it.email.getSentAt(), it.parsed.getCompany(),
+                        it.parsed.getRoleTitle(), it.parsed.getNextAction(), parseDue(it.parsed.getNextActionDue()));
+            } catch (org.springframework.dao.DataIntegrityViolationException ex) {
+                failed++;
+                log.warn("Failed to save application for email {}: {}", it.email.getId(), ex.getMessage());
+            }
+        }
+        int tasksCreated = taskRepository.insertNextActions(userId, tasks);
+        if (saved > 0) events.publishEvent(new ApplicationsChangedEvent(userId));
+        log.info("Applications userId={} candidates={} threads={} prefiltered={} processed={} llmCalls={} saved={} tasks={} skippedNonJob={} failed={}",
+                userId, candidates.size(), threads.size(), prefiltered, emailsProcessed, threadsToProcess.size(), saved, tasksCreated, skippedNonJob, failed);
+
+        return new ProcessEmailsResult(
+                saved,
+                candidates.size(),
+                emailsProcessed,
+                quotaReservation.truncated(),
+                quotaReservation.message(),
+                quotaReservation.remainingRunsToday(),
+                quotaReservation.remainingLlmEmailsToday()
+        );
+    }
 
+    /**
+     * Runs one LLM extraction per thread on the parse pool and waits for all of them.
+     * A failed call yields an {@link Extracted} with a null result.
+     */
+    List<Extracted> extractThreads(List<EmailThread> threads) {
         var rawPool = parseExecutor.getThreadPoolExecutor();
+        PromptStats promptStats = new PromptStats();
 
-        List<CompletableFuture<Extracted>> futures = new java.util.ArrayList<>(emailsToProcess.size());
-        for (Email e : emailsToProcess) {
+        List<CompletableFuture<Extracted>> futures = new ArrayList<>(threads.size());
+        for (EmailThread t : threads) {
+            Email e = t.latest();
             try {
                 futures.add(CompletableFuture.supplyAsync(() -> {
                     try {
-                        LlmClient.ApplicationExtractionResult parsed = llm.extractApplication(buildPrompt(e));
+                        LlmClient.ApplicationExtractionResult parsed = llm.extractApplication(buildPrompt(t, promptStats));
                         return new Extracted(e, parsed);
                     } catch (Exception ex) {
                         return new Extracted(e, null);
@@ -60,45 +140,102 @@ public class CandidateEmailService {
             } catch (RejectedExecutionException rex) {
                 LlmClient.ApplicationExtractionResult parsed = null;
                 try {
-                    parsed = llm.extractApplication(buildPrompt(e));
+                    parsed = llm.extractApplication(buildPrompt(t, promptStats));
                 } catch (Exception ignore) {}
                 futures.add(CompletableFuture.completedFuture(new Extracted(e, parsed)));
             }
         }
 
-        int saved = 0, skippedNonJob = 0, failed = 0;
+        List<Extracted> results = new ArrayList<>(futures.size());
         for (CompletableFuture<Extracted> f : futures) {
-            Extracted it;
             try {
-                it = f.join();
+                results.add(f.join());
             } catch (Exception ignore) {
-                continue;
-            }
-            if (it.parsed == null) continue;
-            if (!it.parsed.isApplication()) { skippedNonJob++; continue; }
-            try {
-                upsertApplication(userId, it.email.getId(), it.parsed);
-                saved++;
-            } catch (org.springframework.dao.DataIntegrityViolationException ex) {
-                failed++;
-                System.err.println("Failed to save application for email " + it.email.getId() + ": " + ex.getMessage());
             }
         }
-        System.out.printf("apps: candidates=%d, processed=%d, saved=%d, skippedNonJob=%d, failed=%d%n",
-                candidates.size(), emailsToProcess.size(), saved, skippedNonJob, failed);
+        log.debug("Prompt body tokens (est.) before={} after={}", promptStats.before.sum(), promptStats.after.sum());
+        return results;
+    }
 
-        return new ProcessEmailsResult(
-                saved,
-                candidates.size(),
-                emailsToProcess.size(),
-                quotaReservation.truncated(),
-                quotaReservation.message(),
-                quotaReservation.remainingRunsToday(),
-                quotaReservation.remainingLlmEmailsToday()
-        );
+    /**
+     * Stores every LLM verdict, including non-applications, under the current version; the
+     * prefilter learns them once the surrounding transaction commits. Threads that already have a verdict for this version are left alone.
+     */
+    void recordVerdicts(UUID userId, List<Extracted> extracted) {
+        String version = llm.extractionVersion();
+        List<Extracted> answered = extracted.stream().filter(it -> it.parsed != null).toList();
+        if (answered.isEmpty()) return;
+
+        Set<UUID> existing = new HashSet<>(extractionRepository.findExtractedEmailIds(
+                version, answered.stream().map(it -> it.email.getId()).toList()));
+        List<EmailExtraction> rows = new ArrayList<>(answered.size());
+        for (Extracted it : answered) {
+            if (existing.contains(it.email.getId())) continue;
+            rows.add(EmailExtraction.builder()
+                    .userId(userId)
+                    .emailId(it.email.getId())
+                    .threadId(it.email.getThreadId())
+                    .version(version)
+                    .isApplication(it.parsed.isApplication())
+                    .company(it.parsed.getCompany())
+                    .roleTitle(it.parsed.getRoleTitle())
+                    .location(it.parsed.getLocation())
+                    .status(it.parsed.getStatus())
+                    .nextAction(it.parsed.getNextAction())
+                    .nextActionDue(parseDue(it.parsed.getNextActionDue()))
+                    .notes(it.parsed.getNotes())
+                    .confidence(it.parsed.getConfidence())
+                    .sentAt(it.email.getSentAt())
+                    .build());
+        }
+        extractionRepository.saveAll(rows);
+        List<VerdictsRecordedEvent.Verdict> fresh = answered.stream()
+                .filter(it -> !existing.contains(it.email.getId()))
+                .map(it -> new VerdictsRecordedEvent.Verdict(it.email, it.parsed.isApplication()))
+                .toList();
+        if (!fresh.isEmpty()) events.publishEvent(new VerdictsRecordedEvent(userId, fresh));
+    }
+
+    /**
+     * Brings the user's applications in line with the verdicts recorded under {@code version}.
+     * Extractions are replayed oldest first through the upsert, so existing rows keep their id,
+     * first_seen_at, notes and tasks and end at their latest status. Extracted rows no verdict
+     * supports any more are removed unless the user annotated them; POSTed rows are never removed.
+     */
+    @Transactional
+    public int rebuildApplications(UUID userId, String version) {
+        int saved = 0;
+        long versionBefore = appRepo.currentChangeVersion(userId);
+        Set<String> supported = new HashSet<>();
+        List<TaskRepository.NextActionTask> tasks = new ArrayList<>();
+        for (EmailExtraction x : extractionRepository.findApplicationsForRebuild(userId, version)) {
+            String nc = AppNorm.normCompany(emptyToUnknown(x.getCompany()));
+            String nr = AppNorm.normRole(emptyToUnknown(x.getRoleTitle()));
+            appRepo.upsert(userId, nc, nr,
+                    canonicalKey(userId, emptyToUnknown(x.getCompany()), emptyToUnknown(x.getRoleTitle())),
+                    emptyToUnknown(x.getCompany()),
+                    emptyToUnknown(x.getRoleTitle()),
+                    emptyToUnknown(x.getLocation()),
+                    emptyToUnknown(x.getStatus() == null ? "applied" : x.getStatus()),
+                    x.getEmailId(), x.getSentAt());
+            supported.add(nc + "|" + nr);
+            saved++;
+            addNextAction(tasks, x.getEmailId(), x.getSentAt(), x.getCompany(), x.getRoleTitle(),
+                    x.getNextAction(), x.getNextActionDue());
+        }
+        taskRepository.insertNextActions(userId, tasks);
+
+        List<UUID> stale = appRepo.findByUserIdOrderByLastUpdatedAtDesc(userId).stream()
+                .filter(a -> Application.ORIGIN_LLM.equals(a.getOrigin()))
+                .filter(a -> !supported.contains(a.getNormalizedCompany() + "|" + a.getNormalizedRoleTitle()))
+                .map(Application::getId)
+                .toList();
+        int removed = stale.isEmpty() ? 0 : appRepo.deleteStaleExtracted(stale);
+        if (removed > 0 || appRepo.currentChangeVersion(userId) != versionBefore) events.publishEvent(new ApplicationsChangedEvent(userId));
+        return saved;
     }
 
-    private static final class Extracted {
+    static final class Extracted {
         final Email email;
         final LlmClient.ApplicationExtractionResult parsed;
         Extracted(Email e, LlmClient.ApplicationExtractionResult p) { this.email = e; this.parsed = p; }
@@ -116,7 +253,7 @@ public class CandidateEmailService {
     }
 
 
-    private void upsertApplication(UUID userId, UUID emailId, LlmClient.ApplicationExtractionResult x) {
+    private void upsertApplication(UUID userId, UUID emailId, Instant sentAt, LlmClient.ApplicationExtractionResult x) {
         String company  = emptyToUnknown(x.getCompany());
         String role     = emptyToUnknown(x.getRoleTitle());
         String location = emptyToUnknown(x.getLocation());
@@ -125,10 +262,38 @@ public class CandidateEmailService {
         String nc = AppNorm.normCompany(company);
         String nr = AppNorm.normRole(role);
 
-        // canonical unique per (user, company, role)
-        String ck = (userId.toString() + "|" + nc + "|" + nr);
+        appRepo.upsert(userId, nc, nr, canonicalKey(userId, company, role), company, role, location, status,
+                emailId, sentAt);
+    }
+
+    // "(unknown)" and "(ignore — …)" are the prompt's placeholders for "no action"
+    private static void addNextAction(List<TaskRepository.NextActionTask> tasks, UUID emailId, Instant sentAt,
+                                      String company, String role, String nextAction, Instant due) {
+        if (nextAction == null || nextAction.isBlank() || nextAction.trim().startsWith("(")) return;
+        tasks.add(new TaskRepository.NextActionTask(emailId,
+                AppNorm.normCompany(emptyToUnknown(company)), AppNorm.normRole(emptyToUnknown(role)),
+                nextAction.trim(), due, sentAt));
+    }
+
+    /** ISO date (taken as end of that day, UTC) or date-time, with or without offset; null otherwise. */
+    static Instant parseDue(String s) {
+        if (s == null || s.isBlank() || s.trim().startsWith("(")) return null;
+        String v = s.trim();
+        try {
+            if (v.length() == 10) return LocalDate.parse(v).atTime(23, 59).toInstant(ZoneOffset.UTC);
+            return OffsetDateTime.parse(v).toInstant();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(v).toInstant(ZoneOffset.UTC);
+            } catch (DateTimeParseException ignore) {
+                return null;
+            }
+        }
+    }
 
-        appRepo.upsert(userId, nc, nr, ck, company, role, location, status);
+    // canonical unique per (user, company, role)
+    private static String canonicalKey(UUID userId, String company, String role) {
+        return userId.toString() + "|" + AppNorm.normCompany(company) + "|" + AppNorm.normRole(role);
     }
 
 
@@ -136,69 +301,102 @@ public class CandidateEmailService {
         return (s == null || s.isBlank()) ? "(unknown)" : s.trim();
     }
 
-    private String buildPrompt(Email e) {
+    /**
+     * A conversation to extract once: the candidate messages from this batch (oldest first)
+     * and earlier messages of the same Gmail thread that are already stored.
+     */
+    record EmailThread(List<Email> messages, List<Email> earlier) {
+        Email latest() {
+            return messages.get(messages.size() - 1);
+        }
+    }
+
+    private static Instant sortKey(Email e) {
+        if (e.getSentAt() != null) return e.getSentAt();
+        return e.getInternalDateMs() != null ? Instant.ofEpochMilli(e.getInternalDateMs()) : Instant.EPOCH;
+    }
+
+    private static final Comparator<Email> CHRONOLOGICAL = Comparator.comparing(CandidateEmailService::sortKey);
+
+    List<EmailThread> groupByThread(UUID userId, List<Email> candidates) {
+        Map<String, List<Email>> byThread = new LinkedHashMap<>();
+        for (Email e : candidates) {
+            String key = e.getThreadId() != null ? e.getThreadId() : "email:" + e.getId();
+            byThread.computeIfAbsent(key, k -> new ArrayList<>()).add(e);
+        }
+
+        Set<UUID> inBatch = candidates.stream().map(Email::getId).collect(Collectors.toSet());
+        List<String> threadIds = candidates.stream().map(Email::getThreadId).filter(Objects::nonNull).distinct().toList();
+        Map<String, List<Email>> storedByThread = threadIds.isEmpty() ? Map.of()
+                : emailRepository.findByUserIdAndThreadIdIn(userId, threadIds).stream()
+                        .filter(e -> !inBatch.contains(e.getId()))
+                        .collect(Collectors.groupingBy(Email::getThreadId));
+
+        List<EmailThread> threads = new ArrayList<>(byThread.size());
+        for (var entry : byThread.entrySet()) {
+            List<Email> messages = new ArrayList<>(entry.getValue());
+            messages.sort(CHRONOLOGICAL);
+            Instant newest = sortKey(messages.get(messages.size() - 1));
+            List<Email> earlier = storedByThread.getOrDefault(entry.getKey(), List.of()).stream()
+                    .filter(e -> !sortKey(e).isAfter(newest))
+                    .sorted(CHRONOLOGICAL)
+                    .toList();
+            threads.add(new EmailThread(messages, earlier));
+        }
+        return threads;
+    }
+
+    // Only the per-conversation part; the instructions live in LlmClient.SYSTEM so the provider can cache that prefix.
+    // Changing the format here means bumping LlmClient.PROMPT_FORMAT.
+    private String buildPrompt(EmailThread t, PromptStats stats) {
+        Email e = t.latest();
         String subject = e.getSubject() == null ? "" : e.getSubject();
         String from    = e.getFromAddr() == null ? "" : e.getFromAddr();
-        String body    = e.getBodyText() == null ? "" : e.getBodyText();
-
-        return """
-        Extract job-application info from the email below and return ONLY a SINGLE compact, MINIFIED JSON object.
-        The JSON MUST contain exactly these keys (all REQUIRED, never null/empty):
-
-        {
-          "is_application": boolean,           // true if this email is about the user's application lifecycle, false otherwise
-          "company": string,                   // "(unknown)" if unsure
-          "role_title": string,                // "(unknown)" if unsure
-          "location": string,                  // "(unknown)" if missing
-          "status": "applied"|"assessment"|"interview"|"offer"|"rejected"|"other", // use "other" if unclear
-          "next_action": string,               // "(unknown)" if missing
-          "notes": string                      // brief summary or reason; never empty
-          "normalized_company": string,        // normalized: lowercase, trimmed, no punctuation
-          "normalized_role_title": string      // normalized: lowercase, trimmed, no punctuation, and words sorted alphabetically
-        }
+        PromptCompactor.Compacted body = compactor.compact(subject, e.getBodyText()); // may inflate a compressed body
+        stats.add(body);
 
-        CLASSIFICATION RULES:
-        - If the email is directly about the user's OWN application lifecycle (thank-you, applied, status update, assessment/OA, interview, offer, rejection, portal updates), then "is_application" must be true — even if some fields are unknown.
-        - If it is a newsletter, referral campaign, mentorship, event/community email, marketing, or anything not about the user's candidacy, set "is_application" to false.
-
-        EXTRACTION RULES:
-        - Never output null or empty strings — use "(unknown)" when needed.
-        - Prefer role/company from the SUBJECT or explicit "Thank you for applying to..." lines.
-        - Do not infer role from sender signatures (e.g., "Senior SDE" in a signature is not the user's role).
-        - Only extract actual job location (like "United States (Remote)", "Seattle, WA"). Ignore addresses in footers.
-        - Status must always be one of the six values.
-        - Next action should be the most concrete required step for the user ("schedule interview", "complete OA", or "(unknown)" if none).
-        - Notes should be short, 1–2 phrases: e.g., "application received", "OA invitation", "interview scheduled", "rejection", "mentorship pairing".
-        - IMPORTANT: Do NOT mark "assessment" unless the candidate is asked to take a test or complete an OA with a link/instructions/deadline.
-          Phrases about internal recruiter assessment still mean "applied".
-        - For normalization: "normalized_company" and "normalized_role_title" must be lowercase, trimmed, and punctuation removed. For "normalized_role_title", also sort the words alphabetically so that e.g. "Software Engineer Intern" and "Intern Software Engineer" are treated as the same.
-
-        FORMAT:
-        - Output valid minified JSON only.
-        - No markdown, no code fences, no explanations.
+        StringBuilder prompt = new StringBuilder();
+        List<Email> context = new ArrayList<>(t.earlier().size() + t.messages().size() - 1);
+        context.addAll(t.earlier());
+        context.addAll(t.messages().subList(0, t.messages().size() - 1));
+        context.sort(CHRONOLOGICAL);
+        if (context.size() > compactor.maxThreadContextMessages()) {
+            context = context.subList(context.size() - compactor.maxThreadContextMessages(), context.size());
+        }
+        if (!context.isEmpty()) {
+            prompt.append("EARLIER IN THREAD (oldest first):\n");
+            for (Email m : context) {
+                PromptCompactor.Compacted digest = compactor.compactContext(m.getSubject(), m.getBodyText());
+                stats.add(digest);
+                prompt.append("- [").append(m.getSentAt()).append("] FROM: ").append(m.getFromAddr())
+                        .append(" | SUBJECT: ").append(m.getSubject()).append('\n')
+                        .append("  ").append(digest.body().replace("\n", "\n  ")).append('\n');
+            }
+            prompt.append("\nLATEST MESSAGE:\n");
+        }
 
+        prompt.append("""
         SUBJECT: %s
         FROM: %s
+        SENT: %s
         BODY:
         %s
-        """.formatted(subject, from, body);
+        """.formatted(subject, from, e.getSentAt(), body.body()));
+        return prompt.toString();
     }
 
+    private static final class PromptStats {
+        private final java.util.concurrent.atomic.LongAdder before = new java.util.concurrent.atomic.LongAdder();
+        private final java.util.concurrent.atomic.LongAdder after = new java.util.concurrent.atomic.LongAdder();
 
-    private boolean looksLikeCandidate(Email e) {
-        String hay = ((e.getSubject() == null ? "" : e.getSubject()) + " " +
-                (e.getBodyText() == null ? "" : e.getBodyText()))
-                .toLowerCase();
-        for (String kw : KEYWORDS) {
-            if (hay.contains(kw)) return true;
+        void add(PromptCompactor.Compacted c) {
+            before.add(c.tokensBefore());
+            after.add(c.tokensAfter());
         }
-        // quick ATS domain check
-        String from = e.getFromAddr() == null ? "" : e.getFromAddr().toLowerCase();
-        if (from.contains("greenhouse") || from.contains("lever") ||
-                from.contains("workday") || from.contains("smartrecruiters") ||
-                from.contains("icims") || from.contains("brassring"))
-            return true;
-
-        return false;
+    }
+
+
+    boolean looksLikeCandidate(Email e) {
+        return CandidateRules.looksLikeCandidate(e.getSubject(), e.getBodyText(), e.getFromAddr());
     }
 }
@@ -0,0 +1,131 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.config.EmailPartitionProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the monthly partitions of emails ahead of the calendar (and moves mail that landed
+ * in the default partition into its month), and applies retention: whole months older than
+ * app.email-partitions.retention are detached or dropped. Their email_keys stay, so archived
+ * messages are still recognised as stored at ingest.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmailPartitionMaintenance {
+
+    private static final Pattern MONTH_PARTITION = Pattern.compile("emails_p(\\d{4})_(\\d{2})");
+
+    private final EmailPartitionProperties props;
+    private final EntityManager em;
+    private final PlatformTransactionManager txManager;
+    private final TaskScheduler maintenanceScheduler;
+
+    @PostConstruct
+    void schedule() {
+        maintenanceScheduler.scheduleWithFixedDelay(this::maintain, props.maintenanceInterval());
+    }
+
+    void maintain() {
+        try {
+            Number created = new TransactionTemplate(txManager).execute(status -> (Number) em
+                    .createNativeQuery("SELECT ensure_email_partitions(:ahead)")
+                    .setParameter("ahead", props.monthsAhead())
+                    .getSingleResult());
+            if (created != null && created.intValue() > 0) {
+                log.info("Created {} email partitions", created);
+            }
+            if (!props.retention().isZero()) {
+                applyRetention();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Email partition maintenance failed: {}", e.toString(), e);
+        }
+    }
+
+    private void applyRetention() {
+        // archived bodies are gone for good, so never while something may still extract from them
+        Number busy = (Number) em.createNativeQuery("""
+                SELECT (SELECT count(*) FROM ingest_runs
+                        WHERE stage IN ('listing', 'extracting') AND updated_at > NOW() - INTERVAL '1 day')
+                     + (SELECT count(*) FROM reextraction_runs
+                        WHERE stage = 'running' AND updated_at > NOW() - INTERVAL '1 day')
+                """).getSingleResult();
+        if (busy.longValue() > 0) {
+            log.info("Email retention postponed: {} ingest/re-extraction runs in progress", busy);
+            return;
+        }
+
+        LocalDate cutoff = LocalDate.ofInstant(Instant.now().minus(props.retention()), ZoneOffset.UTC);
+        @SuppressWarnings("unchecked")
+        List<String> partitions = em.createNativeQuery("""
+                SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'emails'::regclass
+                ORDER BY c.relname
+                """).getResultList();
+        for (String partition : partitions) {
+            Matcher m = MONTH_PARTITION.matcher(partition);
+            if (!m.matches()) continue; // the default partition
+            YearMonth month = YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)));
+            if (month.plusMonths(1).atDay(1).isAfter(cutoff)) break; // sorted: the rest are newer
+            long unsettled = unsettledRuns(partition);
+            if (unsettled > 0) {
+                log.info("Email partition {} kept: {} runs with mail in it have not finished extracting", partition, unsettled);
+                continue;
+            }
+            archive(partition, month);
+        }
+    }
+
+    // Ingest runs that stored mail in this month and are not completed, plus users with mail in
+    // it whose latest re-extraction is not completed: their verdicts may still need the bodies.
+    private long unsettledRuns(String partition) {
+        Number n = (Number) em.createNativeQuery("""
+                SELECT (SELECT count(*) FROM ingest_runs r
+                        WHERE r.stage <> 'completed'
+                          AND r.id IN (SELECT DISTINCT ingest_run_id FROM %1$s WHERE ingest_run_id IS NOT NULL))
+                     + (SELECT count(*) FROM (SELECT DISTINCT ON (user_id) user_id, stage FROM reextraction_runs
+                                              ORDER BY user_id, started_at DESC) rr
+                        WHERE rr.stage <> 'completed'
+                          AND EXISTS (SELECT 1 FROM %1$s e WHERE e.user_id = rr.user_id))
+                """.formatted(partition)).getSingleResult();
+        return n.longValue();
+    }
+
+    // A month can be archived twice: mail for it arriving later (a backfill, a re-ingest after a
+    // purge) recreates emails_pYYYY_MM. The second time its rows are merged into the existing archive.
+    private void archive(String partition, YearMonth month) {
+        String archived = "emails_archive_" + partition.substring("emails_p".length());
+        new TransactionTemplate(txManager).executeWithoutResult(status -> {
+            em.createNativeQuery("ALTER TABLE emails DETACH PARTITION " + partition).executeUpdate();
+            boolean merge = (Boolean) em.createNativeQuery("SELECT to_regclass(CAST(:name AS text)) IS NOT NULL")
+                    .setParameter("name", archived)
+                    .getSingleResult();
+            if (props.archiveMode().equals("drop")) {
+                em.createNativeQuery("DROP TABLE " + partition).executeUpdate();
+            } else if (merge) {
+                em.createNativeQuery("INSERT INTO " + archived + " SELECT * FROM " + partition).executeUpdate();
+                em.createNativeQuery("DROP TABLE " + partition).executeUpdate();
+            } else {
+                em.createNativeQuery("ALTER TABLE " + partition + " RENAME TO " + archived).executeUpdate();
+            }
+        });
+        log.info("Email partition {} ({}) {}", partition, month,
+                props.archiveMode().equals("drop") ? "dropped" : "detached as " + archived);
+    }
+}
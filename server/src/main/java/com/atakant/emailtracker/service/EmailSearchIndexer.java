@@ -0,0 +1,81 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.config.SearchProperties;
+import com.atakant.emailtracker.domain.Email;
+import com.atakant.emailtracker.repo.EmailRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keeps emails.search_tsv filled. New emails are indexed right after they are stored;
+ * rows that predate search (or whose indexing failed) are picked up in batches by a
+ * background pass that starts with the application.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmailSearchIndexer {
+
+    private final EmailRepository emailRepository;
+    private final SearchProperties props;
+    private final PlatformTransactionManager txManager;
+    private final ThreadPoolTaskExecutor jobExecutor;
+
+    public void index(Collection<Email> emails) {
+        if (emails.isEmpty()) return;
+        try {
+            new TransactionTemplate(txManager).executeWithoutResult(status -> {
+                for (Email e : emails) {
+                    emailRepository.updateSearchDocument(e.getId(), e.getSubject(), e.getFromAddr(), e.getBodyText());
+                }
+            });
+        } catch (RuntimeException ex) {
+            // the backfill pass retries these; never fail an ingest over search
+            log.warn("Search indexing failed for {} emails: {}", emails.size(), ex.toString());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBackfill() {
+        jobExecutor.execute(this::backfill);
+    }
+
+    void backfill() {
+        long indexed = 0;
+        long started = System.currentTimeMillis();
+        try {
+            while (true) {
+                List<UUID> ids = emailRepository.findSearchPendingIds(props.backfillBatchSize());
+                if (ids.isEmpty()) break;
+                List<Email> batch = emailRepository.findAllById(ids);
+                if (batch.isEmpty()) continue; // deleted since the id query
+                new TransactionTemplate(txManager).executeWithoutResult(status -> {
+                    for (Email e : batch) {
+                        emailRepository.updateSearchDocument(e.getId(), e.getSubject(), e.getFromAddr(), e.getBodyText());
+                    }
+                });
+                indexed += batch.size();
+                log.debug("Search backfill indexed {} emails so far", indexed);
+                Thread.sleep(props.backfillPause().toMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("Search backfill stopped after {} emails; resumes on next start", indexed, e);
+            return;
+        }
+        if (indexed > 0) {
+            log.info("Search backfill indexed {} emails in {} ms", indexed, System.currentTimeMillis() - started);
+        }
+    }
+}
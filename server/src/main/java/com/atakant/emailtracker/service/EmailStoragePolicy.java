@@ -0,0 +1,35 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.config.EmailStorageProperties;
+import com.atakant.emailtracker.domain.Email;
+import com.atakant.emailtracker.utils.TextCompression;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/** Applies the configured body budget and compression when an email is stored. */
+@Component
+@RequiredArgsConstructor
+public class EmailStoragePolicy {
+
+    // Below this size deflate overhead outweighs the savings.
+    private static final int MIN_COMPRESS_CHARS = 256;
+
+    private final EmailStorageProperties props;
+
+    public void applyBody(Email email, String body) {
+        if (body == null) {
+            email.setStoredBody(null, null);
+            return;
+        }
+        String budgeted = body.length() > props.maxBodyChars() ? body.substring(0, props.maxBodyChars()) : body;
+        if ("deflate".equals(props.compression()) && budgeted.length() >= MIN_COMPRESS_CHARS) {
+            email.setStoredBody(null, TextCompression.deflate(budgeted));
+        } else {
+            email.setStoredBody(budgeted, null);
+        }
+    }
+
+    public boolean dropNonCandidateBodies() {
+        return props.dropNonCandidateBodies();
+    }
+}
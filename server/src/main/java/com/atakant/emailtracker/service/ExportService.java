@@ -0,0 +1,159 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.config.ReplicaReadContext;
+import com.atakant.emailtracker.repo.ApplicationExportRow;
+import com.atakant.emailtracker.repo.ApplicationRepository;
+import com.atakant.emailtracker.repo.EmailExportRow;
+import com.atakant.emailtracker.repo.EmailRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Writes a user's applications or emails to a stream as NDJSON or CSV, one row at a time,
+ * straight from a database cursor. Memory use does not depend on the row count.
+ */
+@Service
+@RequiredArgsConstructor
+public class ExportService {
+
+    public enum Format { NDJSON, CSV }
+
+    private static final int BUFFER_CHARS = 64 * 1024;
+
+    private final ApplicationRepository applications;
+    private final EmailRepository emails;
+    private final ObjectMapper mapper;
+    private final PlatformTransactionManager txManager;
+
+    private static final List<String> APPLICATION_COLUMNS = List.of(
+            "id", "company", "roleTitle", "location", "status", "nextStep",
+            "nextDueAt", "notes", "firstSeenAt", "lastUpdatedAt");
+
+    private static final List<String> EMAIL_COLUMNS = List.of(
+            "id", "gmailId", "threadId", "from", "to", "subject", "sentAt", "labels", "body");
+
+    public void writeApplications(UUID userId, Format format, OutputStream out) throws IOException {
+        inReadOnlyTransaction(userId, () -> {
+            try (Stream<ApplicationExportRow> rows = applications.streamForExport(userId)) {
+                write(format, APPLICATION_COLUMNS, rows.map(ExportService::applicationRecord).iterator(), out);
+            }
+        });
+    }
+
+    /** Bodies are not even selected unless asked for; they are most of the bytes and need inflating. */
+    public void writeEmails(UUID userId, Format format, boolean includeBody, OutputStream out) throws IOException {
+        inReadOnlyTransaction(userId, () -> {
+            try (Stream<EmailExportRow> rows = includeBody
+                    ? emails.streamForExportWithBody(userId)
+                    : emails.streamForExport(userId)) {
+                write(format, EMAIL_COLUMNS, rows.map(e -> emailRecord(e, includeBody)).iterator(), out);
+            }
+        });
+    }
+
+    private interface IoWork {
+        void run() throws IOException;
+    }
+
+    // Postgres only honours the fetch size inside a transaction; without one the driver buffers every row.
+    // The body is written on an async thread, so the user is bound here for replica routing.
+    private void inReadOnlyTransaction(UUID userId, IoWork work) throws IOException {
+        TransactionTemplate tx = new TransactionTemplate(txManager);
+        tx.setReadOnly(true);
+        ReplicaReadContext.bind(userId);
+        try {
+            tx.executeWithoutResult(status -> {
+                try {
+                    work.run();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            ReplicaReadContext.clear();
+        }
+    }
+
+    private void write(Format format, List<String> columns, Iterator<Map<String, Object>> records, OutputStream out)
+            throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_CHARS);
+        if (format == Format.CSV) {
+            writeCsvRow(w, columns);
+            while (records.hasNext()) {
+                Map<String, Object> r = records.next();
+                writeCsvRow(w, columns.stream().map(c -> r.get(c) == null ? "" : String.valueOf(r.get(c))).toList());
+            }
+        } else {
+            var writer = mapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            while (records.hasNext()) {
+                writer.writeValue(w, records.next());
+                w.write('\n');
+            }
+        }
+        w.flush();
+    }
+
+    private static void writeCsvRow(Writer w, List<String> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) w.write(',');
+            String v = values.get(i);
+            if (v.indexOf(',') >= 0 || v.indexOf('"') >= 0 || v.indexOf('\n') >= 0 || v.indexOf('\r') >= 0) {
+                w.write('"');
+                w.write(v.replace("\"", "\"\""));
+                w.write('"');
+            } else {
+                w.write(v);
+            }
+        }
+        w.write("\r\n");
+    }
+
+    private static Map<String, Object> applicationRecord(ApplicationExportRow a) {
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("id", a.id());
+        r.put("company", a.company());
+        r.put("roleTitle", a.roleTitle());
+        r.put("location", a.location());
+        r.put("status", a.status());
+        r.put("nextStep", a.nextStep());
+        r.put("nextDueAt", a.nextDueAt() == null ? null : a.nextDueAt().toInstant().toString());
+        r.put("notes", a.notes());
+        r.put("firstSeenAt", a.firstSeenAt() == null ? null : a.firstSeenAt().toInstant().toString());
+        r.put("lastUpdatedAt", a.lastUpdatedAt() == null ? null : a.lastUpdatedAt().toInstant().toString());
+        return r;
+    }
+
+    private static Map<String, Object> emailRecord(EmailExportRow e, boolean includeBody) {
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("id", e.id());
+        r.put("gmailId", e.gmailId());
+        r.put("threadId", e.threadId());
+        r.put("from", e.fromAddr());
+        r.put("to", e.toAddr());
+        r.put("subject", e.subject());
+        r.put("sentAt", e.sentAt() == null ? null : e.sentAt().toString());
+        r.put("labels", e.rawLabel());
+        if (includeBody) r.put("body", e.body());
+        return r;
+    }
+}
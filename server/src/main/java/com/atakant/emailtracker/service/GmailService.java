@@ -1,11 +1,23 @@
 package com.atakant.emailtracker.service;
 
-import com.atakant.emailtracker.auth.User;
-import com.atakant.emailtracker.auth.UserRepository;
+import com.atakant.emailtracker.config.GmailBackfillProperties;
+import com.atakant.emailtracker.config.GmailFetchProperties;
+import com.atakant.emailtracker.domain.BackfillShard;
 import com.atakant.emailtracker.domain.Email;
+import com.atakant.emailtracker.domain.IngestRun;
+import com.atakant.emailtracker.gmail.AdaptiveConcurrencyLimiter;
 import com.atakant.emailtracker.gmail.GmailMessage;
+import com.atakant.emailtracker.gmail.GmailQueryCompiler;
+import com.atakant.emailtracker.gmail.JdkHttpTransport;
+import com.atakant.emailtracker.gmail.TransportMetrics;
+import com.atakant.emailtracker.gmail.RawMimeParser;
+import com.atakant.emailtracker.gmail.UnparseableMessageException;
 import com.atakant.emailtracker.repo.ApplicationRepository;
+import com.atakant.emailtracker.repo.BackfillShardRepository;
 import com.atakant.emailtracker.repo.EmailRepository;
+import com.atakant.emailtracker.utils.HtmlText;
+import com.atakant.emailtracker.utils.SimHash;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.gmail.Gmail;
 import com.google.api.services.gmail.model.*;
 import jakarta.mail.internet.MailDateFormat;
@@ -16,18 +28,23 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
 import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
-import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
 import java.util.Base64;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongConsumer;
 import org.springframework.dao.DataIntegrityViolationException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -38,77 +55,336 @@ import java.security.NoSuchAlgorithmException;
 public class GmailService {
 
     private final OAuth2AuthorizedClientManager clientManager;
-    private final UserRepository userRepository;
     private final EmailRepository emailRepository;
     private final Gmail gmail;
     private final ThreadPoolTaskExecutor fetchExecutor;
+    private final GmailFetchProperties fetchProperties;
+    private final ThreadPoolTaskExecutor listExecutor;
+    private final GmailBackfillProperties backfillProperties;
+    private final BackfillShardRepository backfillShardRepository;
+    private final GmailQueryCompiler queryCompiler;
+    private final IngestRunService ingestRunService;
+    private final EmailStoragePolicy storagePolicy;
+    private final ApplicationPrefilter prefilter;
+    private final NearDuplicateDetector nearDuplicateDetector;
+    private final KnownGmailIds knownGmailIds;
+    private final EmailSearchIndexer searchIndexer;
+    private final RecentWrites recentWrites;
+
+    /**
+     * Receives each listed page once its messages are fetched; the checkpoint points past it, or
+     * at it again when some of its messages could not be fetched (the run then fails, resumable).
+     */
+    @FunctionalInterface
+    public interface PageHandler {
+        void onPage(List<GmailMessage> messages, int listed, int nextPassIndex, String nextPageToken);
+    }
 
-    // Fetch gmail messages since a given date
-    public List<GmailMessage> fetchMessagesSince(Authentication authentication, String afterYyyyMmDd) throws Exception {
+    // Fetch gmail messages since the run's after date, starting from its checkpoint
+    public void fetchMessagesSince(Authentication authentication, IngestRun checkpoint, PageHandler onPage) throws Exception {
         final int pageSize = 50;
-        final String query = "after:" + afterYyyyMmDd + " -in:chats";
+        List<String> passes = queryCompiler.passes("after:" + checkpoint.getAfterArg());
 
-        String accessToken = resolveAccessToken(authentication);
+        Gmail tokenGmail = tokenClient(authentication);
 
-        var transport   = gmail.getRequestFactory().getTransport();
-        var jsonFactory = gmail.getJsonFactory();
-        String appName  = gmail.getApplicationName();
+        int fetched = 0;
+        Set<String> seen = new HashSet<>();
 
-        com.google.api.client.http.HttpRequestInitializer init = req ->
-                req.getHeaders().setAuthorization("Bearer " + accessToken);
+        FetchRun run = newFetchRun(tokenGmail);
 
-        Gmail tokenGmail = new Gmail.Builder(transport, jsonFactory, init)
-                .setApplicationName(appName)
-                .build();
+        for (int pass = checkpoint.getPassIndex(); pass < passes.size(); pass++) {
+            String pageToken = pass == checkpoint.getPassIndex() ? checkpoint.getPageToken() : null;
+            while (true) {
+                String listedToken = pageToken;
+                ListMessagesResponse resp;
+                try {
+                    resp = tokenGmail.users().messages()
+                            .list("me")
+                            .setLabelIds(List.of("INBOX"))
+                            .setQ(passes.get(pass))
+                            .setIncludeSpamTrash(false)
+                            .setMaxResults((long) pageSize)
+                            .setFields("messages/id,nextPageToken")
+                            .setPageToken(pageToken)
+                            .execute();
+                } catch (GoogleJsonResponseException e) {
+                    if (pageToken != null && e.getStatusCode() == 400) {
+                        // stale checkpoint token: re-list the pass; already stored ids are skipped on save
+                        log.warn("Gmail rejected checkpoint page token for run {}; restarting pass {}", checkpoint.getId(), pass);
+                        pageToken = null;
+                        continue;
+                    }
+                    throw e;
+                }
 
-        String pageToken = null;
-        List<GmailMessage> results = new ArrayList<>();
+                List<Message> summary = resp.getMessages() == null ? List.of() : resp.getMessages();
+                List<String> ids = knownGmailIds.unknown(checkpoint.getUserId(),
+                        summary.stream().map(Message::getId).filter(seen::add).toList());
+
+                List<GmailMessage> page = new ArrayList<>(fetchBatch(run, ids));
+                page.addAll(drainRetries(run));
+                fetched += page.size();
+                if (!run.retries().isEmpty()) {
+                    // store what did arrive but keep the checkpoint on this page, so a resume re-lists it
+                    // and fetches the rest (stored ids are skipped)
+                    onPage.onPage(page, 0, pass, listedToken);
+                    throw new IOException(run.retries().size() + " Gmail messages still failing after "
+                            + fetchProperties.maxRetries() + " retries; resume the run to fetch them");
+                }
 
-        Map<String, String> labelNameById = loadLabelNameMap(tokenGmail);
+                pageToken = resp.getNextPageToken();
+                boolean passDone = pageToken == null;
+                onPage.onPage(page, summary.size(), passDone ? pass + 1 : pass, pageToken);
+                if (passDone) break;
+            }
+        }
 
-        do {
-            ListMessagesResponse resp = tokenGmail.users().messages()
-                    .list("me")
-                    .setLabelIds(List.of("INBOX"))
-                    .setQ(query)
-                    .setIncludeSpamTrash(false)
-                    .setMaxResults((long) pageSize)
-                    .setFields("messages/id,nextPageToken")
-                    .setPageToken(pageToken)
-                    .execute();
+        log.info("Fetched {} GmailMessage DTOs concurrently (final fetch concurrency {})",
+                fetched, run.limiter().currentLimit());
+        logTransportStats(run);
+    }
 
-            List<Message> summary = resp.getMessages();
-            if (summary == null || summary.isEmpty()) break;
+    /**
+     * Backfill mode for large first-time imports: splits the after-window into time
+     * shards sized from Gmail's result estimates, lists the shards in parallel, and
+     * feeds each shard's ids into the fetch stage as soon as its listing completes.
+     * A shard is marked done only after its messages are saved, so an interrupted
+     * backfill resumes with the shards that were still pending.
+     */
+    public List<Email> ingestBackfill(Authentication authentication, IngestRun ingestRun) throws Exception {
+        String afterYyyyMmDd = ingestRun.getAfterArg();
+        if (isBlank(afterYyyyMmDd)) {
+            throw new IllegalArgumentException("Backfill requires an 'after' date");
+        }
+        UUID userId = ingestRun.getUserId();
+        LocalDate after = LocalDate.parse(afterYyyyMmDd.trim().replace('/', '-'));
+
+        Gmail tokenGmail = tokenClient(authentication);
+        FetchRun run = newFetchRun(tokenGmail);
+
+        List<BackfillShard> shards = backfillShardRepository
+                .findByUserIdAndWindowAfterOrderByShardStartAsc(userId, after);
+        if (shards.stream().allMatch(BackfillShard::isDone)) {
+            // Fresh backfill, or the previous one finished: plan from where it stopped up to now.
+            Instant from = shards.isEmpty()
+                    ? after.atStartOfDay(ZoneOffset.UTC).toInstant()
+                    : shards.get(shards.size() - 1).getShardEnd();
+            shards = planShards(tokenGmail, userId, after, from, Instant.now());
+        }
+        List<BackfillShard> pending = shards.stream().filter(sh -> !sh.isDone()).toList();
+        log.info("Backfill userId={} after={} shards={} pending={}", userId, after, shards.size(), pending.size());
 
-            var rawPool = fetchExecutor.getThreadPoolExecutor();
+        ExecutorCompletionService<ShardListing> listing =
+                new ExecutorCompletionService<>(listExecutor.getThreadPoolExecutor());
+        for (BackfillShard shard : pending) {
+            listing.submit(() -> new ShardListing(shard, listShard(tokenGmail, shard)));
+        }
 
-            List<CompletableFuture<GmailMessage>> futures = new ArrayList<>(summary.size());
-            for (Message m : summary) {
-                try {
-                    futures.add(CompletableFuture.supplyAsync(
-                            () -> fetchOneMessageAsDto(tokenGmail, m.getId(), labelNameById),
-                            rawPool
-                    ));
-                } catch (RejectedExecutionException rex) {
-                    GmailMessage dto = fetchOneMessageAsDto(tokenGmail, m.getId(), labelNameById);
-                    futures.add(CompletableFuture.completedFuture(dto));
+        Set<String> seen = new HashSet<>();
+        List<Email> saved = new ArrayList<>();
+        for (int i = 0; i < pending.size(); i++) {
+            ShardListing listed;
+            try {
+                listed = listing.take().get();
+            } catch (ExecutionException ex) {
+                throw ex.getCause() instanceof Exception cause ? cause : ex;
+            }
+            List<String> ids = knownGmailIds.unknown(userId, listed.ids().stream().filter(seen::add).toList());
+
+            List<GmailMessage> dtos = new ArrayList<>(fetchBatch(run, ids));
+            dtos.addAll(drainRetries(run));
+            saved.addAll(saveNew(userId, dtos, ingestRun.getId()));
+
+            BackfillShard shard = listed.shard();
+            shard.setListedCount(listed.ids().size());
+            if (run.retries().isEmpty()) {
+                shard.setStatus(BackfillShard.DONE);
+            } else {
+                run.retries().clear(); // keep the shard pending so a resume re-lists it
+            }
+            backfillShardRepository.save(shard);
+        }
+
+        log.info("Backfill userId={} saved {} new emails", userId, saved.size());
+        logTransportStats(run);
+        return saved;
+    }
+
+    private List<BackfillShard> planShards(Gmail client, UUID userId, LocalDate after,
+                                           Instant from, Instant to) throws IOException {
+        List<BackfillShard> planned = new ArrayList<>();
+        splitShard(client, from, to, planned);
+        for (BackfillShard shard : planned) {
+            shard.setUserId(userId);
+            shard.setWindowAfter(after);
+        }
+        return backfillShardRepository.saveAll(planned);
+    }
+
+    private void splitShard(Gmail client, Instant from, Instant to, List<BackfillShard> out) throws IOException {
+        long spanSeconds = to.getEpochSecond() - from.getEpochSecond();
+        if (spanSeconds <= 0) return;
+
+        Long estimate = client.users().messages()
+                .list("me")
+                .setLabelIds(List.of("INBOX"))
+                .setQ(queryCompiler.passes(shardClause(from, to)).get(0))
+                .setIncludeSpamTrash(false)
+                .setMaxResults(1L)
+                .setFields("resultSizeEstimate")
+                .execute()
+                .getResultSizeEstimate();
+        long size = estimate == null ? 0 : estimate;
+
+        if (size > backfillProperties.targetShardSize()
+                && spanSeconds >= 2 * backfillProperties.minShardSpan().getSeconds()) {
+            Instant mid = from.plusSeconds(spanSeconds / 2);
+            splitShard(client, from, mid, out);
+            splitShard(client, mid, to, out);
+            return;
+        }
+        out.add(BackfillShard.builder()
+                .shardStart(from)
+                .shardEnd(to)
+                .estimatedCount((int) Math.min(size, Integer.MAX_VALUE))
+                .build());
+    }
+
+    private List<String> listShard(Gmail client, BackfillShard shard) throws IOException {
+        Set<String> ids = new LinkedHashSet<>();
+        for (String query : queryCompiler.passes(shardClause(shard.getShardStart(), shard.getShardEnd()))) {
+            String pageToken = null;
+            do {
+                ListMessagesResponse resp = client.users().messages()
+                        .list("me")
+                        .setLabelIds(List.of("INBOX"))
+                        .setQ(query)
+                        .setIncludeSpamTrash(false)
+                        .setMaxResults(500L)
+                        .setFields("messages/id,nextPageToken")
+                        .setPageToken(pageToken)
+                        .execute();
+                if (resp.getMessages() != null) {
+                    for (Message m : resp.getMessages()) ids.add(m.getId());
                 }
+                pageToken = resp.getNextPageToken();
+            } while (pageToken != null);
+        }
+        return new ArrayList<>(ids);
+    }
+
+    // Shards overlap by one second so messages on a boundary are never missed; ids are de-duplicated on merge.
+    private static String shardClause(Instant from, Instant to) {
+        return "after:" + (from.getEpochSecond() - 1) + " before:" + to.getEpochSecond();
+    }
+
+    private record ShardListing(BackfillShard shard, List<String> ids) {
+    }
+
+    /**
+     * Fans the GETs out on the fetch pool, gated by the run's AIMD limiter.
+     * Throttled or transiently failed ids land in the run's retry queue.
+     */
+    private List<GmailMessage> fetchBatch(FetchRun run, List<String> gmailIds) throws InterruptedException {
+        var rawPool = fetchExecutor.getThreadPoolExecutor();
+
+        List<CompletableFuture<GmailMessage>> futures = new ArrayList<>(gmailIds.size());
+        for (String id : gmailIds) {
+            run.limiter().acquire();
+            try {
+                futures.add(CompletableFuture.supplyAsync(() -> fetchTracked(run, id), rawPool));
+            } catch (RejectedExecutionException rex) {
+                futures.add(CompletableFuture.completedFuture(fetchTracked(run, id)));
             }
+        }
+
+        List<GmailMessage> out = new ArrayList<>(futures.size());
+        for (var f : futures) {
+            GmailMessage dto = f.join();
+            if (dto != null) out.add(dto);
+        }
+        return out;
+    }
 
+    private List<GmailMessage> drainRetries(FetchRun run) throws InterruptedException {
+        List<GmailMessage> out = new ArrayList<>();
+        for (int attempt = 1; attempt <= fetchProperties.maxRetries() && !run.retries().isEmpty(); attempt++) {
+            List<String> ids = new ArrayList<>();
+            for (String id; (id = run.retries().poll()) != null; ) ids.add(id);
+
+            long backoffMs = Math.min(
+                    fetchProperties.retryBackoff().toMillis() << (attempt - 1),
+                    fetchProperties.maxRetryBackoff().toMillis());
+            backoffMs += ThreadLocalRandom.current().nextLong(backoffMs / 2 + 1);
+            log.info("Retrying {} Gmail GETs in {} ms (attempt {}/{}, concurrency {})",
+                    ids.size(), backoffMs, attempt, fetchProperties.maxRetries(), run.limiter().currentLimit());
+            java.lang.Thread.sleep(backoffMs);
+
+            out.addAll(fetchBatch(run, ids));
+        }
+        if (!run.retries().isEmpty()) {
+            log.error("Gave up on {} Gmail messages after {} retries; their page stays pending: {}",
+                    run.retries().size(), fetchProperties.maxRetries(), run.retries());
+        }
+        return out;
+    }
 
-            for (var f : futures) {
-                GmailMessage dto = f.join();
-                if (dto != null) results.add(dto);
+    private GmailMessage fetchTracked(FetchRun run, String gmailId) {
+        long started = System.nanoTime();
+        try {
+            GmailMessage dto = fetchOneMessageAsDto(run.client(), gmailId, run.labelNameById());
+            run.limiter().onSuccess((System.nanoTime() - started) / 1_000_000);
+            return dto;
+        } catch (GoogleJsonResponseException e) {
+            if (isThrottleOrBackendError(e)) {
+                run.limiter().onThrottle();
+                run.retries().add(gmailId);
+                log.debug("Gmail GET throttled for id {} (HTTP {}), queued for retry", gmailId, e.getStatusCode());
+            } else {
+                log.warn("Gmail GET failed for id {}: {}", gmailId, e.toString());
             }
+            return null;
+        } catch (UnparseableMessageException e) {
+            // the GET itself went fine; a retry would fail the same way, so skip it and keep the limiter's signal clean
+            run.limiter().onSuccess((System.nanoTime() - started) / 1_000_000);
+            log.warn("Skipping Gmail message {}: {}", gmailId, e.getCause() == null ? e.getMessage() : e.getCause().toString());
+            return null;
+        } catch (IOException e) {
+            run.limiter().onError();
+            run.retries().add(gmailId);
+            log.debug("Gmail GET I/O failure for id {}, queued for retry: {}", gmailId, e.toString());
+            return null;
+        } catch (Exception e) {
+            log.warn("Gmail GET failed for id {}: {}", gmailId, e.toString());
+            return null;
+        } finally {
+            run.limiter().release();
+        }
+    }
 
-            pageToken = resp.getNextPageToken();
-        } while (pageToken != null);
+    private static boolean isThrottleOrBackendError(GoogleJsonResponseException e) {
+        int status = e.getStatusCode();
+        if (status == 429 || status >= 500) return true;
+        if (status == 403 && e.getDetails() != null && e.getDetails().getErrors() != null) {
+            return e.getDetails().getErrors().stream()
+                    .anyMatch(err -> "rateLimitExceeded".equals(err.getReason())
+                            || "userRateLimitExceeded".equals(err.getReason()));
+        }
+        return false;
+    }
 
-        log.info("Fetched {} GmailMessage DTOs concurrently", results.size());
-        return results;
+    private record FetchRun(Gmail client,
+                            Map<String, String> labelNameById,
+                            AdaptiveConcurrencyLimiter limiter,
+                            Queue<String> retries,
+                            TransportMetrics.Snapshot transportAtStart) { // null unless on JdkHttpTransport
+        FetchRun(Gmail client, Map<String, String> labelNameById, AdaptiveConcurrencyLimiter limiter) {
+            this(client, labelNameById, limiter, new ConcurrentLinkedQueue<>(),
+                    client.getRequestFactory().getTransport() instanceof JdkHttpTransport jdk ? jdk.metrics().snapshot() : null);
+        }
     }
 
-    private Map<String, String> loadLabelNameMap(Gmail client) throws Exception {
+    private Map<String, String> loadLabelNameMap(Gmail client) throws IOException {
         Map<String, String> map = new HashMap<>();
         ListLabelsResponse labelsResponse = client.users().labels().list("me").execute();
         if (labelsResponse.getLabels() != null) {
@@ -120,51 +396,94 @@ public class GmailService {
     }
 
     // Maps gmail message to unique user
-    public List<Email> ingestAndSave(Authentication authentication, String afterYyyyMmDd) throws Exception {
-        OAuth2User principal = (OAuth2User) authentication.getPrincipal();
-        User user = userRepository.findByEmail(principal.getAttribute("email"))
-                .orElseThrow(() -> new IllegalStateException("User not found"));
+    // Each page is saved and then checkpointed, so a failed run can resume after its last committed page.
+    public List<Email> ingestAndSave(Authentication authentication, IngestRun run) throws Exception {
+        List<Email> saved = new ArrayList<>(emailRepository.findByIngestRunId(run.getId()));
+        if (!saved.isEmpty()) {
+            log.info("Ingest run {} already stored {} emails before it failed", run.getId(), saved.size());
+        }
 
-        List<GmailMessage> dtos = fetchMessagesSince(authentication, afterYyyyMmDd);
+        fetchMessagesSince(authentication, run, (page, listed, nextPassIndex, nextPageToken) -> {
+            List<Email> pageSaved = saveNew(run.getUserId(), page, run.getId());
+            saved.addAll(pageSaved);
+            ingestRunService.commitPage(run, nextPassIndex, nextPageToken, listed, page.size(), pageSaved.size());
+        });
+        return saved;
+    }
+
+    private List<Email> saveNew(UUID userId, List<GmailMessage> dtos, UUID ingestRunId) {
         List<Email> saved = new ArrayList<>();
+        if (dtos.isEmpty()) return saved;
+
+        // stable hash of (userId | (rfc822 or gmailId)); a copy under another Gmail id keeps its Message-ID
+        Map<String, String> hashByGmailId = new HashMap<>();
+        for (GmailMessage g : dtos) {
+            String seed = userId + "|" + (isBlank(g.rfc822MessageId()) ? g.gmailId() : g.rfc822MessageId());
+            hashByGmailId.put(g.gmailId(), sha256(seed));
+        }
+        Set<String> storedGmailIds = new HashSet<>(emailRepository.findExistingGmailIds(hashByGmailId.keySet()));
+        Set<String> knownHashes = new HashSet<>(emailRepository.findExistingMessageIdHashes(userId, hashByGmailId.values()));
+        NearDuplicateDetector.PageIndex nearDuplicates = nearDuplicateDetector.forPage(userId, dtos);
+        int sameMessage = 0, nearCopies = 0;
 
         for (GmailMessage g : dtos) {
-            // 1) Idempotency via gmailId (unique in DB)
-            if (emailRepository.findByGmailId(g.gmailId()).isPresent()) {
+            if (storedGmailIds.contains(g.gmailId())) {
+                continue;
+            }
+            String msgIdHash = hashByGmailId.get(g.gmailId());
+            if (!knownHashes.add(msgIdHash)) {
+                sameMessage++;
+                continue;
+            }
+            Long simhash = SimHash.of(g.bodyText());
+            String original = nearDuplicates.copyOf(g, simhash);
+            if (original != null) {
+                nearCopies++;
+                log.info("Dedup userId={} skipped gmailId={} as a near-duplicate of gmailId={}", userId, g.gmailId(), original);
                 continue;
             }
-            // (If you want user-scoped check instead)
-            // if (emailRepository.findByUserIdAndGmailId(user.getId(), g.gmailId()).isPresent()) continue;
-
-            // 2) Build a stable hash of (userId | (rfc822 or gmailId))
-            String seed = user.getId() + "|" + (isBlank(g.rfc822MessageId()) ? g.gmailId() : g.rfc822MessageId());
-            String msgIdHash = sha256(seed);
 
             Email e = Email.builder()
-                    .userId(user.getId())
+                    .userId(userId)
+                    .ingestRunId(ingestRunId)
                     .gmailId(g.gmailId())
                     .threadId(g.threadId())
                     .messageIdHash(msgIdHash)
+                    .bodySimhash(simhash)
                     .fromAddr(g.from())
                     .toAddr(g.to())
                     .subject(g.subject())
-                    .sentAt(g.sentAtUtc() != null ? g.sentAtUtc().toInstant() : null)
-                    .bodyText(g.bodyText())
+                    .sentAt(sentAt(g))
                     .internalDateMs(g.internalDateMs())
                     .rawLabel(String.join(",", g.labels()))
                     .build();
+            storagePolicy.applyBody(e, g.bodyText());
 
             try {
                 saved.add(emailRepository.save(e));
+                nearDuplicates.add(g, simhash);
+                knownGmailIds.add(userId, g.gmailId());
             } catch (DataIntegrityViolationException dup) {
                 // In case of a rare race (two threads attempt same gmailId),
                 // swallow and continue: another thread already inserted it.
                 log.debug("Duplicate gmailId insert avoided for {}", g.gmailId());
             }
         }
+        if (sameMessage > 0 || nearCopies > 0) {
+            log.info("Dedup userId={} skipped {} copies of stored messages and {} near-duplicates", userId, sameMessage, nearCopies);
+        }
+        searchIndexer.index(saved);
+        if (!saved.isEmpty()) recentWrites.markWritten(userId);
         return saved;
     }
 
+    // emails is partitioned by sent_at, so it cannot be null; fall back to Gmail's receive time
+    private static Instant sentAt(GmailMessage g) {
+        if (g.sentAtUtc() != null) return g.sentAtUtc().toInstant();
+        if (g.internalDateMs() > 0) return Instant.ofEpochMilli(g.internalDateMs());
+        return Instant.now();
+    }
+
     private static String sha256(String in) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
@@ -212,7 +531,8 @@ public class GmailService {
         String mime = part.getMimeType();
 
         if ("text/plain".equalsIgnoreCase(mime)) {
-            return decode(part.getBody());
+            String text = decode(part.getBody());
+            return text.length() > fetchProperties.maxBodyChars() ? text.substring(0, fetchProperties.maxBodyChars()) : text;
         }
         if ("text/html".equalsIgnoreCase(mime)) {
             return stripHtml(decode(part.getBody()));
@@ -238,20 +558,35 @@ public class GmailService {
     }
 
     private String stripHtml(String html) {
-        if (html == null) return "";
-        return html
-                .replaceAll("(?is)<style.*?</style>", "")
-                .replaceAll("(?is)<script.*?</script>", "")
-                .replaceAll("(?i)<br\\s*/?>", "\n")
-                .replaceAll("(?i)</p>", "\n")
-                .replaceAll("<[^>]+>", "")
-                .replace("&nbsp;", " ")
-                .trim();
+        return HtmlText.toText(html, fetchProperties.maxBodyChars());
     }
 
     private boolean isBlank(String s) { return s == null || s.isBlank(); }
     private String nullToEmpty(String s) { return s == null ? "" : s; }
 
+    // Per-call Gmail client that shares the pooled transport but carries this user's token.
+    private Gmail tokenClient(Authentication authentication) {
+        String accessToken = resolveAccessToken(authentication);
+
+        com.google.api.client.http.HttpRequestInitializer init = req ->
+                req.getHeaders().setAuthorization("Bearer " + accessToken);
+
+        return new Gmail.Builder(gmail.getRequestFactory().getTransport(), gmail.getJsonFactory(), init)
+                .setApplicationName(gmail.getApplicationName())
+                .build();
+    }
+
+    private void logTransportStats(FetchRun run) {
+        if (run.transportAtStart() != null
+                && run.client().getRequestFactory().getTransport() instanceof JdkHttpTransport jdk) {
+            log.info("Gmail transport stats for this run: {}", jdk.metrics().snapshot().since(run.transportAtStart()));
+        }
+    }
+
+    private FetchRun newFetchRun(Gmail client) throws IOException {
+        return new FetchRun(client, loadLabelNameMap(client), new AdaptiveConcurrencyLimiter(fetchProperties));
+    }
+
     private String resolveAccessToken(Authentication authentication) {
         OAuth2AuthorizeRequest req = OAuth2AuthorizeRequest
                 .withClientRegistrationId("google")
@@ -265,49 +600,99 @@ public class GmailService {
     }
 
 
-    private GmailMessage fetchOneMessageAsDto(Gmail client, String gmailId, Map<String, String> labelNameById) {
+    private GmailMessage fetchOneMessageAsDto(Gmail client, String gmailId, Map<String, String> labelNameById) throws IOException {
+        if ("raw".equals(fetchProperties.format())) {
+            return fetchOneRawMessageAsDto(client, gmailId, labelNameById);
+        }
+        Message full = client.users().messages().get("me", gmailId)
+                .setFormat("full")
+                .setFields("id,threadId,internalDate,labelIds,payload")
+                .execute();
+
+        MessagePart payload = full.getPayload();
+        List<MessagePartHeader> headers = (payload != null) ? payload.getHeaders() : java.util.Collections.emptyList();
+
+        String rfc822  = header(headers, "Message-ID");
+        String dateHdr = header(headers, "Date");
+        String subject = header(headers, "Subject");
+        String from    = header(headers, "From");
+        String to      = header(headers, "To");
+
+        long internalMs = (full.getInternalDate() != null) ? full.getInternalDate() : 0L;
+        java.time.OffsetDateTime sentAtUtc = toUtc(dateHdr, internalMs);
+
+        String bodyText = extractBodyText(payload);
+        List<String> labels = toLabelNames(full.getLabelIds(), labelNameById);
+
+        return new GmailMessage(
+                full.getId(),
+                full.getThreadId(),
+                (rfc822 != null && !rfc822.isBlank()) ? rfc822 : null,
+                internalMs,
+                nullToEmpty(from),
+                nullToEmpty(to),
+                nullToEmpty(subject),
+                sentAtUtc,
+                bodyText,
+                labels
+        );
+    }
+
+    // format=raw: one base64url string instead of a JSON part tree; parsed lazily by RawMimeParser.
+    private GmailMessage fetchOneRawMessageAsDto(Gmail client, String gmailId, Map<String, String> labelNameById) throws IOException {
+        Message raw = client.users().messages().get("me", gmailId)
+                .setFormat("raw")
+                .setFields("id,threadId,internalDate,labelIds,raw")
+                .execute();
+
+        RawMimeParser.ParsedMime mime;
         try {
-            Message full = client.users().messages().get("me", gmailId)
-                    .setFormat("full")
-                    .setFields("id,threadId,internalDate,labelIds,payload")
-                    .execute();
-
-            MessagePart payload = full.getPayload();
-            List<MessagePartHeader> headers = (payload != null) ? payload.getHeaders() : java.util.Collections.emptyList();
-
-            String rfc822  = header(headers, "Message-ID");
-            String dateHdr = header(headers, "Date");
-            String subject = header(headers, "Subject");
-            String from    = header(headers, "From");
-            String to      = header(headers, "To");
-
-            long internalMs = (full.getInternalDate() != null) ? full.getInternalDate() : 0L;
-            java.time.OffsetDateTime sentAtUtc = toUtc(dateHdr, internalMs);
-
-            String bodyText = extractBodyText(payload);
-            List<String> labels = toLabelNames(full.getLabelIds(), labelNameById);
-
-            return new GmailMessage(
-                    full.getId(),
-                    full.getThreadId(),
-                    (rfc822 != null && !rfc822.isBlank()) ? rfc822 : null,
-                    internalMs,
-                    nullToEmpty(from),
-                    nullToEmpty(to),
-                    nullToEmpty(subject),
-                    sentAtUtc,
-                    bodyText,
-                    labels
-            );
-        } catch (Exception e) {
-            log.warn("Gmail GET failed for id {}: {}", gmailId, e.toString());
-            return null;
+            mime = RawMimeParser.parse(raw.decodeRaw(), fetchProperties.maxBodyChars());
+        } catch (jakarta.mail.MessagingException e) {
+            throw new UnparseableMessageException("Unparseable MIME for Gmail message " + gmailId, e);
         }
+
+        long internalMs = (raw.getInternalDate() != null) ? raw.getInternalDate() : 0L;
+
+        return new GmailMessage(
+                raw.getId(),
+                raw.getThreadId(),
+                isBlank(mime.messageId()) ? null : mime.messageId(),
+                internalMs,
+                nullToEmpty(mime.from()),
+                nullToEmpty(mime.to()),
+                nullToEmpty(mime.subject()),
+                toUtc(mime.date(), internalMs),
+                mime.bodyText(),
+                toLabelNames(raw.getLabelIds(), labelNameById)
+        );
     }
 
-    @Transactional
-    public void deleteAllForUser(UUID userId) {
-        emailRepository.deleteByUserId(userId);
+    /**
+     * Deletes in chunks of {@code chunkSize}, each its own transaction, reporting the
+     * running total after every chunk. Returns the number of emails deleted.
+     */
+    public long deleteAllForUser(UUID userId, int chunkSize, LongConsumer progress) {
+        long total = 0;
+        for (int n; (n = emailRepository.deleteChunkByUserId(userId, chunkSize)) > 0; ) {
+            total += n;
+            progress.accept(total);
+        }
+        // archived mail and its keys too, so nothing is left behind and a fresh ingest stores it again
+        long archived = emailRepository.purgeArchivedByUserId(userId);
+        if (archived > 0) {
+            total += archived;
+            progress.accept(total);
+            log.info("Purge userId={} removed {} archived emails", userId, archived);
+        }
+        long keys = 0;
+        for (int n; (n = emailRepository.deleteKeyChunkByUserId(userId, chunkSize)) > 0; ) {
+            keys += n;
+        }
+        if (keys > 0) log.info("Purge userId={} removed {} keys of archived emails", userId, keys);
+        prefilter.forget(userId);
+        knownGmailIds.forget(userId);
+        return total;
     }
 
 }
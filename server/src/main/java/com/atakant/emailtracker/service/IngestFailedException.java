@@ -0,0 +1,29 @@
+package com.atakant.emailtracker.service;
+
+import java.util.UUID;
+
+public class IngestFailedException extends RuntimeException {
+    private final UUID runId;
+    private final String stage;
+    private final boolean resumable;
+
+    public IngestFailedException(UUID runId, String stage, boolean resumable, Exception cause) {
+        super(cause.getMessage(), cause);
+        this.runId = runId;
+        this.stage = stage;
+        this.resumable = resumable;
+    }
+
+    public UUID getRunId() {
+        return runId;
+    }
+
+    /** Stage the run was left in: paused, failed, or where it was if that could not be recorded. */
+    public String getStage() {
+        return stage;
+    }
+
+    public boolean isResumable() {
+        return resumable;
+    }
+}
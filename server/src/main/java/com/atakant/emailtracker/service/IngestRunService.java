@@ -0,0 +1,101 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.domain.IngestRun;
+import com.atakant.emailtracker.repo.IngestRunRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Persists ingest run progress. Every write is its own short transaction so the
+ * checkpoint survives whatever later kills the run.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IngestRunService {
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+    private static final List<String> RESUMABLE = List.of(IngestRun.PAUSED, IngestRun.FAILED);
+
+    private final IngestRunRepository runs;
+
+    /**
+     * With {@code resume}, picks up the user's most recent paused or failed run from its last
+     * committed page (keeping that run's original after date); otherwise starts a new run.
+     */
+    public IngestRun startOrResume(UUID userId, String afterArg, boolean resume) {
+        if (resume) {
+            IngestRun stopped = runs.findFirstByUserIdAndStageInOrderByStartedAtDesc(userId, RESUMABLE).orElse(null);
+            if (stopped != null) {
+                log.info("Resuming {} ingest run {} userId={} pass={} pagesCommitted={}", stopped.getStage(),
+                        stopped.getId(), userId, stopped.getPassIndex(), stopped.getPagesCommitted());
+                stopped.setStage(IngestRun.LISTING);
+                stopped.setError(null);
+                stopped.setFinishedAt(null);
+                return runs.save(stopped);
+            }
+            log.info("No paused or failed ingest run to resume for userId={}; starting a new one", userId);
+        }
+        return runs.save(IngestRun.builder()
+                .userId(userId)
+                .afterArg(afterArg)
+                .build());
+    }
+
+    public void commitPage(IngestRun run, int nextPassIndex, String nextPageToken,
+                           int listed, int fetched, int saved) {
+        run.setPassIndex(nextPassIndex);
+        run.setPageToken(nextPageToken);
+        run.setPagesCommitted(run.getPagesCommitted() + 1);
+        run.setListedCount(run.getListedCount() + listed);
+        run.setFetchedCount(run.getFetchedCount() + fetched);
+        run.setSavedCount(run.getSavedCount() + saved);
+        runs.save(run);
+    }
+
+    public void markStage(IngestRun run, String stage) {
+        run.setStage(stage);
+        runs.save(run);
+    }
+
+    public void complete(IngestRun run, int applicationsSaved) {
+        run.setStage(IngestRun.COMPLETED);
+        run.setApplicationsSaved(applicationsSaved);
+        run.setFinishedAt(Instant.now());
+        runs.save(run);
+    }
+
+    /** Stopped by the daily quota: nothing went wrong, the run continues once quota is back. */
+    public void pause(IngestRun run, RateLimitExceededException cause) {
+        log.info("Ingest run {} userId={} paused: {}", run.getId(), run.getUserId(), cause.getMessage());
+        stop(run, IngestRun.PAUSED, cause);
+    }
+
+    public void fail(IngestRun run, Exception cause) {
+        stop(run, IngestRun.FAILED, cause);
+    }
+
+    /** Whether ?resume=true would pick the run up again. */
+    public static boolean isResumable(IngestRun run) {
+        return RESUMABLE.contains(run.getStage());
+    }
+
+    private void stop(IngestRun run, String stage, Exception cause) {
+        String message = cause.getMessage() == null ? cause.toString() : cause.getMessage();
+        String previous = run.getStage();
+        run.setStage(stage);
+        run.setError(message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message);
+        run.setFinishedAt(Instant.now());
+        try {
+            runs.save(run);
+        } catch (RuntimeException e) {
+            run.setStage(previous); // resume finds runs by their stored stage, so report what is stored
+            log.error("Could not record {} ingest run {}: {}", stage, run.getId(), e.toString());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.config.KnownIdsProperties;
+import com.atakant.emailtracker.repo.EmailRepository;
+import com.atakant.emailtracker.utils.ScalableBloomFilter;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Per-user Bloom filter of stored Gmail ids, so listed ids that are already stored
+ * can be dropped before the messages.get. A "no" from the filter is definite; only the
+ * "maybe" answers are checked against the database, in one query per page. Filters are kept
+ * for the most recently active users only; an evicted one is rebuilt from the database on next use.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KnownGmailIds {
+
+    private final KnownIdsProperties props;
+    private final EmailRepository emailRepository;
+
+    private Map<UUID, ScalableBloomFilter> filters;
+
+    @PostConstruct
+    void init() {
+        // access-ordered, so the eldest entry is the least recently used filter
+        filters = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, ScalableBloomFilter> eldest) {
+                return size() > props.maxCachedFilters();
+            }
+        };
+    }
+
+    /** The ids from {@code listed} that are not stored yet, in their original order. */
+    public List<String> unknown(UUID userId, List<String> listed) {
+        if (!props.enabled() || listed.isEmpty()) return listed;
+        ScalableBloomFilter filter = filter(userId);
+
+        List<String> maybe = new ArrayList<>();
+        synchronized (filter) {
+            for (String id : listed) {
+                if (filter.mightContain(id)) maybe.add(id);
+            }
+        }
+        if (maybe.isEmpty()) return listed;
+
+        Set<String> stored = new HashSet<>(emailRepository.findExistingGmailIds(maybe));
+        if (stored.isEmpty()) return listed;
+        log.debug("Known ids userId={} listed={} maybe={} stored={}", userId, listed.size(), maybe.size(), stored.size());
+        return listed.stream().filter(id -> !stored.contains(id)).toList();
+    }
+
+    public void add(UUID userId, String gmailId) {
+        if (!props.enabled()) return;
+        ScalableBloomFilter filter;
+        synchronized (filters) {
+            filter = filters.get(userId);
+        }
+        if (filter == null) return; // built from the DB on first use, which will include this id
+        synchronized (filter) {
+            filter.add(gmailId);
+        }
+    }
+
+    public void forget(UUID userId) {
+        synchronized (filters) {
+            filters.remove(userId);
+        }
+    }
+
+    // Built outside the map's lock so one user's DB load does not stall the others; if two
+    // threads race on the same user, the first filter stored wins.
+    private ScalableBloomFilter filter(UUID userId) {
+        synchronized (filters) {
+            ScalableBloomFilter cached = filters.get(userId);
+            if (cached != null) return cached;
+        }
+        ScalableBloomFilter filter = new ScalableBloomFilter(props.initialCapacity(), props.falsePositiveRate());
+        for (String gmailId : emailRepository.findGmailIdsByUserId(userId)) {
+            filter.add(gmailId);
+        }
+        log.info("Known-id filter built userId={} ids={}", userId, filter.approximateCount());
+        synchronized (filters) {
+            ScalableBloomFilter raced = filters.putIfAbsent(userId, filter);
+            return raced != null ? raced : filter;
+        }
+    }
+}
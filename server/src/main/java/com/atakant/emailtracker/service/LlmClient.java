@@ -1,5 +1,6 @@
 package com.atakant.emailtracker.service;
 
+import com.atakant.emailtracker.config.PromptProperties;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -8,6 +9,7 @@ import lombok.Getter;
 import lombok.Setter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -16,10 +18,14 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.util.HexFormat;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -39,9 +45,34 @@ public class LlmClient {
     @Value("${openai.model:gpt-5-nano}")
     private String model;
 
+    // Stronger model for extractions the primary model gets wrong or is unsure about; blank disables the cascade.
+    @Value("${openai.escalation-model:}")
+    private String escalationModel;
+
+    @Value("${openai.escalation-confidence:0.6}")
+    private double escalationConfidence;
+
+    // budgets shape what the model sees, so they are part of the extraction version
+    @Autowired
+    private PromptProperties promptProperties;
+
+    /**
+     * Bump with any change to how a prompt is put together outside SYSTEM:
+     * CandidateEmailService.buildPrompt, the thread-context digests, or PromptCompactor's rules.
+     */
+    static final int PROMPT_FORMAT = 3;
+
+    private static final Set<String> STATUSES = Set.of("applied", "assessment", "interview", "offer", "rejected", "other");
+
     private static final String SYSTEM = """
 You are an information-extraction system for job application emails.
 
+INPUT: each user message is one email as "SUBJECT:", "FROM:", "SENT:" and "BODY:". The body has been compacted: quoted replies,
+signatures and footers are removed, long links appear as [link], and "…" on its own line marks omitted text.
+When the email is part of a conversation, an "EARLIER IN THREAD" section with short digests of previous messages
+comes first, followed by "LATEST MESSAGE:". Extract for the conversation as a whole: take company/role from wherever
+they are stated, and base "status" and "next_action" on the LATEST message.
+
 Return ONLY a SINGLE compact, MINIFIED JSON object with EXACTLY these keys (no extra keys, no markdown, no code fences, no explanations):
 {
   "is_application": boolean,
@@ -50,9 +81,11 @@ Return ONLY a SINGLE compact, MINIFIED JSON object with EXACTLY these keys (no e
   "location": string,
   "status": "applied" | "assessment" | "interview" | "offer" | "rejected" | "other",
   "next_action": string,
+  "next_action_due": string,
   "notes": string,
   "normalized_company": string,
-  "normalized_role_title": string
+  "normalized_role_title": string,
+  "confidence": number
 }
 
 CLASSIFY FIRST:
@@ -74,6 +107,8 @@ EXTRACTION RULES:
 - Do NOT infer the user's role from employee signatures (“Senior SDE” in a signature ≠ the user's role).
 - LOCATION is the job location (e.g., “United States (Remote)”, “Seattle, WA”). Ignore addresses in footers.
 - "next_action": the most concrete action required of the candidate (e.g., “complete OA by Sep 2”, “schedule interview”); "(unknown)" if none.
+- "next_action_due": the deadline or scheduled time of "next_action" as ISO-8601: "2025-09-02" for a date, "2025-09-02T17:00:00-04:00" when a time is given.
+  Resolve relative dates ("by Friday", "within 7 days") against SENT. "(unknown)" when no date is stated; never guess one.
 - "notes": 1–2 short phrases: "application received", "OA invitation", "interview scheduled", "rejection", etc.
 
 LLM-POWERED NORMALIZATION (must be stable across paraphrases):
@@ -95,31 +130,82 @@ WHEN is_application = false:
 - "role_title": "(unknown)"
 - "location": "(unknown)"
 - "next_action": "(ignore — non-application email)"
+- "next_action_due": "(unknown)"
 - "notes": brief reason ("newsletter/referral", "event/community", etc.)
 
+CONFIDENCE:
+- "confidence" is a number from 0 to 1: how sure you are about "is_application", "status", "company" and "role_title" together.
+  Use below 0.5 when the email is ambiguous or key fields had to be guessed.
+
 OUTPUT FORMAT:
 - Always return valid minified JSON (no markdown, no commentary).
 """;
 
 
+    /**
+     * Tags stored extractions with the prompt and models that produced them, e.g.
+     * {@code gpt-5-nano@3f9a0c41d2e7}; any edit to SYSTEM, PROMPT_FORMAT, the compaction budgets
+     * or the model settings yields a new version.
+     */
+    public String extractionVersion() {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            String inputs = SYSTEM + "\n" + PROMPT_FORMAT + "\n" + promptProperties + "\n" + model + "\n" + escalationModel;
+            byte[] digest = sha.digest(inputs.getBytes(StandardCharsets.UTF_8));
+            return model + "@" + HexFormat.of().formatHex(digest, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     public ApplicationExtractionResult extractApplication(String prompt) {
         if(apiKey == null || apiKey.isBlank()) {
             throw new IllegalArgumentException("apiKey is mandatory");
         }
 
+        ApplicationExtractionResult primary = extractWith("primary", model, prompt);
+        String reason = escalationReason(primary);
+        if (reason == null || escalationModel == null || escalationModel.isBlank()) {
+            return primary;
+        }
+
+        log.info("LLM escalate model={} -> {} reason={}", model, escalationModel, reason);
+        ApplicationExtractionResult escalated = extractWith("escalation", escalationModel, prompt);
+        return escalated != null ? escalated : primary;
+    }
+
+    private ApplicationExtractionResult extractWith(String tier, String tierModel, String prompt) {
+        Completion c = callOpenAi(tierModel, prompt);
+        if (c == null) {
+            return null;
+        }
+        log.info("LLM tier={} model={} latencyMs={} promptTokens={} cachedTokens={} completionTokens={}",
+                tier, tierModel, c.latencyMs(), c.promptTokens(), c.cachedTokens(), c.completionTokens());
         try {
-            String json = callOpenAi(prompt);
-            if(json == null || json.isBlank()) {
-                return null;
-            }
-            return mapper.readValue(json, ApplicationExtractionResult.class);
+            return mapper.readValue(c.content(), ApplicationExtractionResult.class);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.warn("LLM tier={} returned unmappable JSON: {}", tier, e.toString());
             return null;
         }
     }
 
-    private String callOpenAi(String prompt) {
+    // Why a primary-tier result should not be trusted, or null when it can be accepted as is.
+    private String escalationReason(ApplicationExtractionResult r) {
+        if (r == null) return "no-result";
+        if (r.getStatus() == null || !STATUSES.contains(r.getStatus().trim().toLowerCase())) return "invalid-status";
+        if (r.isApplication() && (isUnknown(r.getCompany()) || isUnknown(r.getRoleTitle()))) return "unknown-company-or-role";
+        if (r.getConfidence() != null && r.getConfidence() < escalationConfidence) return "low-confidence";
+        return null;
+    }
+
+    private static boolean isUnknown(String s) {
+        return s == null || s.isBlank() || s.trim().equalsIgnoreCase("(unknown)");
+    }
+
+    private record Completion(String content, long latencyMs, int promptTokens, int cachedTokens, int completionTokens) {
+    }
+
+    private Completion callOpenAi(String model, String prompt) {
         final String traceId = UUID.randomUUID().toString().substring(0, 8);
         try {
 
@@ -143,7 +229,9 @@ OUTPUT FORMAT:
                     .POST(HttpRequest.BodyPublishers.ofByteArray(bodyBytes))
                     .build();
 
+            long startedAt = System.nanoTime();
             HttpResponse<String> resp = HTTP.send(req, HttpResponse.BodyHandlers.ofString());
+            long latencyMs = (System.nanoTime() - startedAt) / 1_000_000;
             if (resp.statusCode() / 100 != 2) {
                 log.error("[{}] OpenAI HTTP {}: {}\nrequestBodyPreview={}",
                         traceId, resp.statusCode(), resp.body(),
@@ -174,7 +262,11 @@ OUTPUT FORMAT:
                 return null;
             }
 
-            return content;
+            var usage = root.path("usage");
+            return new Completion(content, latencyMs,
+                    usage.path("prompt_tokens").asInt(),
+                    usage.at("/prompt_tokens_details/cached_tokens").asInt(),
+                    usage.path("completion_tokens").asInt());
 
         } catch (InterruptedException ie) {
             Thread.currentThread().interrupt();
@@ -207,6 +299,9 @@ OUTPUT FORMAT:
         @JsonProperty("next_action")
         private String nextAction;
 
+        @JsonProperty("next_action_due")
+        private String nextActionDue;
+
         private String notes;
 
         @JsonProperty("normalized_company")
@@ -214,6 +309,8 @@ OUTPUT FORMAT:
 
         @JsonProperty("normalized_role_title")
         private String normalizedRoleTitle;
+
+        private Double confidence;
     }
 
 
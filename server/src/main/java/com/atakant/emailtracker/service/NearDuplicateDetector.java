@@ -0,0 +1,112 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.config.DedupProperties;
+import com.atakant.emailtracker.domain.Email;
+import com.atakant.emailtracker.gmail.GmailMessage;
+import com.atakant.emailtracker.repo.EmailRepository;
+import com.atakant.emailtracker.utils.SimHash;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Spots re-sent copies of a stored email: same subject (ignoring Re:/Fwd:), a body SimHash
+ * within a few bits, sent within the configured window, and from the same sender address or
+ * in the same thread. Templated ATS mail from different companies shares subject and body
+ * shape, so subject and body alone are not enough. Confirmations for two roles at one company
+ * can pass all of that, so a candidate must also contain every line of the original (links,
+ * numbers and forward headers aside); only those few candidates load the original's body.
+ */
+@Component
+@RequiredArgsConstructor
+public class NearDuplicateDetector {
+
+    private final DedupProperties props;
+    private final EmailRepository emailRepository;
+
+    /** Loads fingerprints of stored emails around the page's send dates; one query per page. */
+    public PageIndex forPage(UUID userId, List<GmailMessage> page) {
+        PageIndex index = new PageIndex();
+        if (!props.nearDuplicates()) return index;
+
+        Instant min = null, max = null;
+        for (GmailMessage g : page) {
+            Instant at = sentAt(g);
+            if (min == null || at.isBefore(min)) min = at;
+            if (max == null || at.isAfter(max)) max = at;
+        }
+        if (min == null) return index;
+
+        for (EmailRepository.SimhashView v : emailRepository.findByUserIdAndBodySimhashIsNotNullAndSentAtBetween(
+                userId, min.minus(props.window()), max.plus(props.window()))) {
+            if (v.getSentAt() != null) {
+                index.add(new Seen(v.getGmailId(), v.getThreadId(), senderAddress(v.getFromAddr()),
+                        v.getBodySimhash(), v.getSentAt(), null), v.getSubject());
+            }
+        }
+        return index;
+    }
+
+    // body is only held for emails of the current page; stored ones are loaded when needed
+    private record Seen(String gmailId, String threadId, String sender, long simhash, Instant sentAt, String body) {
+    }
+
+    public final class PageIndex {
+        private final Map<String, List<Seen>> bySubject = new HashMap<>();
+
+        private PageIndex() {}
+
+        /** Gmail id of the stored or earlier-in-page email {@code g} is a copy of; null if none. */
+        public String copyOf(GmailMessage g, Long simhash) {
+            if (!props.nearDuplicates() || simhash == null) return null;
+            Instant at = sentAt(g);
+            String sender = senderAddress(g.from());
+            for (Seen s : bySubject.getOrDefault(SimHash.subjectKey(g.subject()), List.of())) {
+                boolean sameOrigin = (sender != null && sender.equals(s.sender()))
+                        || (g.threadId() != null && g.threadId().equals(s.threadId()));
+                if (sameOrigin
+                        && Math.abs(s.sentAt().toEpochMilli() - at.toEpochMilli()) <= props.window().toMillis()
+                        && SimHash.distance(s.simhash(), simhash) <= props.maxHammingDistance()
+                        && SimHash.containsAllLines(body(s), g.bodyText())) {
+                    return s.gmailId();
+                }
+            }
+            return null;
+        }
+
+        public void add(GmailMessage g, Long simhash) {
+            if (simhash != null) {
+                add(new Seen(g.gmailId(), g.threadId(), senderAddress(g.from()), simhash, sentAt(g), g.bodyText()), g.subject());
+            }
+        }
+
+        private void add(Seen seen, String subject) {
+            bySubject.computeIfAbsent(SimHash.subjectKey(subject), k -> new ArrayList<>()).add(seen);
+        }
+    }
+
+    private String body(Seen s) {
+        if (s.body() != null) return s.body();
+        return emailRepository.findByGmailId(s.gmailId()).map(Email::getBodyText).orElse(null);
+    }
+
+    // "Acme Careers <no-reply@acme.com>" -> "no-reply@acme.com"
+    static String senderAddress(String from) {
+        if (from == null || from.isBlank()) return null;
+        int lt = from.lastIndexOf('<'), gt = from.lastIndexOf('>');
+        String addr = lt >= 0 && gt > lt ? from.substring(lt + 1, gt) : from;
+        addr = addr.trim().toLowerCase(Locale.ROOT);
+        return addr.isEmpty() ? null : addr;
+    }
+
+    private static Instant sentAt(GmailMessage g) {
+        return g.sentAtUtc() != null ? g.sentAtUtc().toInstant() : Instant.ofEpochMilli(g.internalDateMs());
+    }
+}
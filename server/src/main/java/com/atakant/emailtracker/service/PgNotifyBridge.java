@@ -0,0 +1,94 @@
+package com.atakant.emailtracker.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+/**
+ * Feeds application changes committed on any node into the local stream hub, via the
+ * {@code application_changes} channel notified by the applications triggers (V30). Those only
+ * notify from sessions with {@code app.notify_application_changes} on, which the pool's
+ * connection-init-sql sets from the same property that enables this bridge. Holds one
+ * dedicated connection outside the pool, so listening never takes a pooled connection.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.stream", name = "pg-notify", havingValue = "true")
+@RequiredArgsConstructor
+public class PgNotifyBridge implements SmartLifecycle {
+
+    private static final String CHANNEL = "application_changes";
+    private static final int POLL_TIMEOUT_MS = 10_000;
+    private static final long RECONNECT_DELAY_MS = 5_000;
+
+    private final DataSourceProperties dataSourceProperties;
+    private final ApplicationStreamHub hub;
+
+    private volatile boolean running;
+    private Thread listener;
+
+    @Override
+    public void start() {
+        running = true;
+        listener = new Thread(this::listen, "pg-listen");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (listener != null) listener.interrupt();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection conn = DriverManager.getConnection(
+                    dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(),
+                    dataSourceProperties.determinePassword())) {
+                try (Statement st = conn.createStatement()) {
+                    st.execute("LISTEN " + CHANNEL);
+                }
+                log.info("Listening for application changes on channel {}", CHANNEL);
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications == null) continue;
+                    for (PGNotification n : notifications) {
+                        try {
+                            hub.changed(UUID.fromString(n.getParameter()));
+                        } catch (IllegalArgumentException e) {
+                            log.debug("Ignoring malformed {} payload: {}", CHANNEL, n.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) return;
+                log.warn("LISTEN {} connection lost, reconnecting in {} ms: {}", CHANNEL, RECONNECT_DELAY_MS, e.toString());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
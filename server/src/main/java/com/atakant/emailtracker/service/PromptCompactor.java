@@ -0,0 +1,176 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.config.PromptProperties;
+import com.atakant.emailtracker.utils.CandidateRules;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Shrinks an email body before it is sent to the LLM: cuts quoted reply chains and
+ * signatures, drops footer/boilerplate lines, shortens tracking links, and when the
+ * result is still over budget keeps the opening plus windows around subject and
+ * keyword hits. Rule changes here need a bump of LlmClient.PROMPT_FORMAT so stored
+ * extractions are redone.
+ */
+@Component
+@RequiredArgsConstructor
+public class PromptCompactor {
+
+    private static final Pattern REPLY_HEADER = Pattern.compile(
+            "^(On\\s.{1,200}\\swrote:|-{2,}\\s*Original Message\\s*-{2,}|_{10,}|From:\\s.+\\s(Sent|Date):\\s.+)$",
+            Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+    private static final Pattern SIGNATURE_DELIMITER = Pattern.compile("^--\\s?$", Pattern.MULTILINE);
+    private static final Pattern SIGN_OFF = Pattern.compile(
+            "^(best( regards)?|kind regards|regards|sincerely|thanks|thank you|cheers|warmly|all the best),?\\s*$",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern FOOTER_LINE = Pattern.compile(
+            "unsubscribe|privacy (policy|notice)|terms of (use|service)|view (it )?in (your )?browser"
+                    + "|manage (your )?(email )?preferences|all rights reserved|©|copyright \\d{4}"
+                    + "|this (email|message) was sent (to|by)|you are receiving this|do not reply to this"
+                    + "|confidentiality notice|intended (solely )?for the (named )?recipient",
+            Pattern.CASE_INSENSITIVE);
+    // what makes the lines after a sign-off more than a name/title/contact block
+    private static final Pattern KEYWORD_HIT = Pattern.compile(
+            "\\b(" + String.join("|", CandidateRules.KEYWORDS.stream().map(Pattern::quote).toList()) + ")\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern DATE_LIKE = Pattern.compile(
+            "\\b(jan|feb|mar|apr|may|jun|jul|aug|sep|oct|nov|dec)[a-z]*\\.?\\s+\\d{1,2}\\b"
+                    + "|\\b\\d{1,2}[/.-]\\d{1,2}([/.-]\\d{2,4})?\\b|\\b\\d{4}-\\d{2}-\\d{2}\\b"
+                    + "|\\b(mon|tues|wednes|thurs|fri|satur|sun)day\\b|\\b(today|tomorrow|next week)\\b"
+                    + "|\\b\\d{1,2}(:\\d{2})?\\s*(am|pm)\\b|\\b\\d{1,2}:\\d{2}\\b",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern POSTSCRIPT = Pattern.compile("^p\\.?\\s?s\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LONG_URL = Pattern.compile("https?://\\S{40,}");
+    private static final Pattern BLANK_RUNS = Pattern.compile("\\n{3,}");
+
+    private static final int SIGN_OFF_MAX_TRAILING_LINES = 8;
+    private static final String GAP = "\n…\n";
+
+    private final PromptProperties props;
+
+    public record Compacted(String body, int tokensBefore, int tokensAfter) {
+    }
+
+    /**
+     * Cheap token estimate (no tokenizer): English prose runs about four characters
+     * per token, while short-word or punctuation-heavy text is closer to 1.3 tokens per word.
+     */
+    public static int estimateTokens(String s) {
+        if (s == null || s.isEmpty()) return 0;
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < s.length(); i++) {
+            boolean ws = Character.isWhitespace(s.charAt(i));
+            if (!ws && !inWord) words++;
+            inWord = !ws;
+        }
+        return (int) Math.ceil(Math.max(s.length() / 4.0, words * 1.3));
+    }
+
+    public Compacted compact(String subject, String body) {
+        return compact(subject, body, props.maxBodyTokens());
+    }
+
+    /** Shorter digest of an earlier message in the same thread. */
+    public Compacted compactContext(String subject, String body) {
+        return compact(subject, body, props.threadContextTokens());
+    }
+
+    public int maxThreadContextMessages() {
+        return props.threadContextMessages();
+    }
+
+    private Compacted compact(String subject, String body, int maxTokens) {
+        if (body == null || body.isBlank()) return new Compacted("", 0, 0);
+        int before = estimateTokens(body);
+
+        String text = body.replace("\r\n", "\n");
+        text = cutAt(text, REPLY_HEADER);
+        text = cutAt(text, SIGNATURE_DELIMITER);
+        text = dropBoilerplateLines(text);
+        text = LONG_URL.matcher(text).replaceAll("[link]");
+        text = BLANK_RUNS.matcher(text).replaceAll("\n\n").trim();
+
+        if (estimateTokens(text) > maxTokens) {
+            text = relevanceWindows(subject, text, maxTokens);
+        }
+        return new Compacted(text, before, estimateTokens(text));
+    }
+
+    private static String cutAt(String text, Pattern marker) {
+        var m = marker.matcher(text);
+        // never cut away the whole message: a reply header on the first line means a forwarded/quoted-only mail
+        while (m.find()) {
+            if (m.start() > 0) return text.substring(0, m.start());
+        }
+        return text;
+    }
+
+    private static String dropBoilerplateLines(String text) {
+        String[] lines = text.split("\n", -1);
+        List<String> kept = new ArrayList<>(lines.length);
+        for (String line : lines) {
+            String t = line.strip();
+            if (t.startsWith(">")) continue; // inline quoted reply
+            if (FOOTER_LINE.matcher(t).find()) continue;
+            kept.add(line);
+        }
+        // a sign-off near the end: what follows is usually a name/title/contact block
+        for (int i = kept.size() - 1; i >= 0 && i >= kept.size() - 1 - SIGN_OFF_MAX_TRAILING_LINES; i--) {
+            if (i > 0 && SIGN_OFF.matcher(kept.get(i).strip()).matches()) {
+                List<String> tail = kept.subList(i + 1, kept.size());
+                if (tail.stream().anyMatch(PromptCompactor::carriesContent)) break;
+                return String.join("\n", kept.subList(0, i + 1));
+            }
+        }
+        return String.join("\n", kept);
+    }
+
+    // a P.S., a date or time, or a keyword after the sign-off is part of the message, not the signature
+    private static boolean carriesContent(String line) {
+        String t = line.strip();
+        return POSTSCRIPT.matcher(t).find() || DATE_LIKE.matcher(t).find() || KEYWORD_HIT.matcher(t).find();
+    }
+
+    // Keeps the opening of the mail plus +-window chars around subject-word and keyword hits, up to the budget.
+    private String relevanceWindows(String subject, String text, int maxTokens) {
+        int budgetChars = maxTokens * 4;
+        int window = Math.min(props.windowChars(), budgetChars / 2);
+        String lower = text.toLowerCase(Locale.ROOT);
+
+        List<String> needles = new ArrayList<>(CandidateRules.KEYWORDS);
+        if (subject != null) {
+            for (String w : subject.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (w.length() >= 4) needles.add(w);
+            }
+        }
+
+        List<int[]> ranges = new ArrayList<>();
+        ranges.add(new int[]{0, Math.min(text.length(), window)});
+        for (String needle : needles) {
+            if (needle.length() < 3) continue; // "oa" would match everywhere
+            for (int at = lower.indexOf(needle); at >= 0; at = lower.indexOf(needle, at + needle.length())) {
+                ranges.add(new int[]{Math.max(0, at - window), Math.min(text.length(), at + needle.length() + window)});
+            }
+        }
+        ranges.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+        StringBuilder out = new StringBuilder(Math.min(text.length(), budgetChars + 64));
+        int end = -1;
+        for (int[] r : ranges) {
+            int start = Math.max(r[0], end);
+            if (start >= r[1]) continue;
+            if (end >= 0 && start > end) out.append(GAP);
+            int take = Math.min(r[1] - start, budgetChars - out.length());
+            if (take <= 0) break;
+            out.append(text, start, start + take);
+            end = start + take;
+        }
+        return out.toString().trim();
+    }
+}
@@ -0,0 +1,144 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.config.PurgeProperties;
+import com.atakant.emailtracker.domain.PurgeJob;
+import com.atakant.emailtracker.repo.PurgeJobRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deletes all of a user's applications and emails with set-based DELETEs of a bounded
+ * number of rows, each committed on its own, so neither the heap nor a single transaction
+ * grows with the mailbox. Progress is written to purge_jobs after every chunk.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PurgeService {
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final PurgeJobRepository jobs;
+    private final ApplicationService applicationService;
+    private final GmailService gmailService;
+    private final PurgeProperties props;
+    private final ApplicationEventPublisher events;
+    private final ThreadPoolTaskExecutor jobExecutor;
+
+    // userId -> purge being driven by this instance
+    private final Map<UUID, UUID> active = new ConcurrentHashMap<>();
+
+    /**
+     * Purges on the calling thread and returns the finished job. If a purge is already
+     * running for the user, that job is returned instead, still running.
+     */
+    public PurgeJob purge(UUID userId) {
+        Claim claim = claim(userId);
+        if (claim.fresh()) {
+            drive(claim.job());
+        }
+        return claim.job();
+    }
+
+    /**
+     * Starts a purge in the background and returns it straight away. If one is already
+     * running for the user, that job is returned instead.
+     */
+    public PurgeJob start(UUID userId) {
+        Claim claim = claim(userId);
+        if (!claim.fresh()) return claim.job();
+        try {
+            jobExecutor.execute(() -> drive(claim.job()));
+        } catch (TaskRejectedException e) {
+            active.remove(userId);
+            fail(claim.job(), e);
+            throw new IllegalStateException("Too many background jobs running; try again later", e);
+        }
+        return claim.job();
+    }
+
+    public Optional<PurgeJob> find(UUID userId, UUID jobId) {
+        return jobs.findByIdAndUserId(jobId, userId);
+    }
+
+    private record Claim(PurgeJob job, boolean fresh) {
+    }
+
+    // a new job registered as this user's active purge, or the one already running
+    private Claim claim(UUID userId) {
+        UUID inProgress = active.get(userId);
+        if (inProgress != null) {
+            return new Claim(jobs.findById(inProgress).orElseThrow(), false);
+        }
+        PurgeJob job = jobs.save(PurgeJob.builder().userId(userId).build());
+        UUID raced = active.putIfAbsent(userId, job.getId());
+        if (raced != null) {
+            jobs.delete(job);
+            return new Claim(jobs.findById(raced).orElseThrow(), false);
+        }
+        return new Claim(job, true);
+    }
+
+    private void drive(PurgeJob job) {
+        UUID userId = job.getUserId();
+        long started = System.currentTimeMillis();
+        try {
+            // applications first: they point at emails, so every email delete would otherwise update them
+            job.setApplicationsDeleted(applicationService.deleteAllForUser(userId, props.chunkSize(), n -> {
+                job.setApplicationsDeleted(n);
+                checkpoint(job);
+            }));
+            events.publishEvent(new ApplicationsChangedEvent(userId));
+
+            job.setEmailsDeleted(gmailService.deleteAllForUser(userId, props.chunkSize(), n -> {
+                job.setEmailsDeleted(n);
+                checkpoint(job);
+            }));
+
+            job.setStage(PurgeJob.COMPLETED);
+            job.setFinishedAt(Instant.now());
+            jobs.save(job);
+            log.info("Purge {} userId={} done: applications={} emails={} in {} ms", job.getId(), userId,
+                    job.getApplicationsDeleted(), job.getEmailsDeleted(), System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            log.error("Purge {} userId={} failed: {}", job.getId(), userId, e.toString(), e);
+            fail(job, e);
+        } finally {
+            active.remove(userId);
+        }
+    }
+
+    private void checkpoint(PurgeJob job) {
+        jobs.save(job);
+        if (!props.chunkPause().isZero()) {
+            try {
+                Thread.sleep(props.chunkPause().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Purge interrupted", e);
+            }
+        }
+    }
+
+    private void fail(PurgeJob job, Exception cause) {
+        String message = cause.getMessage() == null ? cause.toString() : cause.getMessage();
+        job.setStage(PurgeJob.FAILED);
+        job.setError(message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message);
+        job.setFinishedAt(Instant.now());
+        try {
+            jobs.save(job);
+        } catch (RuntimeException e) {
+            log.error("Could not record failure of purge {}: {}", job.getId(), e.toString());
+        }
+    }
+}
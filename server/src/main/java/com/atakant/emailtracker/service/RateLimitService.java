@@ -77,6 +77,30 @@ public class RateLimitService {
         );
     }
 
+    /**
+     * Takes up to {@code requested} LLM emails from today's allowance without counting an ingest
+     * run; used by background jobs that spend quota page by page. Returns how many were granted.
+     */
+    @Transactional
+    public int reserveLlmEmails(UUID userId, int requested) {
+        if (!properties.enabled()) {
+            return requested;
+        }
+        if (requested <= 0) {
+            return 0;
+        }
+
+        LocalDate usageDate = LocalDate.now(ZoneId.of(properties.zoneId()));
+        DailyIngestUsage usage = loadOrCreateUsage(userId, usageDate);
+        int granted = Math.min(requested, Math.max(0, properties.maxLlmEmailsPerDay() - usage.getLlmEmailCount()));
+        if (granted > 0) {
+            usage.setLlmEmailCount(usage.getLlmEmailCount() + granted);
+            usage.setUpdatedAt(Instant.now());
+            dailyIngestUsageRepository.save(usage);
+        }
+        return granted;
+    }
+
     private DailyIngestUsage loadOrCreateUsage(UUID userId, LocalDate usageDate) {
         DailyIngestUsage existing = dailyIngestUsageRepository.findForUpdate(userId, usageDate).orElse(null);
         if (existing != null) {
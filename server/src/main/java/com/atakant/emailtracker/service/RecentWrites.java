@@ -0,0 +1,91 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.config.ReplicaProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records each user's last write (stored emails, changed applications) for replica routing.
+ * After commit, the primary's WAL position is stored in user_last_writes, where every node's
+ * {@code ReplicaRoutingDataSource} compares it with each replica's replay position. Until that
+ * marker is stored (or if storing it fails), this node keeps the user's reads on the primary
+ * for app.replicas.read-your-writes-window.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RecentWrites {
+
+    private static final String MARK_SQL = """
+            INSERT INTO user_last_writes (user_id, lsn, written_at)
+            VALUES (?, (pg_current_wal_lsn() - '0/0'::pg_lsn)::bigint, now())
+            ON CONFLICT (user_id) DO UPDATE SET lsn = EXCLUDED.lsn, written_at = EXCLUDED.written_at
+            """;
+
+    private final ReplicaProperties props;
+    private final JdbcTemplate jdbc;
+    private final PlatformTransactionManager txManager;
+    private final Map<UUID, Long> lastWriteNanos = new ConcurrentHashMap<>();
+
+    public void markWritten(UUID userId) {
+        if (!props.enabled()) return;
+        long at = System.nanoTime();
+        lastWriteNanos.put(userId, at);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            persist(userId, at);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                persist(userId, at);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) lastWriteNanos.remove(userId, at);
+            }
+        });
+    }
+
+    public boolean wroteRecently(UUID userId) {
+        Long at = lastWriteNanos.get(userId);
+        if (at == null) return false;
+        if (System.nanoTime() - at < props.readYourWritesWindow().toNanos()) return true;
+        lastWriteNanos.remove(userId, at);
+        return false;
+    }
+
+    // runs after commit, so the WAL position read here is at or past the write's commit record;
+    // in its own transaction, since the finished one's resources may still be bound here
+    private void persist(UUID userId, long at) {
+        TransactionTemplate tx = new TransactionTemplate(txManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            tx.executeWithoutResult(s -> jdbc.update(MARK_SQL, userId));
+            lastWriteNanos.remove(userId, at);
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Could not store last write for userId={}, keeping reads local: {}", userId, e.toString());
+        }
+    }
+
+    // synchronous, so the mark is in place before the writing transaction commits
+    @EventListener
+    public void onApplicationsChanged(ApplicationsChangedEvent event) {
+        markWritten(event.userId());
+    }
+}
@@ -0,0 +1,212 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.config.ReextractionProperties;
+import com.atakant.emailtracker.domain.Email;
+import com.atakant.emailtracker.domain.ReextractionRun;
+import com.atakant.emailtracker.repo.EmailExtractionRepository;
+import com.atakant.emailtracker.repo.EmailRepository;
+import com.atakant.emailtracker.repo.ReextractionRunRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Re-runs LLM extraction over already stored emails under the current prompt/model
+ * version, without touching Gmail. Threads are walked in keyset pages; each page's
+ * verdicts are written to email_extractions and the cursor checkpointed, so a run that
+ * dies or runs out of daily quota continues where it stopped. A thread whose LLM call keeps
+ * failing stops the run at its page, so it is retried on the next start rather than skipped.
+ * When every thread has a verdict, the user's applications are rebuilt from them.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ReextractionService {
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final ReextractionRunRepository runs;
+    private final EmailRepository emailRepository;
+    private final EmailExtractionRepository extractionRepository;
+    private final CandidateEmailService candidateEmailService;
+    private final RateLimitService rateLimitService;
+    private final LlmClient llm;
+    private final ReextractionProperties props;
+    private final ThreadPoolTaskExecutor jobExecutor;
+
+    // userId -> run being driven by this instance
+    private final Map<UUID, UUID> active = new ConcurrentHashMap<>();
+
+    /**
+     * Starts a run in the background, or continues the user's unfinished run for the same
+     * version. If one is already in progress, that run is returned instead.
+     */
+    public ReextractionRun start(UUID userId) {
+        UUID inProgress = active.get(userId);
+        if (inProgress != null) {
+            return runs.findById(inProgress).orElseThrow();
+        }
+
+        String version = llm.extractionVersion();
+        ReextractionRun run = runs.findFirstByUserIdAndVersionOrderByStartedAtDesc(userId, version)
+                .filter(r -> !ReextractionRun.COMPLETED.equals(r.getStage()))
+                .map(r -> {
+                    log.info("Continuing re-extraction run {} userId={} cursor={}", r.getId(), userId, r.getThreadCursor());
+                    r.setStage(ReextractionRun.RUNNING);
+                    r.setThreadsFailed(0); // retried from the checkpoint
+                    r.setError(null);
+                    r.setFinishedAt(null);
+                    return r;
+                })
+                .orElseGet(() -> ReextractionRun.builder().userId(userId).version(version).build());
+        run = runs.save(run);
+
+        UUID raced = active.putIfAbsent(userId, run.getId());
+        if (raced != null) {
+            return runs.findById(raced).orElseThrow();
+        }
+        ReextractionRun started = run;
+        try {
+            jobExecutor.execute(() -> drive(started));
+        } catch (TaskRejectedException e) {
+            active.remove(userId);
+            fail(started, e);
+            throw new IllegalStateException("Too many background jobs running; try again later", e);
+        }
+        return run;
+    }
+
+    public Optional<ReextractionRun> find(UUID userId, UUID runId) {
+        return runs.findByIdAndUserId(runId, userId);
+    }
+
+    private void drive(ReextractionRun run) {
+        UUID userId = run.getUserId();
+        String version = run.getVersion();
+        try {
+            while (true) {
+                String cursor = run.getThreadCursor() == null ? "" : run.getThreadCursor();
+                List<String> threadIds = emailRepository.findThreadIdsAfter(userId, cursor, PageRequest.of(0, props.threadsPerPage()));
+                if (threadIds.isEmpty()) break;
+
+                List<Email> candidates = emailRepository.findByUserIdAndThreadIdIn(userId, threadIds).stream()
+                        .filter(candidateEmailService::looksLikeCandidate)
+                        .toList();
+                List<CandidateEmailService.EmailThread> threads = candidateEmailService.groupByThread(userId, candidates);
+
+                // a page redone after a restart or pause skips threads that already have a verdict
+                Set<UUID> done = threads.isEmpty() ? Set.of() : new HashSet<>(extractionRepository.findExtractedEmailIds(
+                        version, threads.stream().map(t -> t.latest().getId()).toList()));
+                List<CandidateEmailService.EmailThread> todo = threads.stream()
+                        .filter(t -> !done.contains(t.latest().getId()))
+                        .toList();
+
+                int granted = rateLimitService.reserveLlmEmails(userId, todo.size());
+                if (granted > 0) {
+                    int failed = saveVerdicts(run, extractWithRetries(userId, todo.subList(0, granted)));
+                    if (failed > 0) {
+                        // the cursor stays before this page; its failed threads have no verdict and are redone
+                        throw new IllegalStateException(failed + " threads could not be extracted; start the run again to retry them");
+                    }
+                }
+                if (granted < todo.size()) {
+                    pause(run);
+                    return;
+                }
+
+                run.setThreadCursor(threadIds.get(threadIds.size() - 1));
+                run.setThreadsSeen(run.getThreadsSeen() + threadIds.size());
+                runs.save(run);
+
+                if (!props.pagePause().isZero()) {
+                    java.lang.Thread.sleep(props.pagePause().toMillis());
+                }
+            }
+
+            if (run.getThreadsFailed() > 0) {
+                throw new IllegalStateException(run.getThreadsFailed() + " threads have no verdict; not rebuilding applications");
+            }
+            run.setApplicationsSaved(candidateEmailService.rebuildApplications(userId, version));
+            run.setStage(ReextractionRun.COMPLETED);
+            run.setFinishedAt(Instant.now());
+            runs.save(run);
+            log.info("Re-extraction run {} userId={} version={} done: threads={} extracted={} failed={} applications={}",
+                    run.getId(), userId, version, run.getThreadsSeen(), run.getThreadsExtracted(),
+                    run.getThreadsFailed(), run.getApplicationsSaved());
+        } catch (InterruptedException e) {
+            java.lang.Thread.currentThread().interrupt();
+            fail(run, e);
+        } catch (Exception e) {
+            log.error("Re-extraction run {} userId={} failed: {}", run.getId(), userId, e.toString(), e);
+            fail(run, e);
+        } finally {
+            active.remove(userId);
+        }
+    }
+
+    // Re-asks for threads whose call failed, each retry within the daily quota; every thread gets one result.
+    private List<CandidateEmailService.Extracted> extractWithRetries(UUID userId, List<CandidateEmailService.EmailThread> threads) {
+        Map<UUID, CandidateEmailService.Extracted> byEmail = new LinkedHashMap<>();
+        for (CandidateEmailService.EmailThread t : threads) {
+            byEmail.put(t.latest().getId(), new CandidateEmailService.Extracted(t.latest(), null));
+        }
+        List<CandidateEmailService.EmailThread> pending = threads;
+        for (int attempt = 1; attempt <= props.extractAttempts() && !pending.isEmpty(); attempt++) {
+            if (attempt > 1) {
+                int granted = rateLimitService.reserveLlmEmails(userId, pending.size());
+                if (granted == 0) break;
+                log.info("Re-extraction userId={} retrying {} failed threads (attempt {})", userId, granted, attempt);
+                pending = pending.subList(0, granted);
+            }
+            for (CandidateEmailService.Extracted it : candidateEmailService.extractThreads(pending)) {
+                if (it.parsed != null) byEmail.put(it.email.getId(), it);
+            }
+            pending = pending.stream().filter(t -> byEmail.get(t.latest().getId()).parsed == null).toList();
+        }
+        return new ArrayList<>(byEmail.values());
+    }
+
+    /** Records the verdicts; returns how many threads are still without one. */
+    private int saveVerdicts(ReextractionRun run, List<CandidateEmailService.Extracted> results) {
+        candidateEmailService.recordVerdicts(run.getUserId(), results);
+        int answered = (int) results.stream().filter(it -> it.parsed != null).count();
+        int failed = results.size() - answered;
+        run.setThreadsExtracted(run.getThreadsExtracted() + answered);
+        run.setThreadsFailed(run.getThreadsFailed() + failed);
+        runs.save(run);
+        return failed;
+    }
+
+    private void pause(ReextractionRun run) {
+        log.info("Re-extraction run {} userId={} paused: daily LLM quota used up at cursor={}",
+                run.getId(), run.getUserId(), run.getThreadCursor());
+        run.setStage(ReextractionRun.PAUSED);
+        runs.save(run);
+    }
+
+    private void fail(ReextractionRun run, Exception cause) {
+        String message = cause.getMessage() == null ? cause.toString() : cause.getMessage();
+        run.setStage(ReextractionRun.FAILED);
+        run.setError(message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message);
+        run.setFinishedAt(Instant.now());
+        try {
+            runs.save(run);
+        } catch (RuntimeException e) {
+            log.error("Could not record failure of re-extraction run {}: {}", run.getId(), e.toString());
+        }
+    }
+}
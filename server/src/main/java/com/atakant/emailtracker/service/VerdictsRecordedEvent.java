@@ -0,0 +1,13 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.domain.Email;
+
+import java.util.List;
+import java.util.UUID;
+
+/** Published when new LLM verdicts were stored; the prefilter trains on them after commit. */
+public record VerdictsRecordedEvent(UUID userId, List<Verdict> verdicts) {
+
+    public record Verdict(Email email, boolean isApplication) {
+    }
+}
@@ -0,0 +1,44 @@
+package com.atakant.emailtracker.utils;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The rule set that decides whether an email is worth sending to the LLM.
+ * Evaluated locally by CandidateEmailService and compiled into Gmail search
+ * syntax by GmailQueryCompiler, so both sides stay in sync.
+ */
+public final class CandidateRules {
+    private CandidateRules() {}
+
+    public static final List<String> KEYWORDS = List.of(
+            "application", "applied", "assessment", "coding challenge",
+            "interview", "status update", "thank you for applying",
+            "we received your application", "oa", "take-home", "hackerrank"
+    );
+
+    // substring matched against From locally
+    public static final List<String> ATS_SENDER_MARKERS = List.of(
+            "greenhouse", "lever", "workday", "smartrecruiters", "icims", "brassring"
+    );
+
+    // sending domains of the same ATS vendors, for from: terms in Gmail search
+    public static final List<String> ATS_DOMAINS = List.of(
+            "greenhouse.io", "lever.co", "myworkday.com", "workday.com",
+            "smartrecruiters.com", "icims.com", "brassring.com"
+    );
+
+    public static boolean looksLikeCandidate(String subject, String body, String from) {
+        String hay = ((subject == null ? "" : subject) + " " + (body == null ? "" : body))
+                .toLowerCase(Locale.ROOT);
+        for (String kw : KEYWORDS) {
+            if (hay.contains(kw)) return true;
+        }
+        // quick ATS domain check
+        String f = from == null ? "" : from.toLowerCase(Locale.ROOT);
+        for (String marker : ATS_SENDER_MARKERS) {
+            if (f.contains(marker)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,103 @@
+package com.atakant.emailtracker.utils;
+
+import java.util.Locale;
+
+/**
+ * Two-class multinomial naive Bayes over hashed token features. Counts live in two
+ * fixed-size arrays, so training is a handful of increments per token and a model
+ * never grows with vocabulary. Not thread-safe; callers synchronize.
+ */
+public final class HashedNaiveBayes {
+
+    private static final int MAX_TOKENS = 2000;
+    private static final int MAX_TOKEN_LENGTH = 40;
+
+    private final int mask;
+    private final int[][] featureCounts; // [class][bucket]
+    private final long[] totalCounts = new long[2];
+    private final int[] docCounts = new int[2];
+
+    public HashedNaiveBayes(int featureBits) {
+        if (featureBits < 8 || featureBits > 24) {
+            throw new IllegalArgumentException("featureBits must be between 8 and 24");
+        }
+        this.mask = (1 << featureBits) - 1;
+        this.featureCounts = new int[2][1 << featureBits];
+    }
+
+    public void learn(String subject, String from, String body, boolean positive) {
+        int c = positive ? 1 : 0;
+        docCounts[c]++;
+        forEachFeature(subject, from, body, bucket -> {
+            featureCounts[c][bucket]++;
+            totalCounts[c]++;
+        });
+    }
+
+    public int examples(boolean positive) {
+        return docCounts[positive ? 1 : 0];
+    }
+
+    /** Posterior probability that the email belongs to the positive class. */
+    public double probabilityPositive(String subject, String from, String body) {
+        int n = docCounts[0] + docCounts[1];
+        double[] logp = {
+                Math.log((docCounts[0] + 1.0) / (n + 2.0)),
+                Math.log((docCounts[1] + 1.0) / (n + 2.0))
+        };
+        double[] denom = {
+                Math.log(totalCounts[0] + mask + 1.0),
+                Math.log(totalCounts[1] + mask + 1.0)
+        };
+        forEachFeature(subject, from, body, bucket -> {
+            logp[0] += Math.log(featureCounts[0][bucket] + 1.0) - denom[0];
+            logp[1] += Math.log(featureCounts[1][bucket] + 1.0) - denom[1];
+        });
+        return 1.0 / (1.0 + Math.exp(logp[0] - logp[1]));
+    }
+
+    private interface BucketSink {
+        void accept(int bucket);
+    }
+
+    // Features: subject words (prefixed so they weigh separately), body words, and the sender's domain.
+    private void forEachFeature(String subject, String from, String body, BucketSink sink) {
+        int[] budget = {MAX_TOKENS};
+        tokens(subject, 's', sink, budget);
+        tokens(body, 'b', sink, budget);
+        if (from != null) {
+            int at = from.lastIndexOf('@');
+            if (at >= 0) {
+                String domain = from.substring(at + 1).replace(">", "").trim().toLowerCase(Locale.ROOT);
+                sink.accept(bucket('d', domain, 0, domain.length()));
+            }
+        }
+    }
+
+    private void tokens(String text, char prefix, BucketSink sink, int[] budget) {
+        if (text == null) return;
+        String lower = text.toLowerCase(Locale.ROOT);
+        int n = lower.length();
+        int i = 0;
+        while (i < n && budget[0] > 0) {
+            while (i < n && !Character.isLetterOrDigit(lower.charAt(i))) i++;
+            int start = i;
+            while (i < n && Character.isLetterOrDigit(lower.charAt(i))) i++;
+            int len = i - start;
+            if (len >= 2 && len <= MAX_TOKEN_LENGTH) {
+                sink.accept(bucket(prefix, lower, start, i));
+                budget[0]--;
+            }
+        }
+    }
+
+    // FNV-1a over prefix + token, without allocating a substring.
+    private int bucket(char prefix, String s, int from, int to) {
+        int h = 0x811c9dc5;
+        h = (h ^ prefix) * 0x01000193;
+        for (int k = from; k < to; k++) {
+            h = (h ^ s.charAt(k)) * 0x01000193;
+        }
+        return h & mask;
+    }
+}
@@ -0,0 +1,188 @@
+package com.atakant.emailtracker.utils;
+
+import java.util.Map;
+
+/**
+ * Single-pass HTML to plain text for email bodies. Skips style/script/head and
+ * comments, turns block elements into newlines, collapses whitespace, decodes
+ * common entities and stops once {@code maxChars} characters have been produced.
+ */
+public final class HtmlText {
+    private HtmlText() {}
+
+    private static final Map<String, String> ENTITIES = Map.ofEntries(
+            Map.entry("nbsp", " "), Map.entry("amp", "&"), Map.entry("lt", "<"), Map.entry("gt", ">"),
+            Map.entry("quot", "\""), Map.entry("apos", "'"), Map.entry("ndash", "–"), Map.entry("mdash", "—"),
+            Map.entry("hellip", "…"), Map.entry("lsquo", "‘"), Map.entry("rsquo", "’"), Map.entry("ldquo", "“"),
+            Map.entry("rdquo", "”"), Map.entry("bull", "•"), Map.entry("middot", "·"), Map.entry("copy", "©"),
+            Map.entry("reg", "®"), Map.entry("trade", "™"), Map.entry("euro", "€"), Map.entry("pound", "£"),
+            Map.entry("zwnj", ""), Map.entry("zwj", ""), Map.entry("shy", "")
+    );
+
+    private static final String[] SKIP_CONTENT = {"style", "script", "head", "title"};
+    private static final String[] BLOCK = {
+            "br", "p", "div", "tr", "li", "h1", "h2", "h3", "h4", "h5", "h6",
+            "table", "ul", "ol", "blockquote", "hr", "section", "article", "header", "footer"
+    };
+    private static final int MAX_ENTITY_LENGTH = 10;
+
+    public static String toText(String html) {
+        return toText(html, Integer.MAX_VALUE);
+    }
+
+    public static String toText(String html, int maxChars) {
+        if (html == null || html.isEmpty()) return "";
+        final int n = html.length();
+        StringBuilder out = new StringBuilder(Math.min(n, maxChars) / 2 + 16);
+        boolean pendingSpace = false;
+        int newlines = 1; // treat start of output as a line start so leading breaks are dropped
+
+        int i = 0;
+        while (i < n && out.length() < maxChars) {
+            char c = html.charAt(i);
+
+            if (c == '<') {
+                if (html.startsWith("<!--", i)) {
+                    int end = html.indexOf("-->", i + 4);
+                    i = end < 0 ? n : end + 3;
+                    continue;
+                }
+                int nameStart = i + 1;
+                boolean closing = nameStart < n && html.charAt(nameStart) == '/';
+                if (closing) nameStart++;
+                int nameEnd = nameStart;
+                if (nameEnd < n && isNameStart(html.charAt(nameEnd))) {
+                    while (nameEnd < n && isNameChar(html.charAt(nameEnd))) nameEnd++;
+                }
+                if (nameEnd == nameStart && !closing) {
+                    // a literal '<' in text, not a tag
+                    pendingSpace = appendChar(out, c, pendingSpace);
+                    newlines = 0;
+                    i++;
+                    continue;
+                }
+                int tagEnd = tagEnd(html, nameEnd);
+
+                if (!closing && matchesAny(html, nameStart, nameEnd, SKIP_CONTENT)) {
+                    i = skipElement(html, tagEnd, nameStart, nameEnd);
+                    continue;
+                }
+                if (matchesAny(html, nameStart, nameEnd, BLOCK) && newlines < 2 && out.length() > 0) {
+                    out.append('\n');
+                    newlines++;
+                    pendingSpace = false;
+                } else if (newlines == 0) {
+                    pendingSpace = true; // inline tags still separate words like "<td>a</td><td>b</td>"
+                }
+                i = tagEnd;
+                continue;
+            }
+
+            if (c == '&') {
+                int semi = -1;
+                for (int k = i + 1; k < n && k <= i + MAX_ENTITY_LENGTH; k++) {
+                    if (html.charAt(k) == ';') { semi = k; break; }
+                }
+                String decoded = semi < 0 ? null : decodeEntity(html, i + 1, semi);
+                if (decoded != null) {
+                    for (int k = 0; k < decoded.length(); k++) {
+                        char d = decoded.charAt(k);
+                        if (isSpace(d)) {
+                            if (newlines == 0) pendingSpace = true;
+                        } else {
+                            pendingSpace = appendChar(out, d, pendingSpace);
+                            newlines = 0;
+                        }
+                    }
+                    i = semi + 1;
+                    continue;
+                }
+            }
+
+            if (isSpace(c)) {
+                if (newlines == 0) pendingSpace = true;
+            } else {
+                pendingSpace = appendChar(out, c, pendingSpace);
+                newlines = 0;
+            }
+            i++;
+        }
+
+        int end = Math.min(out.length(), maxChars);
+        while (end > 0 && Character.isWhitespace(out.charAt(end - 1))) end--;
+        out.setLength(end);
+        return out.toString();
+    }
+
+    private static boolean appendChar(StringBuilder out, char c, boolean pendingSpace) {
+        if (pendingSpace) out.append(' ');
+        out.append(c);
+        return false;
+    }
+
+    private static boolean isSpace(char c) {
+        return Character.isWhitespace(c) || c == '\u00A0';
+    }
+
+    private static boolean isNameStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '!' || c == '?';
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '!' || c == '?';
+    }
+
+    // Index just past the '>' that closes the tag, honouring quoted attribute values.
+    private static int tagEnd(String html, int from) {
+        char quote = 0;
+        for (int k = from; k < html.length(); k++) {
+            char c = html.charAt(k);
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return k + 1;
+            }
+        }
+        return html.length();
+    }
+
+    // Skips to just past "</name ...>", matching the tag name case-insensitively.
+    private static int skipElement(String html, int from, int nameStart, int nameEnd) {
+        int len = nameEnd - nameStart;
+        for (int k = html.indexOf("</", from); k >= 0; k = html.indexOf("</", k + 2)) {
+            if (html.regionMatches(true, k + 2, html, nameStart, len)
+                    && (k + 2 + len >= html.length() || !isNameChar(html.charAt(k + 2 + len)))) {
+                return tagEnd(html, k + 2 + len);
+            }
+        }
+        return html.length();
+    }
+
+    private static boolean matchesAny(String html, int start, int end, String[] names) {
+        int len = end - start;
+        for (String name : names) {
+            if (name.length() == len && html.regionMatches(true, start, name, 0, len)) return true;
+        }
+        return false;
+    }
+
+    private static String decodeEntity(String html, int start, int end) {
+        if (start >= end) return null;
+        if (html.charAt(start) == '#') {
+            try {
+                boolean hex = start + 1 < end && (html.charAt(start + 1) == 'x' || html.charAt(start + 1) == 'X');
+                int cp = hex
+                        ? Integer.parseInt(html, start + 2, end, 16)
+                        : Integer.parseInt(html, start + 1, end, 10);
+                if (cp == 0x200B || cp == 0x200C || cp == 0x200D || cp == 0xFEFF || cp == 0xAD) return "";
+                if (cp == 0xA0) return " ";
+                return Character.isValidCodePoint(cp) ? new String(Character.toChars(cp)) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return ENTITIES.get(html.substring(start, end).toLowerCase());
+    }
+}
@@ -0,0 +1,29 @@
+package com.atakant.emailtracker.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in search results ordered by {@code (rank, id)}: the last hit of the previous
+ * page. The rank is the exact float Postgres returned, so the next page starts right after it.
+ */
+public record RankCursor(float rank, UUID id) {
+
+    public String encode() {
+        String raw = Float.floatToIntBits(rank) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** @throws IllegalArgumentException if the token was not produced by {@link #encode()} */
+    public static RankCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int bar = raw.indexOf('|');
+            return new RankCursor(Float.intBitsToFloat(Integer.parseInt(raw.substring(0, bar))),
+                    UUID.fromString(raw.substring(bar + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.atakant.emailtracker.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Bloom filter that grows instead of degrading: once the current slice holds its
+ * capacity, a new slice twice as large with a tighter error rate is added, keeping the
+ * overall false-positive rate under the configured bound (Almeida et al., 2007).
+ * {@link #mightContain} never returns false for an added key. Not thread-safe.
+ */
+public final class ScalableBloomFilter {
+
+    private static final int GROWTH = 2;
+    private static final double TIGHTENING = 0.5;
+
+    private final List<Slice> slices = new ArrayList<>();
+    private long count;
+
+    public ScalableBloomFilter(int initialCapacity, double falsePositiveRate) {
+        if (initialCapacity <= 0) throw new IllegalArgumentException("initialCapacity must be positive");
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1");
+        }
+        // the slices' error rates form a geometric series that sums to falsePositiveRate
+        slices.add(new Slice(initialCapacity, falsePositiveRate * (1 - TIGHTENING)));
+    }
+
+    public void add(String key) {
+        long[] h = hashes(key);
+        if (contains(h)) return;
+        Slice current = slices.get(slices.size() - 1);
+        if (current.size >= current.capacity) {
+            current = new Slice(current.capacity * GROWTH, current.falsePositiveRate * TIGHTENING);
+            slices.add(current);
+        }
+        current.add(h[0], h[1]);
+        count++;
+    }
+
+    public boolean mightContain(String key) {
+        return contains(hashes(key));
+    }
+
+    public long approximateCount() {
+        return count;
+    }
+
+    private boolean contains(long[] h) {
+        for (Slice s : slices) {
+            if (s.mightContain(h[0], h[1])) return true;
+        }
+        return false;
+    }
+
+    private static final class Slice {
+        final long capacity;
+        final double falsePositiveRate;
+        final int bits;
+        final int hashCount;
+        final BitSet bitSet;
+        long size;
+
+        Slice(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            double m = -capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+            this.bits = (int) Math.min(Integer.MAX_VALUE - 64, Math.max(64, Math.ceil(m)));
+            this.hashCount = Math.max(1, (int) Math.round((double) bits / capacity * Math.log(2)));
+            this.bitSet = new BitSet(bits);
+        }
+
+        // Kirsch-Mitzenmacher: k indexes from two base hashes
+        void add(long h1, long h2) {
+            for (int i = 0; i < hashCount; i++) bitSet.set(index(h1, h2, i));
+            size++;
+        }
+
+        boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < hashCount; i++) {
+                if (!bitSet.get(index(h1, h2, i))) return false;
+            }
+            return true;
+        }
+
+        private int index(long h1, long h2, int i) {
+            return (int) Long.remainderUnsigned(h1 + i * h2, bits);
+        }
+    }
+
+    private static long[] hashes(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        long h1 = mix(h);
+        long h2 = mix(h ^ 0x9e3779b97f4a7c15L) | 1L; // odd, so the k probes never collapse onto one bit
+        return new long[]{h1, h2};
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,111 @@
+package com.atakant.emailtracker.utils;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 64-bit SimHash over word-bigram shingles of a normalized email body. Re-sent ATS mails
+ * and forwards differ only in links, ids, dates and forward headers; those are normalized
+ * away so copies land within a few bits of each other.
+ */
+public final class SimHash {
+    private SimHash() {}
+
+    private static final Pattern URL = Pattern.compile("https?://\\S+|www\\.\\S+");
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+    // header lines quoted by a forward or an import ("From: ...", "Sent: ...") and forward banners
+    private static final Pattern FORWARD_HEADER = Pattern.compile(
+            "(?im)^\\s*(from|sent|date|to|cc|subject):.*$|^.*(forwarded message|original message).*$");
+    private static final Pattern QUOTE_PREFIX = Pattern.compile("^\\s*(>\\s*)+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern SUBJECT_PREFIX = Pattern.compile("(?i)^\\s*((re|fw|fwd|aw|wg)\\s*:\\s*)+");
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** Fingerprint of {@code text}, or null when there are too few words to be meaningful. */
+    public static Long of(String text) {
+        if (text == null || text.isBlank()) return null;
+        String normalized = FORWARD_HEADER.matcher(text).replaceAll(" ");
+        normalized = URL.matcher(normalized).replaceAll(" ");
+        normalized = DIGITS.matcher(normalized.toLowerCase(Locale.ROOT)).replaceAll("0");
+
+        int[] weights = new int[64];
+        long prev = 0;
+        int words = 0;
+        int n = normalized.length();
+        int i = 0;
+        while (i < n) {
+            while (i < n && !Character.isLetterOrDigit(normalized.charAt(i))) i++;
+            int start = i;
+            while (i < n && Character.isLetterOrDigit(normalized.charAt(i))) i++;
+            if (i == start) break;
+            long word = fnv(normalized, start, i);
+            if (words > 0) {
+                long shingle = mix(prev * 31 + word);
+                for (int b = 0; b < 64; b++) {
+                    weights[b] += ((shingle >>> b) & 1L) != 0 ? 1 : -1;
+                }
+            }
+            prev = word;
+            words++;
+        }
+        if (words < 8) return null;
+
+        long hash = 0;
+        for (int b = 0; b < 64; b++) {
+            if (weights[b] > 0) hash |= 1L << b;
+        }
+        return hash;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * Whether every line of {@code original} also appears in {@code copy}, after the same
+     * normalization as the fingerprint. A resend or forward carries the whole original; two
+     * templated mails for different roles differ in a line and are close in SimHash only.
+     */
+    public static boolean containsAllLines(String original, String copy) {
+        if (original == null || copy == null) return false;
+        Set<String> copyLines = normalizedLines(copy);
+        return copyLines.containsAll(normalizedLines(original));
+    }
+
+    private static Set<String> normalizedLines(String text) {
+        Set<String> lines = new HashSet<>();
+        for (String line : text.split("\\R")) {
+            if (FORWARD_HEADER.matcher(line).matches()) continue;
+            String n = URL.matcher(QUOTE_PREFIX.matcher(line).replaceFirst("")).replaceAll(" ");
+            n = DIGITS.matcher(n.toLowerCase(Locale.ROOT)).replaceAll("0");
+            n = NON_WORD.matcher(n).replaceAll(" ").trim();
+            if (!n.isEmpty()) lines.add(n);
+        }
+        return lines;
+    }
+
+    /** Subject with reply/forward prefixes stripped, for matching a copy to its original. */
+    public static String subjectKey(String subject) {
+        if (subject == null) return "";
+        return SUBJECT_PREFIX.matcher(subject).replaceFirst("").trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static long fnv(String s, int from, int to) {
+        long h = FNV_OFFSET;
+        for (int k = from; k < to; k++) {
+            h = (h ^ s.charAt(k)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    // splitmix64 finalizer, so neighbouring shingles spread over all bits
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
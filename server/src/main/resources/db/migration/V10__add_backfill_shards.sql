@@ -0,0 +1,16 @@
+CREATE TABLE backfill_shards (
+  id UUID PRIMARY KEY,
+  user_id UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+  window_after DATE NOT NULL,
+  shard_start TIMESTAMPTZ NOT NULL,
+  shard_end TIMESTAMPTZ NOT NULL,
+  status TEXT NOT NULL DEFAULT 'pending',
+  estimated_count INTEGER NOT NULL DEFAULT 0,
+  listed_count INTEGER,
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+  CONSTRAINT uq_backfill_shards_user_range UNIQUE (user_id, window_after, shard_start, shard_end),
+  CONSTRAINT chk_backfill_shards_status CHECK (status IN ('pending', 'done'))
+);
+
+CREATE INDEX idx_backfill_shards_user_window
+  ON backfill_shards (user_id, window_after, shard_start);
@@ -0,0 +1,26 @@
+CREATE TABLE ingest_runs (
+  id UUID PRIMARY KEY,
+  user_id UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+  after_arg TEXT,
+  stage TEXT NOT NULL DEFAULT 'listing',
+  pass_index INTEGER NOT NULL DEFAULT 0,
+  page_token TEXT,
+  pages_committed INTEGER NOT NULL DEFAULT 0,
+  listed_count INTEGER NOT NULL DEFAULT 0,
+  fetched_count INTEGER NOT NULL DEFAULT 0,
+  saved_count INTEGER NOT NULL DEFAULT 0,
+  applications_saved INTEGER,
+  error TEXT,
+  started_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+  finished_at TIMESTAMPTZ,
+  CONSTRAINT chk_ingest_runs_stage CHECK (stage IN ('listing', 'extracting', 'completed', 'failed'))
+);
+
+CREATE INDEX idx_ingest_runs_user_stage_started
+  ON ingest_runs (user_id, stage, started_at DESC);
+
+-- Which run stored each email, so a resumed run can still extract what the failed run saved.
+ALTER TABLE emails ADD COLUMN ingest_run_id UUID REFERENCES ingest_runs(id) ON DELETE SET NULL;
+
+CREATE INDEX idx_emails_ingest_run ON emails (ingest_run_id);
@@ -0,0 +1,2 @@
+-- Deflate-compressed body (raw deflate, UTF-8). When set, body_text is NULL.
+ALTER TABLE emails ADD COLUMN body_compressed BYTEA;
@@ -0,0 +1,2 @@
+-- Thread grouping loads earlier messages of a conversation per user.
+CREATE INDEX IF NOT EXISTS idx_emails_user_thread ON emails (user_id, thread_id);
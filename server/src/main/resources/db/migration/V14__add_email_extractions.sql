@@ -0,0 +1,42 @@
+-- LLM verdicts per thread (stored on the thread's latest email), tagged with the prompt/model version.
+CREATE TABLE email_extractions (
+  id UUID PRIMARY KEY,
+  user_id UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+  email_id UUID NOT NULL REFERENCES emails(id) ON DELETE CASCADE,
+  thread_id TEXT NOT NULL,
+  version TEXT NOT NULL,
+  is_application BOOLEAN NOT NULL,
+  company TEXT,
+  role_title TEXT,
+  location TEXT,
+  status TEXT,
+  next_action TEXT,
+  notes TEXT,
+  confidence DOUBLE PRECISION,
+  sent_at TIMESTAMPTZ,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+  CONSTRAINT uq_email_extractions_email_version UNIQUE (email_id, version)
+);
+
+CREATE INDEX idx_email_extractions_user_version_sent
+  ON email_extractions (user_id, version, sent_at);
+
+CREATE TABLE reextraction_runs (
+  id UUID PRIMARY KEY,
+  user_id UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+  version TEXT NOT NULL,
+  stage TEXT NOT NULL DEFAULT 'running',
+  thread_cursor TEXT,
+  threads_seen INTEGER NOT NULL DEFAULT 0,
+  threads_extracted INTEGER NOT NULL DEFAULT 0,
+  threads_failed INTEGER NOT NULL DEFAULT 0,
+  applications_saved INTEGER,
+  error TEXT,
+  started_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+  updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+  finished_at TIMESTAMPTZ,
+  CONSTRAINT chk_reextraction_runs_stage CHECK (stage IN ('running', 'paused', 'completed', 'failed'))
+);
+
+CREATE INDEX idx_reextraction_runs_user_started
+  ON reextraction_runs (user_id, started_at DESC);
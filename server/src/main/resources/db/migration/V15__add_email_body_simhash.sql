@@ -0,0 +1,4 @@
+-- 64-bit SimHash of the normalized body, used to drop re-sent and forwarded copies at ingest.
+ALTER TABLE emails ADD COLUMN body_simhash BIGINT;
+
+CREATE INDEX IF NOT EXISTS idx_emails_user_sent_at ON emails (user_id, sent_at);
@@ -0,0 +1,6 @@
+-- Keyset pagination of the applications list: newest first, id as tie-breaker.
+CREATE INDEX IF NOT EXISTS idx_app_user_updated_id
+  ON applications (user_id, last_updated_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_app_user_status_updated_id
+  ON applications (user_id, status, last_updated_at DESC, id DESC);
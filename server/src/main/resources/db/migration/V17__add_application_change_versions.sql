@@ -0,0 +1,66 @@
+-- Per-user change counter for application lists. Every insert, real update or delete of an
+-- application takes the next version; list endpoints use it for ETags and ?since= deltas.
+-- No FKs to users here: rows are written while a user's applications are cascade-deleted.
+CREATE TABLE user_change_versions (
+  user_id UUID PRIMARY KEY,
+  version BIGINT NOT NULL DEFAULT 0
+);
+
+ALTER TABLE applications ADD COLUMN change_version BIGINT NOT NULL DEFAULT 0;
+CREATE INDEX IF NOT EXISTS idx_app_user_change_version ON applications (user_id, change_version);
+
+-- Deleted applications, so a delta can tell the client which rows to drop.
+CREATE TABLE application_tombstones (
+  user_id UUID NOT NULL,
+  application_id UUID NOT NULL,
+  change_version BIGINT NOT NULL,
+  deleted_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+CREATE INDEX IF NOT EXISTS idx_app_tombstones_user_version ON application_tombstones (user_id, change_version);
+
+CREATE OR REPLACE FUNCTION next_change_version(p_user_id UUID)
+RETURNS BIGINT AS $$
+DECLARE
+  v BIGINT;
+BEGIN
+  INSERT INTO user_change_versions (user_id, version) VALUES (p_user_id, 1)
+  ON CONFLICT (user_id) DO UPDATE SET version = user_change_versions.version + 1
+  RETURNING version INTO v;
+  RETURN v;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION trg_applications_stamp_version()
+RETURNS TRIGGER AS $$
+BEGIN
+  NEW.change_version := next_change_version(NEW.user_id);
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION trg_applications_tombstone()
+RETURNS TRIGGER AS $$
+BEGIN
+  INSERT INTO application_tombstones (user_id, application_id, change_version)
+  VALUES (OLD.user_id, OLD.id, next_change_version(OLD.user_id));
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS applications_stamp_version_ins ON applications;
+CREATE TRIGGER applications_stamp_version_ins
+    BEFORE INSERT ON applications
+    FOR EACH ROW EXECUTE FUNCTION trg_applications_stamp_version();
+
+-- no-op updates (e.g. an upsert that changes nothing) keep their version
+DROP TRIGGER IF EXISTS applications_stamp_version_upd ON applications;
+CREATE TRIGGER applications_stamp_version_upd
+    BEFORE UPDATE ON applications
+    FOR EACH ROW
+    WHEN (OLD.* IS DISTINCT FROM NEW.*)
+    EXECUTE FUNCTION trg_applications_stamp_version();
+
+DROP TRIGGER IF EXISTS applications_tombstone ON applications;
+CREATE TRIGGER applications_tombstone
+    AFTER DELETE ON applications
+    FOR EACH ROW EXECUTE FUNCTION trg_applications_tombstone();
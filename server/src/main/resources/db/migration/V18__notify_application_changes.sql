@@ -0,0 +1,18 @@
+-- Tells every node that a user's applications changed. Postgres folds identical
+-- notifications within one transaction, so a bulk upsert still sends one per user.
+CREATE OR REPLACE FUNCTION trg_applications_notify()
+RETURNS TRIGGER AS $$
+BEGIN
+  IF (TG_OP = 'DELETE') THEN
+    PERFORM pg_notify('application_changes', OLD.user_id::text);
+  ELSE
+    PERFORM pg_notify('application_changes', NEW.user_id::text);
+  END IF;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS applications_notify ON applications;
+CREATE TRIGGER applications_notify
+    AFTER INSERT OR UPDATE OR DELETE ON applications
+    FOR EACH ROW EXECUTE FUNCTION trg_applications_notify();
@@ -0,0 +1,18 @@
+-- Full-text search over stored emails. Bodies may be stored deflated (body_compressed), which
+-- Postgres cannot read, so search_tsv is written by the application rather than generated:
+-- on insert, and for existing rows by a batched backfill that walks the partial index below.
+ALTER TABLE emails ADD COLUMN search_tsv tsvector;
+
+-- Subject ranks above sender, sender above body. Addresses are also indexed split on
+-- punctuation so "acme" finds jane@acme.com.
+CREATE OR REPLACE FUNCTION email_search_document(subject TEXT, from_addr TEXT, body TEXT)
+RETURNS tsvector AS $$
+  SELECT setweight(to_tsvector('english', coalesce(subject, '')), 'A')
+      || setweight(to_tsvector('simple', coalesce(from_addr, ''))
+                   || to_tsvector('simple', translate(coalesce(from_addr, ''), '@.<>"', '     ')), 'B')
+      || setweight(to_tsvector('english', coalesce(body, '')), 'C')
+$$ LANGUAGE sql IMMUTABLE;
+
+CREATE INDEX IF NOT EXISTS idx_emails_search_tsv ON emails USING GIN (search_tsv);
+
+CREATE INDEX IF NOT EXISTS idx_emails_search_pending ON emails (id) WHERE search_tsv IS NULL;
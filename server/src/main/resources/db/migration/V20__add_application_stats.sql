@@ -0,0 +1,95 @@
+-- Per-user dashboard counters, kept in step with applications by triggers so every write path
+-- (upsert, JPA save, cascade delete) is covered and reading stats never scans applications.
+--   status:  bucket = status
+--   week:    bucket = Monday of the first_seen_at week (UTC), YYYY-MM-DD
+--   company: bucket = normalized_company, label = display name
+-- No FKs to users, as with user_change_versions.
+CREATE TABLE application_stats (
+  user_id UUID NOT NULL,
+  dimension TEXT NOT NULL,
+  bucket TEXT NOT NULL,
+  label TEXT NOT NULL,
+  count BIGINT NOT NULL DEFAULT 0,
+  PRIMARY KEY (user_id, dimension, bucket)
+);
+
+-- Writers hold the per-user lock shared, the rebuild exclusively, so a rebuild sees no
+-- half-applied deltas and no delta lands on counters it is replacing.
+CREATE OR REPLACE FUNCTION bump_application_stats(p_user_id UUID, p_status TEXT, p_first_seen_at TIMESTAMPTZ,
+                                                  p_company_key TEXT, p_company TEXT, p_delta INT)
+RETURNS VOID AS $$
+BEGIN
+  PERFORM pg_advisory_xact_lock_shared(hashtext('application_stats'), hashtext(p_user_id::text));
+  INSERT INTO application_stats (user_id, dimension, bucket, label, count)
+  VALUES (p_user_id, 'status', p_status, p_status, p_delta),
+         (p_user_id, 'week', to_char(date_trunc('week', p_first_seen_at AT TIME ZONE 'UTC'), 'YYYY-MM-DD'),
+          to_char(date_trunc('week', p_first_seen_at AT TIME ZONE 'UTC'), 'YYYY-MM-DD'), p_delta),
+         (p_user_id, 'company', p_company_key, p_company, p_delta)
+  ON CONFLICT (user_id, dimension, bucket) DO UPDATE SET count = application_stats.count + EXCLUDED.count;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION trg_applications_stats()
+RETURNS TRIGGER AS $$
+BEGIN
+  IF TG_OP IN ('UPDATE', 'DELETE') THEN
+    PERFORM bump_application_stats(OLD.user_id, OLD.status, OLD.first_seen_at, OLD.normalized_company, OLD.company, -1);
+  END IF;
+  IF TG_OP IN ('INSERT', 'UPDATE') THEN
+    PERFORM bump_application_stats(NEW.user_id, NEW.status, NEW.first_seen_at, NEW.normalized_company, NEW.company, 1);
+  END IF;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS applications_stats_ins_del ON applications;
+CREATE TRIGGER applications_stats_ins_del
+    AFTER INSERT OR DELETE ON applications
+    FOR EACH ROW EXECUTE FUNCTION trg_applications_stats();
+
+-- most updates (last_updated_at, notes, next step) leave every counter alone
+DROP TRIGGER IF EXISTS applications_stats_upd ON applications;
+CREATE TRIGGER applications_stats_upd
+    AFTER UPDATE ON applications
+    FOR EACH ROW
+    WHEN (OLD.status IS DISTINCT FROM NEW.status
+          OR OLD.first_seen_at IS DISTINCT FROM NEW.first_seen_at
+          OR OLD.normalized_company IS DISTINCT FROM NEW.normalized_company
+          OR OLD.user_id IS DISTINCT FROM NEW.user_id)
+    EXECUTE FUNCTION trg_applications_stats();
+
+-- Recomputes one user's counters from applications; returns how many buckets had drifted.
+CREATE OR REPLACE FUNCTION rebuild_application_stats(p_user_id UUID)
+RETURNS INT AS $$
+DECLARE
+  drifted INT;
+BEGIN
+  PERFORM pg_advisory_xact_lock(hashtext('application_stats'), hashtext(p_user_id::text));
+
+  CREATE TEMP TABLE fresh_application_stats ON COMMIT DROP AS
+  SELECT 'status' AS dimension, status AS bucket, status AS label, count(*) AS count
+  FROM applications WHERE user_id = p_user_id GROUP BY status
+  UNION ALL
+  SELECT 'week', w, w, count(*)
+  FROM (SELECT to_char(date_trunc('week', first_seen_at AT TIME ZONE 'UTC'), 'YYYY-MM-DD') AS w
+        FROM applications WHERE user_id = p_user_id) weeks
+  GROUP BY w
+  UNION ALL
+  SELECT 'company', normalized_company, min(company), count(*)
+  FROM applications WHERE user_id = p_user_id GROUP BY normalized_company;
+
+  SELECT count(*) INTO drifted
+  FROM fresh_application_stats f
+  FULL JOIN (SELECT * FROM application_stats WHERE user_id = p_user_id AND count <> 0) s
+    USING (dimension, bucket)
+  WHERE coalesce(f.count, 0) <> coalesce(s.count, 0);
+
+  DELETE FROM application_stats WHERE user_id = p_user_id;
+  INSERT INTO application_stats (user_id, dimension, bucket, label, count)
+  SELECT p_user_id, dimension, bucket, label, count FROM fresh_application_stats;
+  DROP TABLE fresh_application_stats;
+  RETURN drifted;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT rebuild_application_stats(user_id) FROM (SELECT DISTINCT user_id FROM applications) u;
@@ -0,0 +1,18 @@
+-- Progress of "delete all my data" requests. Rows are removed in short chunked transactions,
+-- so a large purge reports counts as it goes and can be polled when run in the background.
+CREATE TABLE purge_jobs (
+  id UUID PRIMARY KEY,
+  user_id UUID NOT NULL,
+  stage TEXT NOT NULL,
+  applications_deleted BIGINT NOT NULL DEFAULT 0,
+  emails_deleted BIGINT NOT NULL DEFAULT 0,
+  error TEXT,
+  started_at TIMESTAMPTZ NOT NULL,
+  updated_at TIMESTAMPTZ NOT NULL,
+  finished_at TIMESTAMPTZ
+);
+CREATE INDEX IF NOT EXISTS idx_purge_jobs_user ON purge_jobs (user_id, started_at DESC);
+
+-- Deleting an email checks applications.source_email_id (ON DELETE SET NULL); without an index
+-- that is a scan of applications for every deleted email.
+CREATE INDEX IF NOT EXISTS idx_app_source_email ON applications (source_email_id);
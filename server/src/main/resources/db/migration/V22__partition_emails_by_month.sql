@@ -0,0 +1,170 @@
+-- emails becomes a table partitioned by sent_at month (UTC), so vacuum, index size and
+-- retention work per month instead of over the whole mailbox history.
+--
+-- Uniqueness on a partitioned table must include the partition key, so global uniqueness of
+-- gmail_id and of (user_id, message_id_hash) moves to email_keys, kept by triggers. Keys
+-- outlive archived partitions: a message whose month was archived is still recognised at
+-- ingest and not fetched again.
+--
+-- Foreign keys into emails are replaced by the same delete trigger: extractions go with their
+-- email, applications.source_email_id is cleared. message_id (unused, always NULL) is dropped.
+
+ALTER TABLE applications DROP CONSTRAINT IF EXISTS applications_source_email_id_fkey;
+ALTER TABLE email_extractions DROP CONSTRAINT IF EXISTS email_extractions_email_id_fkey;
+
+ALTER TABLE emails RENAME TO emails_unpartitioned;
+
+-- index names are per schema: move the old table's out of the way of the new ones
+DO $$
+DECLARE
+  idx TEXT;
+BEGIN
+  FOR idx IN SELECT indexname FROM pg_indexes
+             WHERE schemaname = current_schema() AND tablename = 'emails_unpartitioned' LOOP
+    EXECUTE format('ALTER INDEX %I RENAME TO %I', idx, left(idx, 50) || '_unpartitioned');
+  END LOOP;
+END $$;
+
+CREATE TABLE emails (
+  id UUID NOT NULL,
+  user_id UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+  thread_id TEXT NOT NULL,
+  message_id_hash TEXT NOT NULL,
+  from_addr TEXT,
+  to_addr TEXT,
+  subject TEXT,
+  sent_at TIMESTAMPTZ NOT NULL,
+  body_text TEXT,
+  raw_label TEXT,
+  llm_type TEXT,
+  gmail_id TEXT NOT NULL,
+  internal_date_ms BIGINT,
+  ingest_run_id UUID REFERENCES ingest_runs(id) ON DELETE SET NULL,
+  body_compressed BYTEA,
+  body_simhash BIGINT,
+  search_tsv tsvector,
+  PRIMARY KEY (id, sent_at)
+) PARTITION BY RANGE (sent_at);
+
+-- catches months without a partition yet; ensure_email_partitions moves them out
+CREATE TABLE emails_default PARTITION OF emails DEFAULT;
+
+CREATE INDEX idx_emails_user_thread ON emails (user_id, thread_id);
+CREATE INDEX idx_emails_user_sent_at ON emails (user_id, sent_at);
+CREATE INDEX idx_emails_gmail_id ON emails (gmail_id);
+CREATE INDEX idx_emails_ingest_run ON emails (ingest_run_id);
+CREATE INDEX idx_emails_search_tsv ON emails USING GIN (search_tsv);
+CREATE INDEX idx_emails_search_pending ON emails (id) WHERE search_tsv IS NULL;
+
+CREATE TABLE email_keys (
+  gmail_id TEXT PRIMARY KEY,
+  user_id UUID NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+  message_id_hash TEXT NOT NULL,
+  email_id UUID NOT NULL,
+  sent_at TIMESTAMPTZ NOT NULL,
+  CONSTRAINT uq_email_keys_user_hash UNIQUE (user_id, message_id_hash)
+);
+
+-- Creates the partition for one month. Rows for that month already sitting in the default
+-- partition are moved into it first, since attaching over them would fail.
+CREATE OR REPLACE FUNCTION ensure_email_partition(p_month DATE)
+RETURNS BOOLEAN AS $$
+DECLARE
+  part TEXT := 'emails_p' || to_char(p_month, 'YYYY_MM');
+  lo TIMESTAMPTZ := date_trunc('month', p_month)::timestamp AT TIME ZONE 'UTC';
+  hi TIMESTAMPTZ := (date_trunc('month', p_month) + INTERVAL '1 month')::timestamp AT TIME ZONE 'UTC';
+BEGIN
+  IF to_regclass(part) IS NOT NULL THEN
+    RETURN FALSE;
+  END IF;
+  IF NOT EXISTS (SELECT 1 FROM emails_default WHERE sent_at >= lo AND sent_at < hi) THEN
+    EXECUTE format('CREATE TABLE %I PARTITION OF emails FOR VALUES FROM (%L) TO (%L)', part, lo, hi);
+    RETURN TRUE;
+  END IF;
+
+  EXECUTE format('CREATE TABLE %I (LIKE emails INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', part);
+  -- a move, not a delete: keep the delete trigger off the rows' keys and extractions
+  PERFORM set_config('emails.relocating', 'on', true);
+  EXECUTE format('WITH moved AS (DELETE FROM emails_default WHERE sent_at >= %L AND sent_at < %L RETURNING *)
+                  INSERT INTO %I SELECT * FROM moved', lo, hi, part);
+  PERFORM set_config('emails.relocating', 'off', true);
+  EXECUTE format('ALTER TABLE emails ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)', part, lo, hi);
+  RETURN TRUE;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Partitions for this month and the next p_months_ahead, plus every month stranded in the
+-- default partition (e.g. a backfill of old mail). Returns how many were created.
+CREATE OR REPLACE FUNCTION ensure_email_partitions(p_months_ahead INT)
+RETURNS INT AS $$
+DECLARE
+  m DATE;
+  created INT := 0;
+BEGIN
+  FOR m IN
+    SELECT generate_series(date_trunc('month', NOW() AT TIME ZONE 'UTC'),
+                           date_trunc('month', NOW() AT TIME ZONE 'UTC') + make_interval(months => p_months_ahead),
+                           INTERVAL '1 month')::date
+    UNION
+    SELECT DISTINCT date_trunc('month', sent_at AT TIME ZONE 'UTC')::date FROM emails_default
+    ORDER BY 1
+  LOOP
+    IF ensure_email_partition(m) THEN
+      created := created + 1;
+    END IF;
+  END LOOP;
+  RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Partitions for every month that has mail, so the copy below lands outside the default.
+SELECT ensure_email_partition(m)
+FROM (SELECT DISTINCT date_trunc('month', COALESCE(sent_at, to_timestamp(internal_date_ms / 1000.0), NOW())
+                                 AT TIME ZONE 'UTC')::date AS m
+      FROM emails_unpartitioned) months;
+SELECT ensure_email_partitions(3);
+
+INSERT INTO emails (id, user_id, thread_id, message_id_hash, from_addr, to_addr, subject, sent_at, body_text,
+                    raw_label, llm_type, gmail_id, internal_date_ms, ingest_run_id, body_compressed, body_simhash,
+                    search_tsv)
+SELECT id, user_id, thread_id, message_id_hash, from_addr, to_addr, subject,
+       COALESCE(sent_at, to_timestamp(internal_date_ms / 1000.0), NOW()),
+       body_text, raw_label, llm_type, gmail_id, internal_date_ms, ingest_run_id, body_compressed, body_simhash,
+       search_tsv
+FROM emails_unpartitioned;
+
+INSERT INTO email_keys (gmail_id, user_id, message_id_hash, email_id, sent_at)
+SELECT gmail_id, user_id, message_id_hash, id, sent_at FROM emails;
+
+DROP TABLE emails_unpartitioned;
+
+-- gmail_id and message_id_hash are written once, so insert and delete are the only cases.
+CREATE OR REPLACE FUNCTION trg_emails_keys_ins()
+RETURNS TRIGGER AS $$
+BEGIN
+  INSERT INTO email_keys (gmail_id, user_id, message_id_hash, email_id, sent_at)
+  VALUES (NEW.gmail_id, NEW.user_id, NEW.message_id_hash, NEW.id, NEW.sent_at);
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION trg_emails_del()
+RETURNS TRIGGER AS $$
+BEGIN
+  IF current_setting('emails.relocating', true) = 'on' THEN
+    RETURN NULL;
+  END IF;
+  DELETE FROM email_keys WHERE gmail_id = OLD.gmail_id AND email_id = OLD.id;
+  DELETE FROM email_extractions WHERE email_id = OLD.id;
+  UPDATE applications SET source_email_id = NULL WHERE source_email_id = OLD.id;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER emails_keys_ins
+    AFTER INSERT ON emails
+    FOR EACH ROW EXECUTE FUNCTION trg_emails_keys_ins();
+
+CREATE TRIGGER emails_del
+    AFTER DELETE ON emails
+    FOR EACH ROW EXECUTE FUNCTION trg_emails_del();
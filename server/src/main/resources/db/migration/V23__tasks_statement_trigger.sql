@@ -0,0 +1,69 @@
+-- Tasks created from the LLM's next_action: which email they came from (one task per email
+-- and application, so re-processing is idempotent) and when it was sent (a newer email's
+-- task supersedes older open ones).
+ALTER TABLE tasks ADD COLUMN email_id UUID;
+ALTER TABLE tasks ADD COLUMN sent_at TIMESTAMPTZ;
+CREATE UNIQUE INDEX IF NOT EXISTS uq_tasks_application_email ON tasks (application_id, email_id) WHERE email_id IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_tasks_application_due ON tasks (application_id, due_at);
+
+ALTER TABLE email_extractions ADD COLUMN next_action_due TIMESTAMPTZ;
+
+-- Replaces the row-level trigger from V3, which rescanned an application's tasks once per
+-- changed row. These run once per statement and recompute each affected application once,
+-- reading the changed rows from transition tables.
+DROP TRIGGER IF EXISTS tasks_recompute_next_due ON tasks;
+
+CREATE OR REPLACE FUNCTION recompute_next_due_at(p_application_ids UUID[])
+RETURNS VOID AS $$
+  UPDATE applications a
+  SET next_due_at = sub.min_due
+  FROM (
+    SELECT ids.application_id,
+           (SELECT MIN(t.due_at) FROM tasks t
+            WHERE t.application_id = ids.application_id
+              AND (t.status IS NULL OR t.status NOT IN ('done', 'cancelled'))) AS min_due
+    FROM unnest(p_application_ids) AS ids(application_id)
+  ) sub
+  WHERE a.id = sub.application_id
+    AND a.next_due_at IS DISTINCT FROM sub.min_due;
+$$ LANGUAGE sql;
+
+CREATE OR REPLACE FUNCTION trg_tasks_next_due_ins()
+RETURNS TRIGGER AS $$
+BEGIN
+  PERFORM recompute_next_due_at(ARRAY(SELECT DISTINCT application_id FROM new_tasks));
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION trg_tasks_next_due_upd()
+RETURNS TRIGGER AS $$
+BEGIN
+  PERFORM recompute_next_due_at(ARRAY(SELECT application_id FROM old_tasks
+                                      UNION SELECT application_id FROM new_tasks));
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION trg_tasks_next_due_del()
+RETURNS TRIGGER AS $$
+BEGIN
+  PERFORM recompute_next_due_at(ARRAY(SELECT DISTINCT application_id FROM old_tasks));
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER tasks_next_due_ins
+    AFTER INSERT ON tasks
+    REFERENCING NEW TABLE AS new_tasks
+    FOR EACH STATEMENT EXECUTE FUNCTION trg_tasks_next_due_ins();
+
+CREATE TRIGGER tasks_next_due_upd
+    AFTER UPDATE ON tasks
+    REFERENCING OLD TABLE AS old_tasks NEW TABLE AS new_tasks
+    FOR EACH STATEMENT EXECUTE FUNCTION trg_tasks_next_due_upd();
+
+CREATE TRIGGER tasks_next_due_del
+    AFTER DELETE ON tasks
+    REFERENCING OLD TABLE AS old_tasks
+    FOR EACH STATEMENT EXECUTE FUNCTION trg_tasks_next_due_del();
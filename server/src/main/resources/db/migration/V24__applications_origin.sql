@@ -0,0 +1,8 @@
+-- Who created an application: the extraction upsert ('llm') or the user via POST ('user').
+-- A re-extraction rebuild may only remove rows it created. Existing rows count as extracted
+-- when their canonical_key is the one the upsert writes.
+ALTER TABLE applications ADD COLUMN origin TEXT NOT NULL DEFAULT 'user';
+
+UPDATE applications
+SET origin = 'llm'
+WHERE canonical_key = user_id::text || '|' || normalized_company || '|' || normalized_role_title;
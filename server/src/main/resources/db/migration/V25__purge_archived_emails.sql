@@ -0,0 +1,22 @@
+-- Detached archive tables (emails_archive_YYYY_MM) have no delete trigger, so a user purge
+-- removes their rows and extractions here. Returns the number of archived emails deleted.
+CREATE OR REPLACE FUNCTION purge_archived_emails(p_user_id UUID)
+RETURNS BIGINT AS $$
+DECLARE
+  t TEXT;
+  n BIGINT;
+  total BIGINT := 0;
+BEGIN
+  FOR t IN
+    SELECT c.relname FROM pg_class c JOIN pg_namespace ns ON ns.oid = c.relnamespace
+    WHERE c.relkind = 'r' AND c.relname LIKE 'emails\_archive\_%' AND ns.nspname = current_schema()
+  LOOP
+    EXECUTE format('WITH gone AS (DELETE FROM %I WHERE user_id = $1 RETURNING id),
+                         x AS (DELETE FROM email_extractions x USING gone WHERE x.email_id = gone.id)
+                    SELECT count(*) FROM gone', t)
+      INTO n USING p_user_id;
+    total := total + n;
+  END LOOP;
+  RETURN total;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,9 @@
+-- Primary WAL position right after each user's last committed write. Replica routing on every
+-- node reads it and only sends the user to a replica that has replayed past it, so
+-- read-your-writes holds whichever node served the write.
+-- No FK to users, as with user_change_versions.
+CREATE TABLE user_last_writes (
+  user_id UUID PRIMARY KEY,
+  lsn BIGINT NOT NULL,
+  written_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
@@ -0,0 +1,28 @@
+-- Tombstones are only needed by clients that sync with ?since= or the stream; they are pruned
+-- after app.stream.tombstone-retention. tombstones_pruned_through is the highest change version
+-- whose tombstone is gone: a delta from an older version could miss deletions, so callers get
+-- a full reload instead.
+ALTER TABLE user_change_versions ADD COLUMN IF NOT EXISTS tombstones_pruned_through BIGINT NOT NULL DEFAULT 0;
+CREATE INDEX IF NOT EXISTS idx_app_tombstones_deleted_at ON application_tombstones (deleted_at);
+
+CREATE OR REPLACE FUNCTION prune_application_tombstones(p_before TIMESTAMPTZ)
+RETURNS BIGINT AS $$
+DECLARE
+  n BIGINT;
+BEGIN
+  WITH gone AS (
+    DELETE FROM application_tombstones WHERE deleted_at < p_before
+    RETURNING user_id, change_version
+  ), floors AS (
+    SELECT user_id, MAX(change_version) AS v FROM gone GROUP BY user_id
+  ), raised AS (
+    UPDATE user_change_versions u
+    SET tombstones_pruned_through = GREATEST(u.tombstones_pruned_through, f.v)
+    FROM floors f
+    WHERE u.user_id = f.user_id
+    RETURNING u.user_id
+  )
+  SELECT COUNT(*) INTO n FROM gone;
+  RETURN n;
+END;
+$$ LANGUAGE plpgsql;
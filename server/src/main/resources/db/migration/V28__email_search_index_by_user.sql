@@ -0,0 +1,7 @@
+-- Search always filters on user_id. With user_id as the first GIN column (btree_gin), a
+-- common term is intersected with the user's entries inside the index instead of matching
+-- every user's emails and filtering them on the heap.
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+DROP INDEX IF EXISTS idx_emails_search_tsv;
+CREATE INDEX IF NOT EXISTS idx_emails_user_search_tsv ON emails USING GIN (user_id, search_tsv);
@@ -0,0 +1,86 @@
+-- Weekly application counts were keyed on first_seen_at, which is when the row was created:
+-- after a backfill every application fell into the ingest week. applied_at is the sent_at of
+-- the earliest email the application was extracted from; the week bucket uses it, falling back
+-- to first_seen_at for rows created through POST /applications.
+ALTER TABLE applications ADD COLUMN IF NOT EXISTS applied_at TIMESTAMPTZ;
+
+UPDATE applications a
+SET applied_at = e.sent_at
+FROM emails e
+WHERE e.id = a.source_email_id AND a.applied_at IS NULL;
+
+DROP FUNCTION IF EXISTS bump_application_stats(UUID, TEXT, TIMESTAMPTZ, TEXT, TEXT, INT);
+
+CREATE OR REPLACE FUNCTION bump_application_stats(p_user_id UUID, p_status TEXT, p_applied_at TIMESTAMPTZ,
+                                                  p_company_key TEXT, p_company TEXT, p_delta INT)
+RETURNS VOID AS $$
+BEGIN
+  PERFORM pg_advisory_xact_lock_shared(hashtext('application_stats'), hashtext(p_user_id::text));
+  INSERT INTO application_stats (user_id, dimension, bucket, label, count)
+  VALUES (p_user_id, 'status', p_status, p_status, p_delta),
+         (p_user_id, 'week', to_char(date_trunc('week', p_applied_at AT TIME ZONE 'UTC'), 'YYYY-MM-DD'),
+          to_char(date_trunc('week', p_applied_at AT TIME ZONE 'UTC'), 'YYYY-MM-DD'), p_delta),
+         (p_user_id, 'company', p_company_key, p_company, p_delta)
+  ON CONFLICT (user_id, dimension, bucket) DO UPDATE SET count = application_stats.count + EXCLUDED.count;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION trg_applications_stats()
+RETURNS TRIGGER AS $$
+BEGIN
+  IF TG_OP IN ('UPDATE', 'DELETE') THEN
+    PERFORM bump_application_stats(OLD.user_id, OLD.status, coalesce(OLD.applied_at, OLD.first_seen_at),
+                                   OLD.normalized_company, OLD.company, -1);
+  END IF;
+  IF TG_OP IN ('INSERT', 'UPDATE') THEN
+    PERFORM bump_application_stats(NEW.user_id, NEW.status, coalesce(NEW.applied_at, NEW.first_seen_at),
+                                   NEW.normalized_company, NEW.company, 1);
+  END IF;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS applications_stats_upd ON applications;
+CREATE TRIGGER applications_stats_upd
+    AFTER UPDATE ON applications
+    FOR EACH ROW
+    WHEN (OLD.status IS DISTINCT FROM NEW.status
+          OR coalesce(OLD.applied_at, OLD.first_seen_at) IS DISTINCT FROM coalesce(NEW.applied_at, NEW.first_seen_at)
+          OR OLD.normalized_company IS DISTINCT FROM NEW.normalized_company
+          OR OLD.user_id IS DISTINCT FROM NEW.user_id)
+    EXECUTE FUNCTION trg_applications_stats();
+
+CREATE OR REPLACE FUNCTION rebuild_application_stats(p_user_id UUID)
+RETURNS INT AS $$
+DECLARE
+  drifted INT;
+BEGIN
+  PERFORM pg_advisory_xact_lock(hashtext('application_stats'), hashtext(p_user_id::text));
+
+  CREATE TEMP TABLE fresh_application_stats ON COMMIT DROP AS
+  SELECT 'status' AS dimension, status AS bucket, status AS label, count(*) AS count
+  FROM applications WHERE user_id = p_user_id GROUP BY status
+  UNION ALL
+  SELECT 'week', w, w, count(*)
+  FROM (SELECT to_char(date_trunc('week', coalesce(applied_at, first_seen_at) AT TIME ZONE 'UTC'), 'YYYY-MM-DD') AS w
+        FROM applications WHERE user_id = p_user_id) weeks
+  GROUP BY w
+  UNION ALL
+  SELECT 'company', normalized_company, min(company), count(*)
+  FROM applications WHERE user_id = p_user_id GROUP BY normalized_company;
+
+  SELECT count(*) INTO drifted
+  FROM fresh_application_stats f
+  FULL JOIN (SELECT * FROM application_stats WHERE user_id = p_user_id AND count <> 0) s
+    USING (dimension, bucket)
+  WHERE coalesce(f.count, 0) <> coalesce(s.count, 0);
+
+  DELETE FROM application_stats WHERE user_id = p_user_id;
+  INSERT INTO application_stats (user_id, dimension, bucket, label, count)
+  SELECT p_user_id, dimension, bucket, label, count FROM fresh_application_stats;
+  DROP TABLE fresh_application_stats;
+  RETURN drifted;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT rebuild_application_stats(user_id) FROM (SELECT DISTINCT user_id FROM applications) u;
@@ -0,0 +1,34 @@
+-- Replaces the row-level notify trigger from V18, which sent a NOTIFY for every written row
+-- even on deployments where nothing listens. These run once per statement, send one NOTIFY
+-- per affected user, and only when the session has app.notify_application_changes on; the
+-- datasource sets it from app.stream.pg-notify (see application.yml).
+DROP TRIGGER IF EXISTS applications_notify ON applications;
+DROP FUNCTION IF EXISTS trg_applications_notify();
+
+CREATE OR REPLACE FUNCTION trg_applications_notify()
+RETURNS TRIGGER AS $$
+BEGIN
+  IF coalesce(current_setting('app.notify_application_changes', true), '') NOT IN ('true', 'on') THEN
+    RETURN NULL;
+  END IF;
+  PERFORM pg_notify('application_changes', u.user_id::text)
+  FROM (SELECT DISTINCT user_id FROM changed_applications) u;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- transition tables allow only one event per trigger
+CREATE TRIGGER applications_notify_ins
+AFTER INSERT ON applications
+REFERENCING NEW TABLE AS changed_applications
+FOR EACH STATEMENT EXECUTE FUNCTION trg_applications_notify();
+
+CREATE TRIGGER applications_notify_upd
+AFTER UPDATE ON applications
+REFERENCING NEW TABLE AS changed_applications
+FOR EACH STATEMENT EXECUTE FUNCTION trg_applications_notify();
+
+CREATE TRIGGER applications_notify_del
+AFTER DELETE ON applications
+REFERENCING OLD TABLE AS changed_applications
+FOR EACH STATEMENT EXECUTE FUNCTION trg_applications_notify();
@@ -0,0 +1,4 @@
+-- A run stopped by the daily quota is paused rather than failed; ?resume=true continues either.
+ALTER TABLE ingest_runs DROP CONSTRAINT chk_ingest_runs_stage;
+ALTER TABLE ingest_runs ADD CONSTRAINT chk_ingest_runs_stage
+  CHECK (stage IN ('listing', 'extracting', 'paused', 'completed', 'failed'));
@@ -0,0 +1,10 @@
+-- The application upsert refreshes last_updated_at every time an email mentions the
+-- application, even when nothing else changes. Such a touch no longer takes a change
+-- version: ETags and ?since= deltas move only with real changes, and the new
+-- last_updated_at reaches clients with the row's next one.
+DROP TRIGGER IF EXISTS applications_stamp_version_upd ON applications;
+CREATE TRIGGER applications_stamp_version_upd
+    BEFORE UPDATE ON applications
+    FOR EACH ROW
+    WHEN ((to_jsonb(OLD) - 'last_updated_at') IS DISTINCT FROM (to_jsonb(NEW) - 'last_updated_at'))
+    EXECUTE FUNCTION trg_applications_stamp_version();
@@ -0,0 +1,38 @@
+package com.atakant.emailtracker;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.UUID;
+
+/**
+ * Base for tests of what only the database does (triggers, upserts, partitions): the
+ * migrations run once against a throwaway Postgres and each test rolls back. One container
+ * serves every subclass, so they share a cached Spring context. Skipped without Docker.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+public abstract class PostgresTest {
+
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    static {
+        POSTGRES.start();
+    }
+
+    @Autowired
+    protected JdbcTemplate jdbc;
+
+    protected UUID newUser() {
+        UUID id = UUID.randomUUID();
+        jdbc.update("INSERT INTO users (id, email, provider) VALUES (?, ?, 'google')", id, id + "@example.com");
+        return id;
+    }
+}
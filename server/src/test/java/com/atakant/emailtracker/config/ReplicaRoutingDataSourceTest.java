@@ -0,0 +1,124 @@
+package com.atakant.emailtracker.config;
+
+import com.atakant.emailtracker.PostgresTest;
+import com.atakant.emailtracker.service.RecentWrites;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+// The "replica" is the same database through a read-only pool: never in recovery, so its replay
+// position is the primary's current WAL position whenever the lag is checked.
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // routing reads markers other connections committed
+class ReplicaRoutingDataSourceTest extends PostgresTest {
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    PlatformTransactionManager txManager;
+
+    final List<HikariDataSource> pools = new ArrayList<>();
+    RecentWrites recentWrites;
+    ReplicaRoutingDataSource routing;
+
+    @BeforeEach
+    void setUp() {
+        HikariDataSource primary = (HikariDataSource) dataSource;
+        ReplicaProperties props = new ReplicaProperties(true, List.of(primary.getJdbcUrl()), null, null, 2,
+                Duration.ofSeconds(5), Duration.ofHours(1), Duration.ofSeconds(30));
+        pools.add(pool(primary, primary.getJdbcUrl()));
+        routing = routing(primary, props);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaReadContext.clear();
+        routing.close();
+    }
+
+    private static HikariDataSource pool(HikariDataSource primary, String url) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl(url);
+        pool.setUsername(primary.getUsername());
+        pool.setPassword(primary.getPassword());
+        pool.setMaximumPoolSize(2);
+        pool.setReadOnly(true);
+        pool.setConnectionTimeout(250);
+        pool.setInitializationFailTimeout(-1);
+        return pool;
+    }
+
+    // the lag check is run by the tests, not the scheduler
+    private ReplicaRoutingDataSource routing(HikariDataSource primary, ReplicaProperties props) {
+        TaskScheduler scheduler = mock(TaskScheduler.class);
+        doReturn(mock(ScheduledFuture.class)).when(scheduler).scheduleWithFixedDelay(any(Runnable.class), any(Duration.class));
+        recentWrites = new RecentWrites(props, jdbc, txManager);
+        ReplicaRoutingDataSource r = new ReplicaRoutingDataSource(primary, pools, recentWrites, props, scheduler);
+        r.checkLag();
+        return r;
+    }
+
+    private boolean readsFromReplica(UUID userId) throws SQLException {
+        ReplicaReadContext.bind(userId);
+        try (Connection c = routing.getConnection()) {
+            return c.isReadOnly();
+        }
+    }
+
+    @Test
+    void readsWithoutABoundUserGoToThePrimary() throws SQLException {
+        try (Connection c = routing.getConnection()) {
+            assertThat(c.isReadOnly()).isFalse();
+        }
+    }
+
+    @Test
+    void aUserThatNeverWroteReadsFromTheReplica() throws SQLException {
+        assertThat(readsFromReplica(UUID.randomUUID())).isTrue();
+    }
+
+    @Test
+    void aWriteTheReplicaHasNotReplayedKeepsTheUserOnThePrimaryUntilItHas() throws SQLException {
+        UUID userId = UUID.randomUUID();
+        recentWrites.markWritten(UUID.randomUUID()); // moves the WAL past the position measured in setUp
+        recentWrites.markWritten(userId);
+        assertThat(recentWrites.wroteRecently(userId)).isFalse(); // stored, so routing goes by the marker
+
+        assertThat(readsFromReplica(userId)).isFalse();
+
+        routing.checkLag();
+        assertThat(readsFromReplica(userId)).isTrue();
+    }
+
+    @Test
+    void anUnreachableReplicaIsSkipped() throws SQLException {
+        routing.close();
+        pools.clear();
+        HikariDataSource primary = (HikariDataSource) dataSource;
+        pools.add(pool(primary, "jdbc:postgresql://127.0.0.1:1/none"));
+        routing = routing(primary, new ReplicaProperties(true, List.of("jdbc:postgresql://127.0.0.1:1/none"),
+                null, null, 2, Duration.ofSeconds(5), Duration.ofHours(1), Duration.ofSeconds(30)));
+
+        assertThat(readsFromReplica(UUID.randomUUID())).isFalse();
+    }
+}
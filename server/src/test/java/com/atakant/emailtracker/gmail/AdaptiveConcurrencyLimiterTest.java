@@ -0,0 +1,82 @@
+package com.atakant.emailtracker.gmail;
+
+import com.atakant.emailtracker.config.GmailFetchProperties;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static AdaptiveConcurrencyLimiter limiter(int initial, int min, int max, Duration latencyTarget) {
+        return new AdaptiveConcurrencyLimiter(new GmailFetchProperties(
+                initial, min, max, latencyTarget, 4, Duration.ofMillis(500), Duration.ofSeconds(10), 100_000, "raw"));
+    }
+
+    @Test
+    void fastSuccessesGrowTheWindowByAboutOnePerWindowUpToMax() {
+        AdaptiveConcurrencyLimiter l = limiter(4, 1, 8, Duration.ofSeconds(1));
+        for (int i = 0; i < 4; i++) l.onSuccess(10);
+        assertThat(l.currentLimit()).isEqualTo(4); // 4 + 4 * 1/4.x stays just under 5
+
+        for (int i = 0; i < 1_000; i++) l.onSuccess(10);
+        assertThat(l.currentLimit()).isEqualTo(8);
+    }
+
+    @Test
+    void slowSuccessesDoNotGrowTheWindow() {
+        AdaptiveConcurrencyLimiter l = limiter(4, 1, 8, Duration.ofMillis(100));
+        for (int i = 0; i < 100; i++) l.onSuccess(500);
+        assertThat(l.currentLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void throttleHalvesOncePerCooldownAndNeverBelowMin() {
+        AdaptiveConcurrencyLimiter l = limiter(16, 3, 32, Duration.ofHours(1));
+        l.onThrottle();
+        assertThat(l.currentLimit()).isEqualTo(8);
+        l.onThrottle(); // same burst: within the cooldown
+        assertThat(l.currentLimit()).isEqualTo(8);
+
+        AdaptiveConcurrencyLimiter floor = limiter(4, 3, 32, Duration.ZERO.plusNanos(1));
+        floor.onThrottle();
+        floor.onThrottle();
+        assertThat(floor.currentLimit()).isEqualTo(3);
+    }
+
+    @Test
+    void recentErrorsStopGrowthWithoutShrinking() {
+        AdaptiveConcurrencyLimiter l = limiter(4, 1, 8, Duration.ofSeconds(1));
+        l.onError();
+        for (int i = 0; i < 6; i++) l.onSuccess(10); // error rate decays from 0.1, still above 5%
+        assertThat(l.currentLimit()).isEqualTo(4);
+
+        for (int i = 0; i < 100; i++) l.onSuccess(10);
+        assertThat(l.currentLimit()).isGreaterThan(4);
+    }
+
+    @Test
+    void acquireBlocksAtTheLimitUntilASlotIsReleased() throws Exception {
+        AdaptiveConcurrencyLimiter l = limiter(1, 1, 1, Duration.ofSeconds(1));
+        l.acquire();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                l.acquire();
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        assertThat(acquired.await(200, TimeUnit.MILLISECONDS)).isFalse();
+
+        l.release();
+        assertThat(acquired.await(2, TimeUnit.SECONDS)).isTrue();
+        waiter.join();
+    }
+}
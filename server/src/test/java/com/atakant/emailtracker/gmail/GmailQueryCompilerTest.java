@@ -0,0 +1,43 @@
+package com.atakant.emailtracker.gmail;
+
+import com.atakant.emailtracker.config.GmailQueryProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GmailQueryCompilerTest {
+
+    private static final String AFTER = "after:2025/01/01";
+
+    @Test
+    void candidateQueryOrsAtsSendersAndKeywordsAndExcludesCategories() {
+        GmailQueryCompiler compiler = new GmailQueryCompiler(
+                new GmailQueryProperties("candidates", List.of("promotions", "social"), false));
+        String q = compiler.candidateQuery(AFTER);
+
+        assertThat(q).startsWith(AFTER + " -in:chats {")
+                .endsWith("} -category:promotions -category:social")
+                .contains("from:greenhouse.io", "from:lever.co")
+                .contains(" interview ", "\"thank you for applying\"", "\"take-home\"", "\"coding challenge\"");
+        assertThat(q).doesNotContain("\"interview\"");
+    }
+
+    @Test
+    void passesDependOnModeAndWideNetFallback() {
+        assertThat(new GmailQueryCompiler(new GmailQueryProperties("candidates", null, false)).passes(AFTER))
+                .hasSize(1).first().asString().contains("from:greenhouse.io");
+        assertThat(new GmailQueryCompiler(new GmailQueryProperties("candidates", null, true)).passes(AFTER))
+                .hasSize(2).last().isEqualTo(AFTER + " -in:chats");
+        assertThat(new GmailQueryCompiler(new GmailQueryProperties("all", List.of("promotions"), true)).passes(AFTER))
+                .containsExactly(AFTER + " -in:chats");
+    }
+
+    @Test
+    void unknownModeIsRejected() {
+        assertThatThrownBy(() -> new GmailQueryProperties("everything", null, false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,88 @@
+package com.atakant.emailtracker.repo;
+
+import com.atakant.emailtracker.PostgresTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApplicationRepositoryTest extends PostgresTest {
+
+    @Autowired
+    ApplicationRepository applications;
+
+    UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = newUser();
+    }
+
+    private void upsert(String company, String status, Instant appliedAt) {
+        String nc = company.toLowerCase();
+        applications.upsert(userId, nc, "engineer", userId + "|" + nc + "|engineer",
+                company, "Engineer", "Remote", status, null, appliedAt);
+    }
+
+    private UUID idOf(String company) {
+        return jdbc.queryForObject("SELECT id FROM applications WHERE user_id = ? AND normalized_company = ?",
+                UUID.class, userId, company.toLowerCase());
+    }
+
+    @Test
+    void upsertUpdatesTheExistingRowAndKeepsTheEarliestAppliedAt() {
+        Instant first = Instant.parse("2026-03-02T10:00:00Z");
+        upsert("Acme", "applied", first);
+        UUID id = idOf("Acme");
+
+        upsert("Acme", "interview", first.plusSeconds(86_400));
+
+        assertThat(idOf("Acme")).isEqualTo(id);
+        assertThat(jdbc.queryForObject("SELECT status FROM applications WHERE id = ?", String.class, id))
+                .isEqualTo("interview");
+        assertThat(jdbc.queryForObject("SELECT applied_at FROM applications WHERE id = ?", Timestamp.class, id)
+                .toInstant()).isEqualTo(first);
+    }
+
+    @Test
+    void onlyRealChangesTakeANewVersion() {
+        upsert("Acme", "applied", Instant.parse("2026-03-02T10:00:00Z"));
+        long afterInsert = applications.currentChangeVersion(userId);
+        assertThat(afterInsert).isPositive();
+
+        jdbc.update("UPDATE applications SET last_updated_at = '2020-01-01' WHERE user_id = ?", userId);
+        long afterTouch = applications.currentChangeVersion(userId);
+        assertThat(afterTouch).isEqualTo(afterInsert);
+
+        upsert("Acme", "applied", Instant.parse("2026-03-02T10:00:00Z"));
+        assertThat(applications.currentChangeVersion(userId)).isEqualTo(afterInsert);
+        assertThat(jdbc.queryForObject("SELECT last_updated_at FROM applications WHERE user_id = ?",
+                Timestamp.class, userId).toInstant()).isAfter(Instant.parse("2020-01-02T00:00:00Z"));
+
+        upsert("Acme", "rejected", Instant.parse("2026-03-02T10:00:00Z"));
+        assertThat(applications.currentChangeVersion(userId)).isGreaterThan(afterInsert);
+    }
+
+    @Test
+    void deltaHasTheRowsChangedAndDeletedAfterAVersion() {
+        upsert("Acme", "applied", Instant.parse("2026-03-02T10:00:00Z"));
+        upsert("Globex", "applied", Instant.parse("2026-03-03T10:00:00Z"));
+        upsert("Initech", "applied", Instant.parse("2026-03-04T10:00:00Z"));
+        long since = applications.currentChangeVersion(userId);
+        UUID globex = idOf("Globex");
+        UUID initech = idOf("Initech");
+
+        upsert("Globex", "interview", Instant.parse("2026-03-03T10:00:00Z"));
+        jdbc.update("DELETE FROM applications WHERE id = ?", initech);
+
+        assertThat(applications.findChangedSince(userId, since))
+                .extracting(ApplicationListRow::id).containsExactly(globex);
+        assertThat(applications.findDeletedSince(userId, since)).containsExactly(initech);
+        assertThat(applications.findChangedSince(userId, 0)).hasSize(2);
+    }
+}
@@ -0,0 +1,79 @@
+package com.atakant.emailtracker.repo;
+
+import com.atakant.emailtracker.PostgresTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApplicationStatsTest extends PostgresTest {
+
+    // Mondays of two ISO weeks
+    private static final Instant WEEK_1 = Instant.parse("2026-03-02T09:00:00Z");
+    private static final Instant WEEK_2 = Instant.parse("2026-03-09T09:00:00Z");
+
+    @Autowired
+    ApplicationRepository applications;
+
+    UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = newUser();
+    }
+
+    private void upsert(String company, String role, String status, Instant appliedAt) {
+        String nc = company.toLowerCase();
+        String nr = role.toLowerCase();
+        applications.upsert(userId, nc, nr, userId + "|" + nc + "|" + nr, company, role, null, status, null, appliedAt);
+    }
+
+    private Map<String, Long> stats(String dimension) {
+        return applications.findStats(userId, "2000-01-01", 10).stream()
+                .filter(b -> b.getDimension().equals(dimension))
+                .collect(Collectors.toMap(ApplicationRepository.StatsBucket::getBucket,
+                        ApplicationRepository.StatsBucket::getCount));
+    }
+
+    @Test
+    void countersFollowInsertsUpdatesAndDeletes() {
+        upsert("Acme", "Engineer", "applied", WEEK_1);
+        upsert("Acme", "Designer", "applied", WEEK_2);
+        upsert("Globex", "Engineer", "applied", WEEK_2);
+
+        upsert("Acme", "Engineer", "interview", WEEK_1);
+        jdbc.update("DELETE FROM applications WHERE user_id = ? AND normalized_company = 'globex'", userId);
+
+        assertThat(stats("status")).containsOnly(Map.entry("applied", 1L), Map.entry("interview", 1L));
+        assertThat(stats("week")).containsOnly(Map.entry("2026-03-02", 1L), Map.entry("2026-03-09", 1L));
+        assertThat(stats("company")).containsOnly(Map.entry("acme", 2L));
+    }
+
+    @Test
+    void weekIsWhenTheApplicationHappenedNotWhenItWasStored() {
+        upsert("Acme", "Engineer", "applied", WEEK_2);
+        upsert("Acme", "Engineer", "applied", WEEK_1); // an older email about it arrives later
+
+        assertThat(stats("week")).containsOnly(Map.entry("2026-03-02", 1L));
+    }
+
+    @Test
+    void rebuildRepairsDriftedCounters() {
+        upsert("Acme", "Engineer", "applied", WEEK_1);
+        upsert("Globex", "Engineer", "interview", WEEK_2);
+        jdbc.update("UPDATE application_stats SET count = 7 WHERE user_id = ? AND dimension = 'status'", userId);
+        jdbc.update("DELETE FROM application_stats WHERE user_id = ? AND dimension = 'company' AND bucket = 'acme'", userId);
+
+        assertThat(applications.rebuildStats(userId)).isEqualTo(3);
+
+        assertThat(stats("status")).containsOnly(Map.entry("applied", 1L), Map.entry("interview", 1L));
+        assertThat(stats("company")).containsOnly(Map.entry("acme", 1L), Map.entry("globex", 1L));
+        assertThat(applications.rebuildStats(userId)).isZero();
+    }
+}
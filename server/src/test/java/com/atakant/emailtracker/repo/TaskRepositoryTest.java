@@ -0,0 +1,110 @@
+package com.atakant.emailtracker.repo;
+
+import com.atakant.emailtracker.PostgresTest;
+import com.atakant.emailtracker.repo.TaskRepository.NextActionTask;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TaskRepository.class)
+class TaskRepositoryTest extends PostgresTest {
+
+    private static final Instant SENT_1 = Instant.parse("2026-03-02T09:00:00Z");
+    private static final Instant SENT_2 = Instant.parse("2026-03-05T09:00:00Z");
+    private static final Instant DUE_1 = Instant.parse("2026-03-10T17:00:00Z");
+    private static final Instant DUE_2 = Instant.parse("2026-03-12T17:00:00Z");
+
+    @Autowired
+    TaskRepository tasks;
+
+    @Autowired
+    ApplicationRepository applications;
+
+    UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = newUser();
+        for (String company : List.of("acme", "globex")) {
+            applications.upsert(userId, company, "engineer", userId + "|" + company + "|engineer",
+                    company, "Engineer", null, "applied", null, SENT_1);
+        }
+    }
+
+    private static NextActionTask task(String company, UUID emailId, Instant due, Instant sent) {
+        return new NextActionTask(emailId, company, "engineer", "Reply to " + company, due, sent);
+    }
+
+    private Instant nextDueAt(String company) {
+        Timestamp t = jdbc.queryForObject(
+                "SELECT next_due_at FROM applications WHERE user_id = ? AND normalized_company = ?",
+                Timestamp.class, userId, company);
+        return t == null ? null : t.toInstant();
+    }
+
+    private List<String> statuses(String company) {
+        return jdbc.queryForList("""
+                SELECT t.status FROM tasks t JOIN applications a ON a.id = t.application_id
+                WHERE a.user_id = ? AND a.normalized_company = ? ORDER BY t.sent_at
+                """, String.class, userId, company);
+    }
+
+    @Test
+    void oneStatementSetsNextDueAtOfEveryApplicationItTouches() {
+        int inserted = tasks.insertNextActions(userId, List.of(
+                task("acme", UUID.randomUUID(), DUE_1, SENT_1),
+                task("globex", UUID.randomUUID(), DUE_2, SENT_1)));
+
+        assertThat(inserted).isEqualTo(2);
+        assertThat(nextDueAt("acme")).isEqualTo(DUE_1);
+        assertThat(nextDueAt("globex")).isEqualTo(DUE_2);
+    }
+
+    @Test
+    void aNewerEmailsActionSupersedesTheOpenOne() {
+        tasks.insertNextActions(userId, List.of(task("acme", UUID.randomUUID(), DUE_1, SENT_1)));
+        tasks.insertNextActions(userId, List.of(task("acme", UUID.randomUUID(), DUE_2, SENT_2)));
+
+        assertThat(statuses("acme")).containsExactly("cancelled", "open");
+        assertThat(nextDueAt("acme")).isEqualTo(DUE_2);
+    }
+
+    @Test
+    void anOlderEmailProcessedLaterIsStoredCancelled() {
+        tasks.insertNextActions(userId, List.of(task("acme", UUID.randomUUID(), DUE_2, SENT_2)));
+        tasks.insertNextActions(userId, List.of(task("acme", UUID.randomUUID(), DUE_1, SENT_1)));
+
+        assertThat(statuses("acme")).containsExactly("cancelled", "open");
+        assertThat(nextDueAt("acme")).isEqualTo(DUE_2);
+    }
+
+    @Test
+    void reprocessingAnEmailAddsNothing() {
+        UUID emailId = UUID.randomUUID();
+        tasks.insertNextActions(userId, List.of(task("acme", emailId, DUE_1, SENT_1)));
+
+        assertThat(tasks.insertNextActions(userId, List.of(task("acme", emailId, DUE_1, SENT_1)))).isZero();
+        assertThat(statuses("acme")).containsExactly("open");
+    }
+
+    @Test
+    void closingOrDeletingTasksRecomputesNextDueAt() {
+        tasks.insertNextActions(userId, List.of(
+                task("acme", UUID.randomUUID(), DUE_1, SENT_1),
+                task("globex", UUID.randomUUID(), DUE_2, SENT_1)));
+
+        jdbc.update("UPDATE tasks SET status = 'done' WHERE title = 'Reply to acme'");
+        jdbc.update("DELETE FROM tasks WHERE title = 'Reply to globex'");
+
+        assertThat(nextDueAt("acme")).isNull();
+        assertThat(nextDueAt("globex")).isNull();
+    }
+}
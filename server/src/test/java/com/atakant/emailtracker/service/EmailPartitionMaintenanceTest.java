@@ -0,0 +1,115 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.PostgresTest;
+import com.atakant.emailtracker.config.EmailPartitionProperties;
+import com.atakant.emailtracker.repo.EmailRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmailPartitionMaintenanceTest extends PostgresTest {
+
+    private static final Instant LONG_AGO = Instant.parse("2019-05-14T08:30:00Z");
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager txManager;
+
+    @Autowired
+    EmailRepository emails;
+
+    UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = newUser();
+    }
+
+    private EmailPartitionMaintenance maintenance(Duration retention) {
+        return new EmailPartitionMaintenance(new EmailPartitionProperties(3, null, retention, "detach"), em, txManager, null);
+    }
+
+    private UUID insertEmail(String gmailId, Instant sentAt) {
+        UUID id = UUID.randomUUID();
+        jdbc.update("""
+                INSERT INTO emails (id, user_id, thread_id, message_id_hash, subject, sent_at, gmail_id)
+                VALUES (?, ?, ?, ?, 'Your application', ?, ?)
+                """, id, userId, "t-" + gmailId, "h-" + gmailId, Timestamp.from(sentAt), gmailId);
+        jdbc.update("""
+                INSERT INTO email_extractions (id, user_id, email_id, thread_id, version, is_application)
+                VALUES (?, ?, ?, ?, 'v1', true)
+                """, UUID.randomUUID(), userId, id, "t-" + gmailId);
+        return id;
+    }
+
+    private String partitionOf(UUID emailId) {
+        return jdbc.queryForObject("SELECT tableoid::regclass::text FROM emails WHERE id = ?", String.class, emailId);
+    }
+
+    private int extractionsOf(UUID emailId) {
+        return jdbc.queryForObject("SELECT count(*) FROM email_extractions WHERE email_id = ?", Integer.class, emailId);
+    }
+
+    @Test
+    void keysAreWrittenWithTheEmailAndRemovedWithIt() {
+        UUID id = insertEmail("g-1", Instant.now());
+        jdbc.update("INSERT INTO applications (user_id, normalized_company, normalized_role_title, company, role_title, "
+                + "status, source_email_id, first_seen_at) VALUES (?, 'acme', 'engineer', 'Acme', 'Engineer', 'applied', ?, NOW())",
+                userId, id);
+        assertThat(emails.findExistingGmailIds(List.of("g-1", "g-2"))).containsExactly("g-1");
+
+        jdbc.update("DELETE FROM emails WHERE id = ?", id);
+
+        assertThat(emails.findExistingGmailIds(List.of("g-1"))).isEmpty();
+        assertThat(extractionsOf(id)).isZero();
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM applications WHERE source_email_id = ?", Integer.class, id))
+                .isZero();
+    }
+
+    @Test
+    void aGmailIdIsUniqueAcrossMonths() {
+        insertEmail("g-1", Instant.now());
+
+        assertThatThrownBy(() -> insertEmail("g-1", LONG_AGO)).isInstanceOf(DuplicateKeyException.class);
+    }
+
+    @Test
+    void mailForAMonthWithoutAPartitionIsMovedIntoOneKeepingKeysAndExtractions() {
+        UUID id = insertEmail("g-old", LONG_AGO);
+        assertThat(partitionOf(id)).isEqualTo("emails_default");
+
+        maintenance(Duration.ZERO).maintain();
+
+        assertThat(partitionOf(id)).isEqualTo("emails_p2019_05");
+        assertThat(emails.findExistingGmailIds(List.of("g-old"))).containsExactly("g-old");
+        assertThat(extractionsOf(id)).isOne();
+    }
+
+    @Test
+    void archivedMonthsLeaveEmailsButKeepTheirKeys() {
+        UUID id = insertEmail("g-old", LONG_AGO);
+        UUID recent = insertEmail("g-new", Instant.now());
+
+        maintenance(Duration.ofDays(3 * 365)).maintain();
+
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM emails WHERE id = ?", Integer.class, id)).isZero();
+        assertThat(jdbc.queryForObject("SELECT count(*) FROM emails_archive_2019_05 WHERE id = ?", Integer.class, id))
+                .isOne();
+        assertThat(emails.findExistingGmailIds(List.of("g-old", "g-new"))).containsExactlyInAnyOrder("g-old", "g-new");
+        assertThat(partitionOf(recent)).startsWith("emails_p");
+    }
+}
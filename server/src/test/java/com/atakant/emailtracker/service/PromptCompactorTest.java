@@ -0,0 +1,30 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.config.PromptProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PromptCompactorTest {
+
+    private final PromptCompactor compactor = new PromptCompactor(new PromptProperties(0, 0, 0, 0));
+
+    @Test
+    void cutsTheContactBlockAfterASignOff() {
+        String body = "Hi Sam,\nWe'd like to move forward.\n\nBest regards,\nJane Doe\nSenior Recruiter\n+1 555 123 4567";
+        assertThat(compactor.compact("Next steps", body).body())
+                .isEqualTo("Hi Sam,\nWe'd like to move forward.\n\nBest regards,");
+    }
+
+    @Test
+    void keepsADateAfterTheSignOff() {
+        String body = "Hi Sam,\nWe'd like to meet you.\n\nThanks,\nRecruiting Team\n\nInterview: Oct 3, 2pm";
+        assertThat(compactor.compact("Next steps", body).body()).endsWith("Interview: Oct 3, 2pm");
+    }
+
+    @Test
+    void keepsAPostscriptAfterTheSignOff() {
+        String body = "Hi Sam,\nThanks for your time today.\n\nCheers,\nAlex\n\nP.S. Please send your portfolio link.";
+        assertThat(compactor.compact("Follow-up", body).body()).endsWith("P.S. Please send your portfolio link.");
+    }
+}
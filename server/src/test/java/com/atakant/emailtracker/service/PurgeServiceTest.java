@@ -0,0 +1,128 @@
+package com.atakant.emailtracker.service;
+
+import com.atakant.emailtracker.PostgresTest;
+import com.atakant.emailtracker.config.EmailPartitionProperties;
+import com.atakant.emailtracker.config.PurgeProperties;
+import com.atakant.emailtracker.domain.PurgeJob;
+import com.atakant.emailtracker.repo.ApplicationRepository;
+import com.atakant.emailtracker.repo.EmailRepository;
+import com.atakant.emailtracker.repo.PurgeJobRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class PurgeServiceTest extends PostgresTest {
+
+    @Autowired
+    PurgeJobRepository jobs;
+
+    @Autowired
+    ApplicationRepository applications;
+
+    @Autowired
+    EmailRepository emails;
+
+    @Autowired
+    ApplicationEventPublisher events;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager txManager;
+
+    final ApplicationPrefilter prefilter = mock(ApplicationPrefilter.class);
+    final KnownGmailIds knownGmailIds = mock(KnownGmailIds.class);
+
+    PurgeService purge;
+    UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        // only deleteAllForUser is used, which needs the repository and the two caches it clears
+        GmailService gmailService = new GmailService(null, emails, null, null, null, null, null, null, null, null,
+                null, prefilter, null, knownGmailIds, null, null);
+        purge = new PurgeService(jobs, new ApplicationService(applications), gmailService,
+                new PurgeProperties(2, Duration.ZERO), events, null);
+        userId = newUser();
+    }
+
+    private void insertApplication(String company) {
+        applications.upsert(userId, company, "engineer", userId + "|" + company + "|engineer",
+                company, "Engineer", null, "applied", null, Instant.now());
+    }
+
+    private void insertEmail(String gmailId, Instant sentAt) {
+        UUID id = UUID.randomUUID();
+        jdbc.update("""
+                INSERT INTO emails (id, user_id, thread_id, message_id_hash, sent_at, gmail_id)
+                VALUES (?, ?, ?, ?, ?, ?)
+                """, id, userId, "t-" + gmailId, "h-" + gmailId, Timestamp.from(sentAt), gmailId);
+        jdbc.update("""
+                INSERT INTO email_extractions (id, user_id, email_id, thread_id, version, is_application)
+                VALUES (?, ?, ?, ?, 'v1', true)
+                """, UUID.randomUUID(), userId, id, "t-" + gmailId);
+    }
+
+    private int count(String sql) {
+        return jdbc.queryForObject(sql, Integer.class, userId);
+    }
+
+    @Test
+    void removesLiveAndArchivedMailKeysAndApplicationsInChunks() {
+        for (String company : new String[]{"acme", "globex", "initech", "umbrella", "hooli"}) {
+            insertApplication(company);
+        }
+        insertEmail("g-old", Instant.parse("2019-05-14T08:30:00Z"));
+        new EmailPartitionMaintenance(new EmailPartitionProperties(3, null, Duration.ofDays(3 * 365), "detach"),
+                em, txManager, null).maintain(); // archives May 2019
+        for (int i = 0; i < 3; i++) {
+            insertEmail("g-" + i, Instant.now());
+        }
+
+        PurgeJob job = purge.purge(userId);
+
+        assertThat(job.getStage()).isEqualTo(PurgeJob.COMPLETED);
+        assertThat(job.getApplicationsDeleted()).isEqualTo(5);
+        assertThat(job.getEmailsDeleted()).isEqualTo(4);
+        assertThat(jobs.findById(job.getId())).get()
+                .extracting(PurgeJob::getApplicationsDeleted, PurgeJob::getEmailsDeleted)
+                .containsExactly(5L, 4L);
+
+        assertThat(count("SELECT count(*) FROM applications WHERE user_id = ?")).isZero();
+        assertThat(count("SELECT count(*) FROM emails WHERE user_id = ?")).isZero();
+        assertThat(count("SELECT count(*) FROM emails_archive_2019_05 WHERE user_id = ?")).isZero();
+        assertThat(count("SELECT count(*) FROM email_keys WHERE user_id = ?")).isZero();
+        assertThat(count("SELECT count(*) FROM email_extractions WHERE user_id = ?")).isZero();
+        verify(prefilter).forget(userId);
+        verify(knownGmailIds).forget(userId);
+    }
+
+    @Test
+    void leavesOtherUsersAlone() {
+        UUID purged = userId;
+        insertApplication("acme");
+        insertEmail("g-1", Instant.now());
+        userId = newUser();
+        insertApplication("acme");
+        insertEmail("g-2", Instant.now());
+
+        purge.purge(purged);
+
+        assertThat(count("SELECT count(*) FROM applications WHERE user_id = ?")).isOne();
+        assertThat(count("SELECT count(*) FROM emails WHERE user_id = ?")).isOne();
+        assertThat(count("SELECT count(*) FROM email_keys WHERE user_id = ?")).isOne();
+    }
+}
@@ -0,0 +1,38 @@
+package com.atakant.emailtracker.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HashedNaiveBayesTest {
+
+    @Test
+    void learnsToSeparateApplicationMailFromNewsletters() {
+        HashedNaiveBayes model = new HashedNaiveBayes(16);
+        for (int i = 0; i < 30; i++) {
+            model.learn("Thank you for applying to Acme " + i, "no-reply@greenhouse.io",
+                    "We received your application for the engineer role and will review it", true);
+            model.learn("Weekly deals " + i, "news@shop.example.com",
+                    "Save big on shoes and jackets this weekend only with free shipping", false);
+        }
+
+        assertThat(model.examples(true)).isEqualTo(30);
+        assertThat(model.examples(false)).isEqualTo(30);
+        assertThat(model.probabilityPositive("Your application to Globex", "jobs@greenhouse.io",
+                "Thank you, we received your application and will review it")).isGreaterThan(0.9);
+        assertThat(model.probabilityPositive("Weekend deals", "offers@shop.example.com",
+                "Free shipping on jackets and shoes this weekend")).isLessThan(0.1);
+    }
+
+    @Test
+    void untrainedModelIsUndecided() {
+        assertThat(new HashedNaiveBayes(8).probabilityPositive("anything", "a@b.c", "at all")).isEqualTo(0.5);
+    }
+
+    @Test
+    void rejectsFeatureBitsOutOfRange() {
+        assertThatThrownBy(() -> new HashedNaiveBayes(7)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HashedNaiveBayes(25)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,80 @@
+package com.atakant.emailtracker.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HtmlTextTest {
+
+    @Test
+    void nullAndEmptyGiveEmptyText() {
+        assertThat(HtmlText.toText(null)).isEmpty();
+        assertThat(HtmlText.toText("")).isEmpty();
+    }
+
+    @Test
+    void skipsStyleScriptHeadAndComments() {
+        String html = """
+                <html><head><title>Newsletter</title><style>p { color: red; } </p></style></head>
+                <body><!-- tracking <p>hidden</p> --><script type="text/javascript">var x = "</p>";</script>
+                <p>Thanks for applying</p><STYLE>.a{}</STYLE><SCRIPT>alert(1)</SCRIPT></body></html>
+                """;
+        assertThat(HtmlText.toText(html)).isEqualTo("Thanks for applying");
+    }
+
+    @Test
+    void unterminatedSkippedElementDropsTheRest() {
+        assertThat(HtmlText.toText("<p>Hello</p><script>never closed <p>world</p>")).isEqualTo("Hello");
+    }
+
+    @Test
+    void blockElementsBecomeNewlinesAndInlineTagsSeparateWords() {
+        String html = "<div>Interview</div><p>Tuesday<br>10:00</p><table><tr><td>Acme</td><td>Engineer</td></tr></table>";
+        // a closing block followed by an opening one leaves a paragraph break
+        assertThat(HtmlText.toText(html)).isEqualTo("Interview\n\nTuesday\n10:00\n\nAcme Engineer");
+    }
+
+    @Test
+    void collapsesWhitespaceAndAtMostOneBlankLine() {
+        String html = "<p>  Dear\n\n   candidate,  </p><p></p><p></p><p>next   step</p>";
+        assertThat(HtmlText.toText(html)).isEqualTo("Dear candidate,\n\nnext step");
+    }
+
+    @Test
+    void quotedGreaterThanInsideAttributeDoesNotEndTheTag() {
+        assertThat(HtmlText.toText("<a title=\"a > b\" href='x>y'>Apply</a>")).isEqualTo("Apply");
+    }
+
+    @Test
+    void literalLessThanIsKept() {
+        assertThat(HtmlText.toText("salary < 100k")).isEqualTo("salary < 100k");
+    }
+
+    @Test
+    void decodesNamedAndNumericEntities() {
+        assertThat(HtmlText.toText("Q&amp;A &ndash; &lt;Acme&gt; &quot;SWE&quot; &#8217;s &#x2022; &COPY;"))
+                .isEqualTo("Q&A – <Acme> \"SWE\" ’s • ©");
+    }
+
+    @Test
+    void nbspIsWhitespaceAndZeroWidthCharactersDisappear() {
+        assertThat(HtmlText.toText("Next&nbsp;&nbsp;steps&#8203;&zwnj;!&#xA0;Now")).isEqualTo("Next steps! Now");
+    }
+
+    @Test
+    void unknownOrBrokenEntitiesStayAsText() {
+        assertThat(HtmlText.toText("AT&T &bogus; &#xZZ; &amp")).isEqualTo("AT&T &bogus; &#xZZ; &amp");
+    }
+
+    @Test
+    void stopsAtMaxChars() {
+        String html = "<p>" + "word ".repeat(10_000) + "</p>";
+        String text = HtmlText.toText(html, 100);
+        assertThat(text).hasSizeLessThanOrEqualTo(100).startsWith("word word");
+    }
+
+    @Test
+    void maxCharsCutoffDropsTrailingWhitespace() {
+        assertThat(HtmlText.toText("<p>abc</p><p>def</p>", 4)).isEqualTo("abc");
+    }
+}
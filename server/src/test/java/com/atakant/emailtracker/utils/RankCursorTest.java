@@ -0,0 +1,33 @@
+package com.atakant.emailtracker.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RankCursorTest {
+
+    @Test
+    void roundTripsTheExactRank() {
+        for (float rank : new float[]{0f, 0.1f, 1e-30f, 0.0607927f, Float.MIN_VALUE, 123.456f}) {
+            RankCursor cursor = new RankCursor(rank, UUID.randomUUID());
+            RankCursor decoded = RankCursor.decode(cursor.encode());
+
+            assertThat(Float.floatToIntBits(decoded.rank())).isEqualTo(Float.floatToIntBits(rank));
+            assertThat(decoded.id()).isEqualTo(cursor.id());
+        }
+    }
+
+    @Test
+    void tokenIsUrlSafe() {
+        assertThat(new RankCursor(0.5f, UUID.randomUUID()).encode()).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void malformedTokensAreIllegalArguments() {
+        assertThatThrownBy(() -> RankCursor.decode("%%%")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> RankCursor.decode("MS41fHh5eg")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,48 @@
+package com.atakant.emailtracker.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    void neverForgetsAKeyWhileGrowingPastItsInitialCapacity() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01);
+        for (int i = 0; i < 50_000; i++) filter.add("msg-" + i);
+
+        for (int i = 0; i < 50_000; i++) {
+            assertThat(filter.mightContain("msg-" + i)).as("msg-" + i).isTrue();
+        }
+        // a key that already looks present (a false positive) is not counted
+        assertThat(filter.approximateCount()).isBetween(49_000L, 50_000L);
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheBoundAfterGrowth() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01);
+        for (int i = 0; i < 50_000; i++) filter.add("msg-" + i);
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other-" + i)) falsePositives++;
+        }
+        assertThat(falsePositives / 100_000.0).isLessThan(0.02);
+    }
+
+    @Test
+    void addingAKnownKeyDoesNotCountTwice() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(10, 0.01);
+        filter.add("a");
+        filter.add("a");
+        assertThat(filter.approximateCount()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsBadParameters() {
+        assertThatThrownBy(() -> new ScalableBloomFilter(0, 0.01)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ScalableBloomFilter(10, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ScalableBloomFilter(10, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
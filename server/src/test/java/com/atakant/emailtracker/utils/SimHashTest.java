@@ -0,0 +1,89 @@
+package com.atakant.emailtracker.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimHashTest {
+
+    private static final String BODY = """
+            Hi Jordan, thank you for applying to the Senior Software Engineer position at Acme.
+            Our recruiting team is reviewing your application and will reach out within two weeks
+            if your background matches what the hiring team is looking for. You can follow the status
+            of your application in the candidate portal at https://acme.greenhouse.io/portal/12345.
+            Best regards, the Acme Recruiting Team
+            """;
+
+    @Test
+    void identicalBodiesHaveDistanceZero() {
+        assertThat(SimHash.distance(SimHash.of(BODY), SimHash.of(BODY))).isZero();
+    }
+
+    @Test
+    void resentCopyWithOtherLinksIdsAndForwardHeaderStaysClose() {
+        String copy = """
+                ---------- Forwarded message ---------
+                From: Acme Recruiting <no-reply@acme.com>
+                Date: Tue, 4 Jun 2024 at 10:12
+                Subject: Thank you for applying
+                """ + BODY.replace("https://acme.greenhouse.io/portal/12345", "https://acme.greenhouse.io/portal/98765?t=abc");
+        assertThat(SimHash.distance(SimHash.of(BODY), SimHash.of(copy))).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void numbersAreNormalizedAway() {
+        String a = BODY + " Reference R-20431, received 2024-06-04.";
+        String b = BODY + " Reference R-77, received 2025-01-31.";
+        assertThat(SimHash.distance(SimHash.of(a), SimHash.of(b))).isZero();
+    }
+
+    @Test
+    void unrelatedBodiesAreFarApart() {
+        String other = """
+                Your weekly digest: twelve new posts in the gardening community, including tips for
+                growing tomatoes on a balcony, a guide to composting in small spaces and a photo thread
+                of this season's best sunflowers. Unsubscribe at any time from your account settings.
+                """;
+        assertThat(SimHash.distance(SimHash.of(BODY), SimHash.of(other))).isGreaterThan(10);
+    }
+
+    @Test
+    void tooShortOrEmptyTextHasNoFingerprint() {
+        assertThat(SimHash.of(null)).isNull();
+        assertThat(SimHash.of("   ")).isNull();
+        assertThat(SimHash.of("thanks, see you soon")).isNull();
+    }
+
+    @Test
+    void distanceCountsDifferingBits() {
+        assertThat(SimHash.distance(0L, 0b1011L)).isEqualTo(3);
+        assertThat(SimHash.distance(-1L, 0L)).isEqualTo(64);
+    }
+
+    @Test
+    void aForwardContainsEveryLineOfTheOriginal() {
+        String forward = """
+                FYI, see below.
+
+                ---------- Forwarded message ---------
+                From: Acme Recruiting <no-reply@acme.com>
+                Date: Tue, 4 Jun 2024 at 10:12
+                """ + BODY.replace("portal/12345", "portal/98765").lines().map(l -> "> " + l).reduce("", (x, y) -> x + y + "\n");
+        assertThat(SimHash.containsAllLines(BODY, forward)).isTrue();
+    }
+
+    @Test
+    void sameTemplateForAnotherRoleIsNotACopy() {
+        String otherRole = BODY.replace("Senior Software Engineer", "Staff Data Engineer");
+        assertThat(SimHash.distance(SimHash.of(BODY), SimHash.of(otherRole))).isLessThanOrEqualTo(10);
+        assertThat(SimHash.containsAllLines(BODY, otherRole)).isFalse();
+        assertThat(SimHash.containsAllLines(BODY, null)).isFalse();
+    }
+
+    @Test
+    void subjectKeyStripsReplyAndForwardPrefixes() {
+        assertThat(SimHash.subjectKey("Re: FWD: re:Interview with Acme ")).isEqualTo("interview with acme");
+        assertThat(SimHash.subjectKey("AW: WG: Your application")).isEqualTo("your application");
+        assertThat(SimHash.subjectKey(null)).isEmpty();
+    }
+}